@@ -0,0 +1,65 @@
+package org.sputnikdev.bluetooth.cli.benchmarks;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * Realistic characteristic payloads captured from real devices.
+ */
+public final class Payloads {
+
+    public static final URL DEVICE = new URL("/XX:XX:XX:XX:XX:XX/11:22:33:44:55:66");
+
+    /**
+     * Heart rate measurement: uint8 bpm, sensor contact detected, one RR interval.
+     */
+    public static final URL HEART_RATE = DEVICE.copyWith("0000180d-0000-1000-8000-00805f9b34fb",
+            "00002a37-0000-1000-8000-00805f9b34fb");
+    public static final byte[] HEART_RATE_VALUE = {0x16, 0x4b, 0x3a, 0x03};
+
+    /**
+     * Battery level: 92%.
+     */
+    public static final URL BATTERY = DEVICE.copyWith("0000180f-0000-1000-8000-00805f9b34fb",
+            "00002a19-0000-1000-8000-00805f9b34fb");
+    public static final byte[] BATTERY_VALUE = {0x5c};
+
+    /**
+     * Xiaomi temperature and humidity sensor, a null terminated string.
+     */
+    public static final URL MI_TEMPERATURE = DEVICE.copyWith("226c0000-6476-4566-7562-66734470666d",
+            "226caa55-6476-4566-7562-66734470666d");
+    public static final byte[] MI_TEMPERATURE_VALUE = "T=23.4 H=45.6\0".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Xiaomi Mi Flora sensor data: temperature, light, moisture and fertility.
+     */
+    public static final URL MI_FLORA = DEVICE.copyWith("00001204-0000-1000-8000-00805f9b34fb",
+            "00001a01-0000-1000-8000-00805f9b34fb");
+    public static final byte[] MI_FLORA_VALUE = {(byte) 0xf1, 0x00, 0x00, (byte) 0x9c, 0x01, 0x00, 0x00, 0x1e,
+        0x5e, 0x00, 0x02, 0x3c, 0x00, (byte) 0xfb, 0x34, (byte) 0x9b};
+
+    private Payloads() { }
+
+}
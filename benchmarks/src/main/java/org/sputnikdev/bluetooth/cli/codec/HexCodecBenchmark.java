@@ -0,0 +1,61 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.cli.benchmarks.Payloads;
+
+/**
+ * Benchmarks {@link HexCodec} writing into reused buffers, which is expected to be allocation free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HexCodecBenchmark {
+
+    private final StringBuilder builder = new StringBuilder(256);
+
+    @Benchmark
+    public StringBuilder appendList() {
+        builder.setLength(0);
+        return HexCodec.appendList(builder, Payloads.MI_FLORA_VALUE);
+    }
+
+    @Benchmark
+    public StringBuilder append() {
+        builder.setLength(0);
+        return HexCodec.append(builder, Payloads.MI_FLORA_VALUE);
+    }
+
+}
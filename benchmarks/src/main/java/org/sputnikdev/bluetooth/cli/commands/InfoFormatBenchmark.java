@@ -0,0 +1,88 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.cli.benchmarks.Payloads;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+
+/**
+ * Benchmarks the table formatting of the "info" command: a characteristics listing of a device
+ * and a fields listing of a characteristic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InfoFormatBenchmark {
+
+    private static final Set<CharacteristicAccessType> READ_NOTIFY =
+            EnumSet.of(CharacteristicAccessType.READ, CharacteristicAccessType.NOTIFY);
+
+    private BluetoothGattParser parser;
+    private String[] characteristics;
+
+    @Setup
+    public void setUp() {
+        parser = BluetoothGattParserFactory.getDefault();
+        characteristics = new String[] {
+            Payloads.HEART_RATE.getCharacteristicUUID(),
+            Payloads.BATTERY.getCharacteristicUUID(),
+            Payloads.MI_TEMPERATURE.getCharacteristicUUID(),
+            Payloads.MI_FLORA.getCharacteristicUUID()
+        };
+    }
+
+    @Benchmark
+    public String characteristicsTable() {
+        StringBuilder builder = new StringBuilder();
+        InfoCommands.format(builder, "", "Characteristics:");
+        for (String characteristicUUID : characteristics) {
+            InfoCommands.formatCharacteristic(builder, parser, characteristicUUID, READ_NOTIFY);
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public String fieldsTable() {
+        StringBuilder builder = new StringBuilder();
+        InfoCommands.formatFields(builder, parser, Payloads.HEART_RATE.getCharacteristicUUID());
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperties;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperty;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.manager.BluetoothObjectVisitor;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+
+/**
+ * Benchmarks latency of the "info" command for a device with 40 characteristics (4 services, 10 characteristics
+ * each). Properties are read either through the cached method handle table or, as a baseline, through
+ * bean introspection and reflective calls on every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InfoLatencyBenchmark {
+
+    private static final int SERVICES = 4;
+    private static final int CHARACTERISTICS_PER_SERVICE = 10;
+
+    private BluetoothGattParser parser;
+    private DeviceGovernor device;
+
+    @Setup
+    public void setUp() {
+        parser = BluetoothGattParserFactory.getDefault();
+        URL deviceURL = new URL("/XX:XX:XX:XX:XX:XX/11:22:33:44:55:66");
+        Map<URL, List<CharacteristicGovernor>> services = new LinkedHashMap<>();
+        for (int s = 0; s < SERVICES; s++) {
+            URL serviceURL = deviceURL.copyWithService(String.format("0000180%d-0000-1000-8000-00805f9b34fb", s));
+            List<CharacteristicGovernor> characteristics = new ArrayList<>();
+            for (int c = 0; c < CHARACTERISTICS_PER_SERVICE; c++) {
+                int characteristicId = 0x2a19 + s * CHARACTERISTICS_PER_SERVICE + c;
+                characteristics.add(characteristic(serviceURL.copyWithCharacteristic(
+                        String.format("0000%04x-0000-1000-8000-00805f9b34fb", characteristicId))));
+            }
+            services.put(serviceURL, characteristics);
+        }
+        device = governor(DeviceGovernor.class, deviceURL, services);
+    }
+
+    @Benchmark
+    public String info() {
+        return InfoCommands.describe(device, parser);
+    }
+
+    @Benchmark
+    public String cachedProperties() {
+        StringBuilder builder = new StringBuilder();
+        for (GovernorProperty property : GovernorProperties.of(device).getProperties()) {
+            InfoCommands.format(builder, property.getDisplayName() + ":", String.valueOf(property.get(device)));
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public String introspectedProperties() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, PropertyDescriptor> property : introspect(DeviceGovernor.class).entrySet()) {
+            InfoCommands.format(builder, property.getKey() + ":",
+                    String.valueOf(property.getValue().getReadMethod().invoke(device)));
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, PropertyDescriptor> introspect(Class<?> governorInterface)
+            throws IntrospectionException {
+        Map<String, PropertyDescriptor> properties = new HashMap<>();
+        for (PropertyDescriptor descriptor : Introspector.getBeanInfo(governorInterface).getPropertyDescriptors()) {
+            Class<?> propertyClass = descriptor.getPropertyType();
+            if (propertyClass.isPrimitive() || propertyClass.isAssignableFrom(Number.class)
+                    || propertyClass.equals(String.class)) {
+                properties.put(StringUtils.capitalize(String.join(" ",
+                        StringUtils.splitByCharacterTypeCamelCase(descriptor.getDisplayName()))), descriptor);
+            }
+        }
+        return properties;
+    }
+
+    private static CharacteristicGovernor characteristic(URL url) {
+        return governor(CharacteristicGovernor.class, url, null);
+    }
+
+    private static <T> T governor(Class<T> governorInterface, URL url,
+                                  Map<URL, List<CharacteristicGovernor>> services) {
+        return governorInterface.cast(Proxy.newProxyInstance(InfoLatencyBenchmark.class.getClassLoader(),
+            new Class<?>[] {governorInterface}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getURL":
+                        return url;
+                    case "getServicesToCharacteristicsMap":
+                        return services;
+                    case "getFlags":
+                        return EnumSet.of(CharacteristicAccessType.READ, CharacteristicAccessType.NOTIFY);
+                    case "accept":
+                        visit((BluetoothObjectVisitor) args[0], proxy);
+                        return null;
+                    case "toString":
+                        return url.toString();
+                    default:
+                        return defaultValue(method);
+                }
+            }));
+    }
+
+    private static void visit(BluetoothObjectVisitor visitor, Object governor) throws Exception {
+        if (governor instanceof DeviceGovernor) {
+            visitor.visit((DeviceGovernor) governor);
+        } else {
+            visitor.visit((CharacteristicGovernor) governor);
+        }
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return true;
+        } else if (type == int.class) {
+            return 1;
+        } else if (type == short.class) {
+            return (short) -60;
+        } else if (type == long.class) {
+            return 1L;
+        } else if (type == double.class) {
+            return 1.0;
+        } else if (type == String.class) {
+            return method.getName();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.cli.benchmarks.Payloads;
+import org.sputnikdev.bluetooth.cli.codec.DecoderCache;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+/**
+ * Benchmarks value decoding and rendering ({@link ReadWriteCommands#parse(DecoderCache,
+ * org.sputnikdev.bluetooth.URL, byte[])}) which runs for every notification and read.
+ * Heart rate and battery level are known characteristics (decoded by compiled plans),
+ * Xiaomi characteristics are unknown unless extensions are loaded, so they take the hex path.
+ * The "parser" benchmarks decode the same values through the generic GATT parser for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    private BluetoothGattParser parser;
+    private DecoderCache decoderCache;
+
+    @Setup
+    public void setUp() {
+        parser = BluetoothGattParserFactory.getDefault();
+        decoderCache = new DecoderCache(parser);
+    }
+
+    @Benchmark
+    public String heartRate() {
+        return ReadWriteCommands.parse(decoderCache, Payloads.HEART_RATE, Payloads.HEART_RATE_VALUE);
+    }
+
+    @Benchmark
+    public String heartRateParser() {
+        return DecoderCache.render(new StringBuilder(), parser.parse(
+                Payloads.HEART_RATE.getCharacteristicUUID(), Payloads.HEART_RATE_VALUE)).toString();
+    }
+
+    @Benchmark
+    public String batteryLevel() {
+        return ReadWriteCommands.parse(decoderCache, Payloads.BATTERY, Payloads.BATTERY_VALUE);
+    }
+
+    @Benchmark
+    public String batteryLevelParser() {
+        return DecoderCache.render(new StringBuilder(), parser.parse(
+                Payloads.BATTERY.getCharacteristicUUID(), Payloads.BATTERY_VALUE)).toString();
+    }
+
+    @Benchmark
+    public String miTemperature() {
+        return ReadWriteCommands.parse(decoderCache, Payloads.MI_TEMPERATURE, Payloads.MI_TEMPERATURE_VALUE);
+    }
+
+    @Benchmark
+    public String miFlora() {
+        return ReadWriteCommands.parse(decoderCache, Payloads.MI_FLORA, Payloads.MI_FLORA_VALUE);
+    }
+
+}
@@ -22,40 +22,62 @@ package org.sputnikdev.bluetooth.cli;
 
 import gnu.io.NativeResourceException;
 import gnu.io.SerialManager;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.shell.Bootstrap;
 import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.batch.BatchRunner;
+import org.sputnikdev.bluetooth.cli.codec.DecoderCache;
+import org.sputnikdev.bluetooth.cli.codec.GattSpecIndex;
+import org.sputnikdev.bluetooth.cli.codec.MacAddress;
+import org.sputnikdev.bluetooth.cli.codec.RequestTemplates;
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+import org.sputnikdev.bluetooth.cli.devices.DeviceTable;
+import org.sputnikdev.bluetooth.cli.devices.URLIndex;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperties;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.cli.metrics.StartupTimeline;
+import org.sputnikdev.bluetooth.cli.pipeline.AdvertisementDeduplicator;
+import org.sputnikdev.bluetooth.cli.pipeline.ShardedDispatcher;
+import org.sputnikdev.bluetooth.cli.simulator.SimulatedFactory;
+import org.sputnikdev.bluetooth.cli.simulator.SimulatorConfig;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
 import org.sputnikdev.bluetooth.manager.AdapterDiscoveryListener;
 import org.sputnikdev.bluetooth.manager.AdapterGovernor;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.DeviceDiscoveryListener;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
 import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
-
+import org.sputnikdev.bluetooth.manager.GattCharacteristic;
+import org.sputnikdev.bluetooth.manager.GattService;
 import org.sputnikdev.bluetooth.manager.impl.BluetoothManagerBuilder;
 import org.sputnikdev.bluetooth.manager.transport.bluegiga.BluegigaFactory;
 import org.sputnikdev.bluetooth.manager.transport.tinyb.TinyBFactory;
 
 import javax.annotation.PreDestroy;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -64,62 +86,259 @@ import java.util.Set;
 @Component
 public class BluetoothManagerCli implements DeviceDiscoveryListener, AdapterDiscoveryListener {
 
+    private static final String DISPATCH_SHARDS_PROPERTY = "bluetooth.cli.dispatch.shards";
+    private static final String DISPATCH_QUEUE_PROPERTY = "bluetooth.cli.dispatch.queue";
+    private static final String TRACK_SERVICES_PROPERTY = "bluetooth.cli.devices.services";
+    private static final String DEDUP_CAPACITY_PROPERTY = "bluetooth.cli.dedup.capacity";
+    private static final String DEDUP_RSSI_PROPERTY = "bluetooth.cli.dedup.rssi";
+    private static final String DEDUP_HEARTBEAT_PROPERTY = "bluetooth.cli.dedup.heartbeat";
+    private static final String GATT_INDEX_PROPERTY = "bluetooth.cli.gatt.index";
+
     protected final java.util.logging.Logger logger = HandlerUtils.getLogger(getClass());
 
     public static BluetoothManagerCli instance;
 
     private final BluetoothManager bluetoothManager;
-    private final BluetoothGattParser gattParser;
-
-    private BluetoothGovernor selected;
-
+    private final StartupTimeline startupTimeline = new StartupTimeline();
+    private final CompletableFuture<BluetoothGattParser> gattParser;
+    private final CompletableFuture<DecoderCache> decoderCache;
+    private final CompletableFuture<RequestTemplates> requestTemplates;
+    private final CompletableFuture<Void> started;
+    private final ShardedDispatcher dispatcher;
+    private final URLInterner urlInterner = new URLInterner();
+    private final DeviceTable deviceTable = new DeviceTable();
+    private final URLIndex urlIndex = new URLIndex();
+    private final AdvertisementDeduplicator deduplicator = new AdvertisementDeduplicator(
+            Integer.getInteger(DEDUP_CAPACITY_PROPERTY, 4096),
+            Integer.getInteger(DEDUP_RSSI_PROPERTY, 5),
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong(DEDUP_HEARTBEAT_PROPERTY, 30000)));
+    // a listener per discovered device makes the manager create a governor for every advertiser in range,
+    // governors cannot be disposed through the manager API, hence it is opt-in
+    private final boolean trackServices =
+            Boolean.parseBoolean(System.getProperty(TRACK_SERVICES_PROPERTY, "false"));
+    private final Map<URL, BluetoothSmartDeviceListener> serviceTaps = new ConcurrentHashMap<>();
+
+    private volatile BluetoothGovernor selected;
+    // selection of threads that run independent command sessions, see runInSession
+    private final ThreadLocal<BluetoothGovernor[]> sessionSelection = new ThreadLocal<>();
+    // no interactive shell, see BatchRunner: read --all returns its results instead of logging them as they come
+    // and scan may stream into the standard output; other commands log as usual
+    private volatile boolean headless;
+
+    /**
+     * Creates the CLI. Only cheap initialisation is done on the calling thread, so that the shell prompt
+     * appears straight away. Transports are probed concurrently and the manager is started once they are
+     * registered, the GATT parser and its extensions are loaded in parallel with that; the parser
+     * is awaited on first use. Durations of all stages are logged when startup completes
+     * and can be seen later in stats.
+     */
     public BluetoothManagerCli() {
-        bluetoothManager = new BluetoothManagerBuilder().build();
-        registerTransports();
+        dispatcher = new ShardedDispatcher("dispatch",
+                Integer.getInteger(DISPATCH_SHARDS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger(DISPATCH_QUEUE_PROPERTY, 1024));
+        bluetoothManager = startupTimeline.time("manager build", () -> new BluetoothManagerBuilder().build());
         bluetoothManager.addDeviceDiscoveryListener(this);
         bluetoothManager.addAdapterDiscoveryListener(this);
-        bluetoothManager.start(true);
 
-        gattParser = BluetoothGattParserFactory.getDefault();
-        String extensionFolder = System.getProperty("user.home") + File.separator + ".bluetooth_smart";
-        File extensionFolderFile = new File(extensionFolder);
-        if (extensionFolderFile.exists() && extensionFolderFile.isDirectory()) {
-            gattParser.loadExtensionsFromFolder(extensionFolder);
-        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService startup = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> transports = CompletableFuture.allOf(
+                registerTransport("tinyb transport", this::registerTinyB, startup),
+                registerTransport("bluegiga transport", this::registerBluegiga, startup),
+                registerTransport("simulated transport", this::registerSimulator, startup));
+        CompletableFuture<Void> manager = transports.thenRunAsync(
+            () -> startupTimeline.time("manager start", () -> bluetoothManager.start(true)), startup);
+
+        gattParser = startupTimeline.supplyAsync("gatt specifications", this::loadGattParser, startup);
+        decoderCache = gattParser.thenApply(DecoderCache::new);
+        requestTemplates = gattParser.thenApply(RequestTemplates::new);
+
+        started = CompletableFuture.allOf(manager, decoderCache).whenComplete((result, error) -> {
+            startup.shutdown();
+            logger.info("Startup stages:" + OsUtils.LINE_SEPARATOR + startupTimeline.report());
+            if (error != null) {
+                logger.log(Level.WARNING, "Startup failed", error);
+            }
+        });
+        logger.info("Ready to accept commands in "
+                + LatencyHistogram.format(System.nanoTime() - startupTimeline.getOrigin()));
     }
 
     @PreDestroy
     public void shutDown() {
         logger.info("Shutting down / disposing Bluetooth Manager");
         bluetoothManager.dispose();
+        dispatcher.stop();
     }
 
     @Override
     public void discovered(DiscoveredDevice discoveredDevice) {
-        logger.info("Device discovered: " + discoveredDevice);
+        discovered(discoveredDevice, trackServices);
+    }
+
+    /**
+     * Handles a device discovery replayed from a capture file, see
+     * {@link org.sputnikdev.bluetooth.cli.capture.Replayer}. Services of replayed devices are never tracked,
+     * as that would make the manager create governors for devices that are not in range.
+     * @param discoveredDevice replayed device
+     */
+    public void replayDiscovered(DiscoveredDevice discoveredDevice) {
+        discovered(discoveredDevice, false);
+    }
+
+    private void discovered(DiscoveredDevice discoveredDevice, boolean tapServices) {
+        int id = urlInterner.id(discoveredDevice.getURL());
+        long mac = urlInterner.getDeviceAddress(id);
+        if (mac != URLInterner.NO_ADDRESS) {
+            // every advertisement refreshes last seen time and RSSI, the table has its own lock
+            String name = discoveredDevice.getAlias() != null
+                    ? discoveredDevice.getAlias() : discoveredDevice.getName();
+            deviceTable.update(mac, urlInterner.get(id), name, discoveredDevice.getRSSI(), System.currentTimeMillis());
+            // repeated advertisements are dropped before they reach the dispatcher
+            if (!deduplicator.accept(mac, discoveredDevice.getRSSI(), AdvertisementDeduplicator.hash(discoveredDevice),
+                    System.nanoTime())) {
+                return;
+            }
+        }
+        dispatcher.dispatch(discoveredDevice.getURL(), () -> {
+            urlIndex.addDevice(urlInterner.get(id), discoveredDevice.getName(), discoveredDevice.getAlias());
+            if (mac != URLInterner.NO_ADDRESS && tapServices) {
+                serviceTaps.computeIfAbsent(urlInterner.get(id), url -> tapServices(url, mac));
+            }
+            logger.info("Device discovered: " + discoveredDevice);
+        });
     }
 
     @Override
     public void discovered(DiscoveredAdapter adapter) {
-        logger.info("Adapter discovered: " + adapter);
+        dispatcher.dispatch(adapter.getURL(), () -> {
+            urlIndex.addAdapter(adapter.getURL());
+            logger.info("Adapter discovered: " + adapter);
+        });
     }
 
     @Override
     public void deviceLost(URL url) {
-        logger.info("Device lost: " + url);
+        // the table is updated on transport threads too, see discovered
+        if (MacAddress.isValid(url.getDeviceAddress())) {
+            deviceTable.remove(MacAddress.toLong(url.getDeviceAddress()));
+        }
+        dispatcher.dispatch(url, () -> {
+            urlIndex.remove(url);
+            BluetoothSmartDeviceListener tap = serviceTaps.remove(url);
+            if (tap != null) {
+                bluetoothManager.getDeviceGovernor(url).removeBluetoothSmartDeviceListener(tap);
+            }
+            // random addresses rotate, URLs of lost devices would otherwise stay interned forever
+            urlInterner.remove(url);
+            logger.info("Device lost: " + url);
+        });
     }
 
     @Override
     public void adapterLost(URL url) {
-        logger.info("Adapter lost: " + url);
+        dispatcher.dispatch(url, () -> {
+            urlIndex.remove(url);
+            logger.info("Adapter lost: " + url);
+        });
     }
 
     public BluetoothManager getBluetoothManager() {
         return bluetoothManager;
     }
 
+    /**
+     * Returns the GATT parser, waits for it to be loaded if startup is still in progress.
+     * @return GATT parser
+     */
     public BluetoothGattParser getGattParser() {
-        return gattParser;
+        return gattParser.join();
+    }
+
+    /**
+     * Returns the decoder cache, waits for the GATT parser to be loaded if startup is still in progress.
+     * @return decoder cache
+     */
+    public DecoderCache getDecoderCache() {
+        return decoderCache.join();
+    }
+
+    /**
+     * Returns the cache of write request templates, waits for the GATT parser to be loaded
+     * if startup is still in progress.
+     * @return request templates
+     */
+    public RequestTemplates getRequestTemplates() {
+        return requestTemplates.join();
+    }
+
+    /**
+     * Loads GATT extensions from ~/.bluetooth_smart into the parser again and invalidates caches
+     * that depend on GATT specifications.
+     */
+    public void reloadGattExtensions() {
+        File extensionFolder = getExtensionFolder();
+        if (extensionFolder.isDirectory()) {
+            getGattParser().loadExtensionsFromFolder(extensionFolder.getAbsolutePath());
+        }
+        getDecoderCache().invalidate();
+        getRequestTemplates().invalidate();
+    }
+
+    public StartupTimeline getStartupTimeline() {
+        return startupTimeline;
+    }
+
+    /**
+     * Returns a future that completes when all startup stages complete.
+     * @return startup completion
+     */
+    public CompletableFuture<Void> getStarted() {
+        return started;
+    }
+
+    /**
+     * Returns the table that maps bluetooth URLs to compact ids.
+     * @return URL interner
+     */
+    public URLInterner getURLInterner() {
+        return urlInterner;
+    }
+
+    /**
+     * Returns the stage that suppresses repeated discovery events.
+     * @return deduplicator
+     */
+    public AdvertisementDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Returns the index of known URLs and device names used for completion.
+     * @return URL index
+     */
+    public URLIndex getURLIndex() {
+        return urlIndex;
+    }
+
+    /**
+     * Returns the table of discovered devices.
+     * @return device table
+     */
+    public DeviceTable getDeviceTable() {
+        return deviceTable;
+    }
+
+    /**
+     * Returns the dispatcher that runs listener callbacks off transport threads, sharded by device.
+     * @return dispatcher
+     */
+    public ShardedDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     public static BluetoothManagerCli getInstance() {
@@ -142,14 +361,49 @@ public class BluetoothManagerCli implements DeviceDiscoveryListener, AdapterDisc
     }
 
     public BluetoothGovernor getSelected() {
-        return selected;
+        BluetoothGovernor[] session = sessionSelection.get();
+        return session != null ? session[0] : selected;
     }
 
     public void setSelected(BluetoothGovernor selected) {
-        this.selected = selected;
+        BluetoothGovernor[] session = sessionSelection.get();
+        if (session != null) {
+            session[0] = selected;
+        } else {
+            this.selected = selected;
+        }
+    }
+
+    /**
+     * Runs a task in a command session of the current thread: the session starts with the currently selected
+     * governor, but any selection changes made by the task are visible to the current thread only.
+     * This allows independent command sequences to be run in parallel.
+     * @param task task
+     */
+    public void runInSession(Runnable task) {
+        BluetoothGovernor[] previous = sessionSelection.get();
+        sessionSelection.set(new BluetoothGovernor[] {getSelected()});
+        try {
+            task.run();
+        } finally {
+            if (previous != null) {
+                sessionSelection.set(previous);
+            } else {
+                sessionSelection.remove();
+            }
+        }
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
     }
 
     public List<BluetoothGovernor> getSelectedDescendants() {
+        BluetoothGovernor selected = getSelected();
         if (selected == null || !selected.isReady()) {
             return Collections.EMPTY_LIST;
         }
@@ -164,12 +418,16 @@ public class BluetoothManagerCli implements DeviceDiscoveryListener, AdapterDisc
     public static void main(String[] args) throws IOException {
         List<String> argsList = new ArrayList<>(Arrays.asList(args));
         argsList.add("--disableInternalCommands");
+        if (argsList.contains(BatchRunner.HEADLESS_OPTION)) {
+            System.exit(BatchRunner.run(argsList));
+        }
         String[] argsArray = new String[argsList.size()];
         argsArray = argsList.toArray(argsArray);
         Bootstrap.main(argsArray);
     }
 
     public Class getSelectedGovernorInterface() {
+        BluetoothGovernor selected = getSelected();
         if (selected == null) {
             return null;
         }
@@ -182,39 +440,53 @@ public class BluetoothManagerCli implements DeviceDiscoveryListener, AdapterDisc
         return supported.get(0);
     }
 
-    public Map<String, PropertyDescriptor> getSelectedGovernorProperties(boolean writeOnly) {
-        Map<String, PropertyDescriptor> properties = new HashMap<>();
-        Class selectedInterface = getSelectedGovernorInterface();
-        try {
-            for (PropertyDescriptor propertyDescriptor :
-                    Introspector.getBeanInfo(selectedInterface).getPropertyDescriptors()) {
-
-                if (writeOnly && propertyDescriptor.getWriteMethod() == null) {
-                    continue;
-                }
+    public GovernorProperties getSelectedGovernorProperties() {
+        return GovernorProperties.of(getSelected());
+    }
 
-                Class propertyClass = propertyDescriptor.getPropertyType();
-                if (propertyClass.isPrimitive() || propertyClass.isAssignableFrom(Number.class)
-                        || propertyClass.equals(String.class)) {
+    private BluetoothSmartDeviceListener tapServices(URL url, long mac) {
+        DeviceGovernor governor = bluetoothManager.getDeviceGovernor(url);
+        BluetoothSmartDeviceListener listener = new BluetoothSmartDeviceListener() {
+            @Override
+            public void servicesResolved(List<GattService> gattServices) {
+                dispatcher.dispatch(url, () -> urlIndex.setCharacteristics(url, gattServices.stream()
+                        .flatMap(service -> service.getCharacteristics().stream())
+                        .map(GattCharacteristic::getURL).collect(Collectors.toList())));
+            }
 
-                    String propertyName = String.join(" ",
-                            StringUtils.splitByCharacterTypeCamelCase(propertyDescriptor.getDisplayName()));
+            @Override
+            public void servicesUnresolved() {
+                dispatcher.dispatch(url, () -> urlIndex.setCharacteristics(url, Collections.emptyList()));
+            }
 
-                    properties.put(StringUtils.capitalize(propertyName), propertyDescriptor);
-                }
+            @Override
+            public void serviceDataChanged(Map<URL, byte[]> serviceData) {
+                // advertised repeatedly, hence the next one makes up for a dropped one
+                dispatcher.offer(url, () -> deviceTable.updateServices(mac, serviceData.keySet().stream()
+                        .map(URL::getServiceUUID).collect(Collectors.toList())));
             }
-        } catch (IntrospectionException e) { }
-        return properties;
+        };
+        governor.addBluetoothSmartDeviceListener(listener);
+        return listener;
     }
 
-    private void registerTransports() {
+    private CompletableFuture<Void> registerTransport(String name, Runnable registration, Executor executor) {
+        // a transport that fails to register must not prevent the manager from starting with the others
+        return startupTimeline.runAsync(name, registration, executor).exceptionally(error -> {
+            logger.log(Level.WARNING, "Could not register " + name, error);
+            return null;
+        });
+    }
 
+    private void registerTinyB() {
         if (TinyBFactory.loadNativeLibraries()) {
             bluetoothManager.registerFactory(new TinyBFactory());
         } else {
             logger.warning("Could not load tinyb library. TinyB transport is not registered.");
         }
+    }
 
+    private void registerBluegiga() {
         try {
             SerialManager.getInstance();
             bluetoothManager.registerFactory(new BluegigaFactory());
@@ -223,4 +495,27 @@ public class BluetoothManagerCli implements DeviceDiscoveryListener, AdapterDisc
         }
     }
 
+    private void registerSimulator() {
+        if (SimulatorConfig.isEnabled()) {
+            bluetoothManager.registerFactory(new SimulatedFactory(SimulatorConfig.fromSystemProperties()));
+            logger.info("Simulated transport is registered.");
+        }
+    }
+
+    private BluetoothGattParser loadGattParser() {
+        File extensionFolderFile = getExtensionFolder();
+        if (Boolean.parseBoolean(System.getProperty(GATT_INDEX_PROPERTY, "true"))) {
+            return GattSpecIndex.load(extensionFolderFile);
+        }
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        if (extensionFolderFile.exists() && extensionFolderFile.isDirectory()) {
+            parser.loadExtensionsFromFolder(extensionFolderFile.getPath());
+        }
+        return parser;
+    }
+
+    private static File getExtensionFolder() {
+        return new File(System.getProperty("user.home") + File.separator + ".bluetooth_smart");
+    }
+
 }
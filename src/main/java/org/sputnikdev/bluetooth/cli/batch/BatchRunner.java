@@ -0,0 +1,248 @@
+package org.sputnikdev.bluetooth.cli.batch;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.shell.Bootstrap;
+import org.springframework.shell.core.ExitShellRequest;
+import org.springframework.shell.core.Parser;
+import org.springframework.shell.event.ParseResult;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.commands.CommandFailedException;
+
+/**
+ * Runs a {@link BatchScript} without the interactive JLine prompt. Commands are parsed by the shell parser
+ * (so that all converters and completions work the same way as in the interactive mode) and invoked directly,
+ * which lets independent blocks run in parallel, each in its own selection session,
+ * see {@link BluetoothManagerCli#runInSession(Runnable)}.
+ *
+ * <p>The prelude is run first, a failed prelude command aborts the script. Then blocks are run in parallel,
+ * a failed command stops its block only. A command fails when it throws an exception, commands report invalid
+ * arguments and objects that are not ready this way. Command results are written to the standard output,
+ * output of a block is written at once when the block finishes and each line is prefixed with the block label.
+ * Errors are written to the standard error, and so are log messages (e.g. events that commands log as they come),
+ * as the interactive shell that would print them is not started. Only results returned by commands form
+ * the output. The CLI is switched into the headless mode, so that {@code read --all} returns its values
+ * instead of logging them and {@code scan} can stream into the standard output,
+ * see {@link BluetoothManagerCli#isHeadless()}.
+ *
+ * <p>Exit codes: 0 - all commands succeeded, 1 - some commands failed, 2 - the script could not be read.
+ */
+public class BatchRunner {
+
+    public static final String HEADLESS_OPTION = "--headless";
+    public static final String PARALLEL_OPTION = "--parallel";
+    public static final String STANDARD_INPUT = "-";
+
+    public static final int SUCCESS = 0;
+    public static final int COMMAND_FAILED = 1;
+    public static final int SCRIPT_ERROR = 2;
+
+    private static final int DEFAULT_PARALLELISM = 8;
+
+    private final Parser parser;
+    private final BluetoothManagerCli bluetoothManagerCli;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final int parallelism;
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public BatchRunner(Parser parser, BluetoothManagerCli bluetoothManagerCli, PrintStream out, PrintStream err,
+                       int parallelism) {
+        this.parser = parser;
+        this.bluetoothManagerCli = bluetoothManagerCli;
+        this.out = out;
+        this.err = err;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Bootstraps the application context without starting the interactive shell and runs a script.
+     * Recognised options ({@value #HEADLESS_OPTION} [file], {@value #PARALLEL_OPTION} n) are removed from
+     * the arguments, the rest are passed to Spring Shell bootstrap.
+     * @param args command line arguments
+     * @return exit code
+     */
+    public static int run(List<String> args) {
+        int index = args.indexOf(HEADLESS_OPTION);
+        args.remove(index);
+        String file = STANDARD_INPUT;
+        if (index < args.size() && !args.get(index).startsWith("--")) {
+            file = args.remove(index);
+        }
+        int parallelism = DEFAULT_PARALLELISM;
+        int parallelIndex = args.indexOf(PARALLEL_OPTION);
+        if (parallelIndex >= 0) {
+            args.remove(parallelIndex);
+            if (parallelIndex >= args.size()) {
+                System.err.println("Specify the number of parallel blocks: " + PARALLEL_OPTION + " n");
+                return SCRIPT_ERROR;
+            }
+            try {
+                parallelism = Integer.parseInt(args.remove(parallelIndex));
+            } catch (NumberFormatException ex) {
+                System.err.println("Invalid number of parallel blocks: " + ex.getMessage());
+                return SCRIPT_ERROR;
+            }
+        }
+
+        BatchScript script;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+            script = BatchScript.parse(reader);
+        } catch (IOException ex) {
+            System.err.println("Could not read script: " + file + ": " + ex.getMessage());
+            return SCRIPT_ERROR;
+        }
+
+        Bootstrap bootstrap;
+        try {
+            bootstrap = new Bootstrap(args.toArray(new String[args.size()]));
+        } catch (IOException ex) {
+            System.err.println("Could not start: " + ex.getMessage());
+            return SCRIPT_ERROR;
+        }
+        ConfigurableApplicationContext context = (ConfigurableApplicationContext) bootstrap.getApplicationContext();
+        try {
+            BatchRunner runner = new BatchRunner(bootstrap.getJLineShellComponent().getSimpleParser(),
+                    context.getBean(BluetoothManagerCli.class), System.out, System.err, parallelism);
+            return runner.run(script);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Runs a script.
+     * @param script script
+     * @return exit code
+     */
+    public int run(BatchScript script) {
+        bluetoothManagerCli.setHeadless(true);
+        StringBuilder output = new StringBuilder();
+        boolean preludeSucceeded = execute(script.getPrelude(), "", output);
+        out.print(output);
+        out.flush();
+        if (!preludeSucceeded) {
+            return COMMAND_FAILED;
+        }
+        if (!script.getBlocks().isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, script.getBlocks().size()));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (BatchScript.Block block : script.getBlocks()) {
+                    futures.add(executor.submit(() -> bluetoothManagerCli.runInSession(() -> execute(block))));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return COMMAND_FAILED;
+            } catch (ExecutionException ex) {
+                err.println("Block failed: " + ex.getCause());
+                failed.incrementAndGet();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        return failed.get() == 0 ? SUCCESS : COMMAND_FAILED;
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    private void execute(BatchScript.Block block) {
+        StringBuilder output = new StringBuilder();
+        execute(block.getCommands(), "[" + block.getLabel() + "] ", output);
+        synchronized (out) {
+            out.print(output);
+            out.flush();
+        }
+    }
+
+    private boolean execute(List<BatchScript.Command> commands, String prefix, StringBuilder output) {
+        for (BatchScript.Command command : commands) {
+            try {
+                ParseResult parseResult = parser.parse(command.getText());
+                if (parseResult == null) {
+                    throw new IllegalArgumentException("Invalid command");
+                }
+                Object result = parseResult.getMethod().invoke(parseResult.getInstance(),
+                        parseResult.getArguments());
+                if (result instanceof ExitShellRequest) {
+                    return true;
+                }
+                if (result != null) {
+                    append(output, prefix, result.toString());
+                }
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof CommandFailedException) {
+                    append(output, prefix, ((CommandFailedException) ex.getCause()).getOutput());
+                }
+                fail(prefix, command, ex.getCause());
+                return false;
+            } catch (Exception ex) {
+                fail(prefix, command, ex);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void append(StringBuilder output, String prefix, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        for (String line : text.split("\\R")) {
+            output.append(prefix).append(line).append(System.lineSeparator());
+        }
+    }
+
+    private void fail(String prefix, BatchScript.Command command, Throwable error) {
+        failed.incrementAndGet();
+        synchronized (err) {
+            err.println(prefix + "line " + command.getLineNumber() + ": " + command.getText() + ": "
+                    + (error.getMessage() != null ? error.getMessage() : error.toString()));
+        }
+    }
+
+    private static InputStream open(String file) throws IOException {
+        return STANDARD_INPUT.equals(file) ? System.in : new FileInputStream(file);
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth.cli.batch;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch script of shell commands. Commands before the first block separator form the prelude which is run
+ * sequentially, each block that follows is an independent command sequence that can be run in parallel
+ * with other blocks. A block starts with a separator line optionally followed by a label:
+ * <pre>
+ * # prelude
+ * discovery on
+ * --- sensor-1
+ * cd /XX:XX:XX:XX:XX:XX/11:22:33:44:55:66
+ * read --characteristic ...
+ * --- sensor-2
+ * ...
+ * </pre>
+ * Empty lines and lines starting with '#' or '//' are ignored.
+ */
+public class BatchScript {
+
+    static final String BLOCK_SEPARATOR = "---";
+
+    private final List<Command> prelude;
+    private final List<Block> blocks;
+
+    private BatchScript(List<Command> prelude, List<Block> blocks) {
+        this.prelude = Collections.unmodifiableList(prelude);
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    public static BatchScript parse(BufferedReader reader) throws IOException {
+        List<Command> prelude = new ArrayList<>();
+        List<Block> blocks = new ArrayList<>();
+        List<Command> current = prelude;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String text = line.trim();
+            if (text.isEmpty() || text.startsWith("#") || text.startsWith("//")) {
+                continue;
+            }
+            if (text.startsWith(BLOCK_SEPARATOR)) {
+                String label = text.substring(BLOCK_SEPARATOR.length()).trim();
+                Block block = new Block(label.isEmpty() ? "block-" + (blocks.size() + 1) : label);
+                blocks.add(block);
+                current = block.commands;
+                continue;
+            }
+            current.add(new Command(lineNumber, text));
+        }
+        return new BatchScript(prelude, blocks);
+    }
+
+    public List<Command> getPrelude() {
+        return prelude;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * A command line of the script.
+     */
+    public static final class Command {
+
+        private final int lineNumber;
+        private final String text;
+
+        private Command(int lineNumber, String text) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * An independent sequence of commands.
+     */
+    public static final class Block {
+
+        private final String label;
+        private final List<Command> commands = new ArrayList<>();
+
+        private Block(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public List<Command> getCommands() {
+            return Collections.unmodifiableList(commands);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.sputnikdev.bluetooth.cli.capture;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Binary layout of capture files.
+ *
+ * <p>A capture file starts with a header:
+ * <pre>
+ * int   magic
+ * short version
+ * short reserved
+ * long  wall-clock time (epoch millis) when the capture was started
+ * </pre>
+ * followed by records:
+ * <pre>
+ * byte  record type
+ * int   URL id
+ * long  nanoseconds since the capture was started
+ * int   payload length
+ * byte[] payload
+ * </pre>
+ * URLs are interned: the first time a URL is seen, a {@link #URL_DEFINITION} record with the URL id
+ * and the URL string (UTF-8) as the payload is written. A zero record type marks the end of data.
+ */
+public final class CaptureFormat {
+
+    public static final int MAGIC = 0x42544350;
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 17;
+
+    public static final byte END = 0;
+    public static final byte URL_DEFINITION = 1;
+    /**
+     * Characteristic value, payload is the value.
+     */
+    public static final byte VALUE = 2;
+    /**
+     * Device RSSI, payload is a short.
+     */
+    public static final byte RSSI = 3;
+    /**
+     * Service data, URL points to the service, payload is the data.
+     */
+    public static final byte SERVICE_DATA = 4;
+    /**
+     * Manufacturer data, URL points to the device, payload is a short manufacturer id followed by the data.
+     */
+    public static final byte MANUFACTURER_DATA = 5;
+    /**
+     * Device discovery, URL points to the device, payload is:
+     * short RSSI, int bluetooth class, byte BLE flag, short name length, name (UTF-8), short alias length,
+     * alias (UTF-8).
+     */
+    public static final byte DEVICE_DISCOVERED = 6;
+
+    private CaptureFormat() { }
+
+}
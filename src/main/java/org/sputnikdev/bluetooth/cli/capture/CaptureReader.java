@@ -0,0 +1,243 @@
+package org.sputnikdev.bluetooth.cli.capture;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+/**
+ * Reads records from a capture file sequentially through read-only memory-mapped windows.
+ * URL definition records are consumed by the reader itself, so that {@link #next()} only stops at event records.
+ * See {@link CaptureFormat} for the file layout.
+ */
+public class CaptureReader implements Closeable {
+
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final long size;
+    private final long startTime;
+    private final List<URL> urls = new ArrayList<>();
+
+    private MappedByteBuffer window;
+    private long windowPosition;
+
+    private byte type;
+    private int urlId;
+    private URL url;
+    private long timestamp;
+    private byte[] payload;
+
+    public CaptureReader(File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = randomAccessFile.getChannel();
+        this.size = channel.size();
+        this.urls.add(null);
+        if (size < CaptureFormat.HEADER_SIZE) {
+            close();
+            throw new IOException("Not a capture file: " + file);
+        }
+        map(0, CaptureFormat.HEADER_SIZE);
+        if (window.getInt() != CaptureFormat.MAGIC) {
+            close();
+            throw new IOException("Not a capture file: " + file);
+        }
+        short version = window.getShort();
+        if (version != CaptureFormat.VERSION) {
+            close();
+            throw new IOException("Unsupported capture file version: " + version);
+        }
+        window.getShort();
+        startTime = window.getLong();
+    }
+
+    /**
+     * Moves to the next event record.
+     * @return false if there are no more records
+     * @throws IOException if the file is corrupted
+     */
+    public boolean next() throws IOException {
+        while (ensure(CaptureFormat.RECORD_HEADER_SIZE)) {
+            type = window.get();
+            if (type == CaptureFormat.END) {
+                return false;
+            }
+            int urlId = window.getInt();
+            timestamp = window.getLong();
+            int length = window.getInt();
+            if (length < 0 || !ensure(length)) {
+                throw new IOException("Corrupted capture file: " + file);
+            }
+            byte[] data = new byte[length];
+            window.get(data);
+            if (type == CaptureFormat.URL_DEFINITION) {
+                define(urlId, new URL(new String(data, StandardCharsets.UTF_8)));
+                continue;
+            }
+            if (urlId <= 0 || urlId >= urls.size() || urls.get(urlId) == null) {
+                throw new IOException("Undefined URL id " + urlId + " in capture file: " + file);
+            }
+            this.urlId = urlId;
+            url = urls.get(urlId);
+            payload = data;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current record type, see {@link CaptureFormat}.
+     * @return record type
+     */
+    public byte getType() {
+        return type;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns id of the current record URL as it is defined in the capture file.
+     * @return URL id
+     */
+    public int getURLId() {
+        return urlId;
+    }
+
+    /**
+     * Returns nanoseconds since the capture was started.
+     * @return record timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns wall-clock time (epoch millis) when the capture was started.
+     * @return capture start time
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        randomAccessFile.close();
+    }
+
+    /**
+     * Decodes the payload of a {@link CaptureFormat#RSSI} record.
+     * @param payload payload
+     * @return RSSI
+     */
+    public static short getRSSI(byte[] payload) {
+        return ByteBuffer.wrap(payload).getShort();
+    }
+
+    /**
+     * Decodes the manufacturer id of a {@link CaptureFormat#MANUFACTURER_DATA} record.
+     * @param payload payload
+     * @return manufacturer id
+     */
+    public static short getManufacturerId(byte[] payload) {
+        return ByteBuffer.wrap(payload).getShort();
+    }
+
+    /**
+     * Decodes the manufacturer data of a {@link CaptureFormat#MANUFACTURER_DATA} record.
+     * @param payload payload
+     * @return manufacturer data
+     */
+    public static byte[] getManufacturerData(byte[] payload) {
+        byte[] data = new byte[payload.length - 2];
+        System.arraycopy(payload, 2, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * Decodes the payload of a {@link CaptureFormat#DEVICE_DISCOVERED} record.
+     * @param url device URL
+     * @param payload payload
+     * @return discovered device
+     */
+    public static DiscoveredDevice getDiscoveredDevice(URL url, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        short rssi = buffer.getShort();
+        int bluetoothClass = buffer.getInt();
+        boolean bleEnabled = buffer.get() != 0;
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        byte[] alias = new byte[buffer.getShort()];
+        buffer.get(alias);
+        return new DiscoveredDevice(url, new String(name, StandardCharsets.UTF_8),
+                alias.length > 0 ? new String(alias, StandardCharsets.UTF_8) : null, rssi, bluetoothClass, bleEnabled);
+    }
+
+    private void define(int urlId, URL definition) {
+        while (urls.size() <= urlId) {
+            urls.add(null);
+        }
+        urls.set(urlId, definition);
+    }
+
+    private boolean ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return true;
+        }
+        long position = windowPosition + window.position();
+        if (position + bytes > size) {
+            return false;
+        }
+        map(position, bytes);
+        return true;
+    }
+
+    private void map(long position, int minSize) throws IOException {
+        windowPosition = position;
+        long length = Math.min(size - position, Math.max(WINDOW_SIZE, minSize));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+}
@@ -0,0 +1,356 @@
+package org.sputnikdev.bluetooth.cli.capture;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+
+/**
+ * Appends records to a capture file through memory-mapped segments, so that writing a record is a memory copy
+ * rather than a system call. See {@link CaptureFormat} for the file layout.
+ *
+ * <p>Writers do not lock: a record claims its space by advancing the reserved counter of the current segment
+ * and is then copied in place. The record that does not fit into the segment any more ends it, its writer maps
+ * the next segment right after the last claimed record; other writers that overflowed wait for the new segment.
+ * Superseded segments are unmapped as soon as no writer uses them. Records of concurrent writers are therefore
+ * ordered by the time their space was claimed, not strictly by their timestamps.
+ */
+public class CaptureWriter implements Closeable {
+
+    private static final int UNDEFINED = 0;
+    private static final int DEFINING = 1;
+    private static final int DEFINED = 2;
+    private static final int CHUNK_BITS = 10;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final long startNanos;
+    private final URLInterner urlInterner;
+    // definition states of interned URL ids in chunks that are never copied, file ids are interned ids + 1
+    private volatile AtomicIntegerArray[] definitions = new AtomicIntegerArray[0];
+    // segments that have been superseded but might still be used by writers, guarded by this
+    private final List<Segment> retired = new ArrayList<>();
+    private final LongAdder records = new LongAdder();
+
+    private volatile Segment segment;
+    private volatile boolean closed;
+    private volatile IOException error;
+    private long closedSize;
+
+    /**
+     * Creates a new capture file (an existing file gets overwritten).
+     * @param file capture file
+     * @param segmentSize size of memory-mapped segments
+     * @param urlInterner interner that resolves URL ids passed to the writer
+     * @throws IOException if the file cannot be created
+     */
+    public CaptureWriter(File file, int segmentSize, URLInterner urlInterner) throws IOException {
+        this.file = file;
+        this.urlInterner = urlInterner;
+        this.segmentSize = segmentSize;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.randomAccessFile.setLength(0);
+        this.channel = randomAccessFile.getChannel();
+        this.startNanos = System.nanoTime();
+        Segment first = new Segment(channel, 0, Math.max(segmentSize, CaptureFormat.HEADER_SIZE + 1));
+        first.buffer.putInt(CaptureFormat.MAGIC);
+        first.buffer.putShort(CaptureFormat.VERSION);
+        first.buffer.putShort((short) 0);
+        first.buffer.putLong(System.currentTimeMillis());
+        first.reserved.set(CaptureFormat.HEADER_SIZE);
+        segment = first;
+    }
+
+    /**
+     * Appends a record. Safe to call from any thread.
+     * @param type record type
+     * @param urlId interned id of the source URL
+     * @param timestamp {@link System#nanoTime()} when the event was received
+     * @param payload payload
+     */
+    public void write(byte type, int urlId, long timestamp, byte[] payload) {
+        write(type, urlId, timestamp, false, (short) 0, payload);
+    }
+
+    /**
+     * Appends a manufacturer data record.
+     * @param urlId interned id of the device URL
+     * @param timestamp {@link System#nanoTime()} when the event was received
+     * @param manufacturerId manufacturer id
+     * @param data manufacturer data
+     */
+    public void writeManufacturerData(int urlId, long timestamp, short manufacturerId, byte[] data) {
+        write(CaptureFormat.MANUFACTURER_DATA, urlId, timestamp, true, manufacturerId, data);
+    }
+
+    /**
+     * Appends an RSSI record.
+     * @param urlId interned id of the device URL
+     * @param timestamp {@link System#nanoTime()} when the event was received
+     * @param rssi RSSI
+     */
+    public void writeRSSI(int urlId, long timestamp, short rssi) {
+        write(CaptureFormat.RSSI, urlId, timestamp, true, rssi, null);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public synchronized long getSize() {
+        if (closed) {
+            return closedSize;
+        }
+        return segment.getSize();
+    }
+
+    /**
+     * Returns the error that stopped the writer, e.g. a segment that could not be mapped.
+     * @return error or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Stops accepting records, waits for writers that are copying records and truncates the file
+     * to its actual size.
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Segment current = segment;
+        if (!current.sealed) {
+            current.sealed = true;
+            retired.add(current);
+        }
+        while (!retired.isEmpty()) {
+            release();
+            Thread.yield();
+        }
+        // no writer uses the segment any more, so its size is final
+        closedSize = current.getSize();
+        channel.truncate(closedSize);
+        randomAccessFile.close();
+    }
+
+    private void write(byte type, int urlId, long timestamp, boolean hasPrefix, short prefix, byte[] payload) {
+        if (closed) {
+            return;
+        }
+        int fileId = define(urlId, timestamp);
+        append(type, fileId, timestamp, hasPrefix, prefix, payload);
+    }
+
+    private int define(int urlId, long timestamp) {
+        AtomicIntegerArray chunk = chunk(urlId);
+        int index = urlId & ((1 << CHUNK_BITS) - 1);
+        if (chunk.get(index) != DEFINED) {
+            if (chunk.compareAndSet(index, UNDEFINED, DEFINING)) {
+                byte[] definition = urlInterner.get(urlId).toString().getBytes(StandardCharsets.UTF_8);
+                append(CaptureFormat.URL_DEFINITION, urlId + 1, timestamp, false, (short) 0, definition);
+                chunk.set(index, DEFINED);
+            } else {
+                // records may not precede the definition of their URL
+                while (chunk.get(index) != DEFINED && !closed) {
+                    Thread.yield();
+                }
+            }
+        }
+        return urlId + 1;
+    }
+
+    private AtomicIntegerArray chunk(int urlId) {
+        int index = urlId >>> CHUNK_BITS;
+        AtomicIntegerArray[] chunks = definitions;
+        if (index < chunks.length) {
+            return chunks[index];
+        }
+        synchronized (this) {
+            chunks = definitions;
+            if (index >= chunks.length) {
+                int length = chunks.length;
+                chunks = Arrays.copyOf(chunks, Math.max(index + 1, length * 2));
+                for (int i = length; i < chunks.length; i++) {
+                    chunks[i] = new AtomicIntegerArray(1 << CHUNK_BITS);
+                }
+                definitions = chunks;
+            }
+            return chunks[index];
+        }
+    }
+
+    private void append(byte type, int fileId, long timestamp, boolean hasPrefix, short prefix, byte[] payload) {
+        int length = (hasPrefix ? 2 : 0) + (payload != null ? payload.length : 0);
+        int size = CaptureFormat.RECORD_HEADER_SIZE + length;
+        while (!closed && error == null) {
+            Segment current = segment;
+            int start;
+            // a segment is not unmapped while it has users, see release
+            current.users.incrementAndGet();
+            try {
+                if (current.sealed) {
+                    continue;
+                }
+                start = current.reserved.getAndAdd(size);
+                // one extra byte is reserved for the end marker
+                if (start + size < current.capacity) {
+                    ByteBuffer buffer = current.buffer;
+                    int offset = start + 1;
+                    buffer.putInt(offset, fileId);
+                    buffer.putLong(offset + 4, timestamp - startNanos);
+                    buffer.putInt(offset + 12, length);
+                    offset += 16;
+                    if (hasPrefix) {
+                        buffer.putShort(offset, prefix);
+                        offset += 2;
+                    }
+                    if (payload != null) {
+                        for (byte value : payload) {
+                            buffer.put(offset++, value);
+                        }
+                    }
+                    // the type goes last, so that a torn record reads as the end of data
+                    buffer.put(start, type);
+                    records.increment();
+                    return;
+                }
+                if (start < current.capacity) {
+                    // the first record that does not fit, all records before it fit and all after it do not
+                    current.end = start;
+                }
+            } finally {
+                current.users.decrementAndGet();
+            }
+            if (start < current.capacity) {
+                next(current, size);
+            } else {
+                while (segment == current && !current.sealed && !closed && error == null) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private synchronized void next(Segment current, int size) {
+        if (closed || error != null) {
+            return;
+        }
+        try {
+            segment = new Segment(channel, current.position + current.end, Math.max(segmentSize, size + 1));
+        } catch (IOException ex) {
+            error = ex;
+            throw new IllegalStateException("Could not map next capture segment: " + file, ex);
+        } finally {
+            current.sealed = true;
+            retired.add(current);
+        }
+        release();
+    }
+
+    private void release() {
+        for (Iterator<Segment> iterator = retired.iterator(); iterator.hasNext();) {
+            Segment retiredSegment = iterator.next();
+            if (retiredSegment.users.get() == 0) {
+                retiredSegment.buffer.force();
+                unmap(retiredSegment.buffer);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Releases a mapped buffer straight away rather than when it gets garbage collected, which may be never
+     * for long recordings. The buffer must not be accessed afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException ex) {
+            try {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (ReflectiveOperationException | RuntimeException ignore) {
+                // the buffer is unmapped when it gets garbage collected
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignore) {
+            // the buffer is unmapped when it gets garbage collected
+        }
+    }
+
+    private static final class Segment {
+
+        private final MappedByteBuffer buffer;
+        private final long position;
+        private final int capacity;
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final AtomicInteger users = new AtomicInteger();
+        // offset of the first record that did not fit, set before the segment gets sealed
+        private volatile int end = Integer.MAX_VALUE;
+        private volatile boolean sealed;
+
+        private Segment(FileChannel channel, long position, int capacity) throws IOException {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, capacity);
+            this.position = position;
+            this.capacity = capacity;
+        }
+
+        private long getSize() {
+            return position + Math.min(Math.min(reserved.get(), end), capacity);
+        }
+    }
+
+}
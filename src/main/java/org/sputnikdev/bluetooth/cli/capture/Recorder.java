@@ -0,0 +1,170 @@
+package org.sputnikdev.bluetooth.cli.capture;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.devices.AdvertisementListener;
+import org.sputnikdev.bluetooth.cli.devices.AdvertisementTaps;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.DeviceDiscoveryListener;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+/**
+ * Records discovery events of all discovered devices and values of subscribed characteristics into a capture file,
+ * optionally with RSSI and advertised service/manufacturer data, see {@link AdvertisementTaps}.
+ */
+@Component
+public class Recorder implements DeviceDiscoveryListener {
+
+    private static final String SEGMENT_SIZE_PROPERTY = "bluetooth.cli.capture.segment";
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    private volatile CaptureWriter writer;
+    private volatile AdvertisementTaps taps;
+
+    /**
+     * Starts recording.
+     * @param file capture file
+     * @param advertisements whether RSSI updates and advertised data should be recorded too
+     * @throws IOException if the file cannot be created
+     */
+    public synchronized void start(File file, boolean advertisements) throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("Already recording into: " + writer.getFile());
+        }
+        writer = new CaptureWriter(file, Integer.getInteger(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE),
+                bluetoothManagerCli.getURLInterner());
+        taps = advertisements ? new AdvertisementTaps(bluetoothManagerCli, new CaptureListener(writer)) : null;
+        BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+        bluetoothManager.addDeviceDiscoveryListener(this);
+        bluetoothManager.getDiscoveredDevices().forEach(this::discovered);
+    }
+
+    public synchronized CaptureWriter stop() throws IOException {
+        CaptureWriter current = writer;
+        if (current == null) {
+            return null;
+        }
+        writer = null;
+        BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+        bluetoothManager.removeDeviceDiscoveryListener(this);
+        if (taps != null) {
+            taps.close();
+            taps = null;
+        }
+        current.close();
+        return current;
+    }
+
+    public CaptureWriter getWriter() {
+        return writer;
+    }
+
+    public boolean isRecording() {
+        return writer != null;
+    }
+
+    /**
+     * Records a characteristic value if recording is in progress.
+     * @param urlId interned id of the characteristic URL
+     * @param timestamp {@link System#nanoTime()} when the value was received
+     * @param value value
+     */
+    public void recordValue(int urlId, long timestamp, byte[] value) {
+        CaptureWriter current = writer;
+        if (current != null) {
+            current.write(CaptureFormat.VALUE, urlId, timestamp, value);
+        }
+    }
+
+    @Override
+    public void discovered(DiscoveredDevice discoveredDevice) {
+        CaptureWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        URL url = discoveredDevice.getURL();
+        current.write(CaptureFormat.DEVICE_DISCOVERED, bluetoothManagerCli.getURLInterner().id(url), System.nanoTime(),
+                encode(discoveredDevice));
+        AdvertisementTaps currentTaps = taps;
+        if (currentTaps != null) {
+            currentTaps.attach(url);
+        }
+    }
+
+    @Override
+    public void deviceLost(URL url) {
+        AdvertisementTaps currentTaps = taps;
+        if (currentTaps != null) {
+            currentTaps.detach(url);
+        }
+    }
+
+    static byte[] encode(DiscoveredDevice device) {
+        byte[] name = device.getName() != null ? device.getName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] alias = device.getAlias() != null ? device.getAlias().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4 + 1 + 2 + name.length + 2 + alias.length);
+        buffer.putShort(device.getRSSI());
+        buffer.putInt(device.getBluetoothClass());
+        buffer.put((byte) (device.isBleEnabled() ? 1 : 0));
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.putShort((short) alias.length);
+        buffer.put(alias);
+        return buffer.array();
+    }
+
+    private static final class CaptureListener implements AdvertisementListener {
+
+        private final CaptureWriter writer;
+
+        private CaptureListener(CaptureWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void rssiChanged(int deviceId, short rssi) {
+            writer.writeRSSI(deviceId, System.nanoTime(), rssi);
+        }
+
+        @Override
+        public void serviceDataChanged(int serviceId, byte[] data) {
+            writer.write(CaptureFormat.SERVICE_DATA, serviceId, System.nanoTime(), data);
+        }
+
+        @Override
+        public void manufacturerDataChanged(int deviceId, short manufacturerId, byte[] data) {
+            writer.writeManufacturerData(deviceId, System.nanoTime(), manufacturerId, data);
+        }
+    }
+
+}
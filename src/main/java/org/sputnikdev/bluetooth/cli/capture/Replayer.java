@@ -0,0 +1,227 @@
+package org.sputnikdev.bluetooth.cli.capture;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.commands.NotificationCommands;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.cli.pipeline.FramePipeline;
+
+/**
+ * Replays capture files through the same listener interfaces the CLI registers with the Bluetooth Manager:
+ * discovery events go to {@link BluetoothManagerCli#replayDiscovered}, device and characteristic events go
+ * to notification listeners created by {@link NotificationCommands}. Replaying does not require any bluetooth
+ * adapter.
+ */
+@Component
+public class Replayer {
+
+    private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+    private static final long DRAIN_CHECK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+    @Autowired
+    private NotificationCommands notificationCommands;
+
+    private volatile Replay current;
+
+    /**
+     * Starts replaying a capture file in background.
+     * @param file capture file
+     * @param speed replay speed factor, 0 means as fast as possible
+     * @return replay
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized Replay start(File file, double speed) throws IOException {
+        if (current != null && current.isRunning()) {
+            throw new IllegalStateException("Already replaying: " + current.reader.getFile());
+        }
+        current = new Replay(new CaptureReader(file), speed);
+        Thread thread = new Thread(current, "replay");
+        thread.setDaemon(true);
+        thread.start();
+        return current;
+    }
+
+    public synchronized Replay stop() {
+        Replay replay = current;
+        if (replay != null) {
+            replay.running = false;
+        }
+        return replay;
+    }
+
+    public Replay getCurrent() {
+        return current;
+    }
+
+    public final class Replay implements Runnable {
+
+        private final CaptureReader reader;
+        private final double speed;
+        private final Map<URL, NotificationCommands.NotificationLogger> listeners = new HashMap<>();
+        // listeners resolved by URL ids of the capture file, so that URLs are not hashed per event
+        private final List<NotificationCommands.NotificationLogger> listenersById = new ArrayList<>();
+        private final List<NotificationCommands.NotificationLogger> deviceListenersById = new ArrayList<>();
+        private final LatencyHistogram handling = new LatencyHistogram();
+        // replayed frames are kept out of the pipeline histogram, which reports latency of live notifications
+        private final LatencyHistogram pipelineLatency = new LatencyHistogram();
+        private volatile boolean running = true;
+        private volatile long events;
+        private volatile long started;
+        private volatile long finished;
+        private long droppedBefore;
+
+        private Replay(CaptureReader reader, double speed) {
+            this.reader = reader;
+            this.speed = speed;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void run() {
+            FramePipeline pipeline = notificationCommands.getPipeline();
+            droppedBefore = pipeline.getDropped();
+            started = System.nanoTime();
+            try {
+                long first = -1;
+                while (running && reader.next()) {
+                    if (first < 0) {
+                        first = reader.getTimestamp();
+                    }
+                    if (speed > 0) {
+                        await(started + (long) ((reader.getTimestamp() - first) / speed));
+                    }
+                    long begin = System.nanoTime();
+                    dispatch();
+                    handling.record(System.nanoTime() - begin);
+                    events++;
+                }
+                drain(pipeline);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Replay failed: " + reader.getFile(), ex);
+            } finally {
+                finished = System.nanoTime();
+                running = false;
+                try {
+                    reader.close();
+                } catch (IOException ignore) { }
+            }
+            logger.info("Replay finished: " + report());
+        }
+
+        /**
+         * Returns a report: events, throughput, handling latency (time spent in listeners)
+         * and end-to-end notification pipeline latency.
+         * @return report
+         */
+        public String report() {
+            long end = finished > 0 ? finished : System.nanoTime();
+            double seconds = Math.max(1, end - started) / 1e9;
+            FramePipeline pipeline = notificationCommands.getPipeline();
+            return reader.getFile() + (running ? " (running)" : "") + OsUtils.LINE_SEPARATOR
+                    + "Events: " + events + ", wall time: " + LatencyHistogram.format(end - started)
+                    + ", throughput: " + String.format("%.0f", events / seconds) + " events/s" + OsUtils.LINE_SEPARATOR
+                    + "Handling latency: " + handling.summary() + OsUtils.LINE_SEPARATOR
+                    + "Pipeline latency: " + pipelineLatency.summary() + OsUtils.LINE_SEPARATOR
+                    + "Dropped frames: " + (pipeline.getDropped() - droppedBefore);
+        }
+
+        private void dispatch() {
+            URL url = reader.getURL();
+            byte[] payload = reader.getPayload();
+            switch (reader.getType()) {
+                case CaptureFormat.DEVICE_DISCOVERED:
+                    bluetoothManagerCli.replayDiscovered(CaptureReader.getDiscoveredDevice(url, payload));
+                    break;
+                case CaptureFormat.RSSI:
+                    listener(url, false).rssiChanged(CaptureReader.getRSSI(payload));
+                    break;
+                case CaptureFormat.SERVICE_DATA:
+                    listener(url, true).serviceDataChanged(Collections.singletonMap(url, payload));
+                    break;
+                case CaptureFormat.MANUFACTURER_DATA:
+                    listener(url, false).manufacturerDataChanged(Collections.singletonMap(
+                            CaptureReader.getManufacturerId(payload), CaptureReader.getManufacturerData(payload)));
+                    break;
+                case CaptureFormat.VALUE:
+                    listener(url, false).changed(payload);
+                    break;
+                default:
+                    logger.fine("Unknown record type: " + reader.getType());
+            }
+        }
+
+        private NotificationCommands.NotificationLogger listener(URL url, boolean device) {
+            List<NotificationCommands.NotificationLogger> cache = device ? deviceListenersById : listenersById;
+            int id = reader.getURLId();
+            while (cache.size() <= id) {
+                cache.add(null);
+            }
+            NotificationCommands.NotificationLogger listener = cache.get(id);
+            if (listener == null) {
+                URL target = device ? url.getDeviceURL() : url;
+                listener = listeners.computeIfAbsent(bluetoothManagerCli.getURLInterner().intern(target),
+                        key -> notificationCommands.createReplayListener(key, pipelineLatency));
+                cache.set(id, listener);
+            }
+            return listener;
+        }
+
+        private void await(long due) {
+            long delay;
+            while (running && (delay = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+        }
+
+        private void drain(FramePipeline pipeline) {
+            long deadline = System.nanoTime() + DRAIN_TIMEOUT;
+            while (running && pipeline.size() > 0 && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(DRAIN_CHECK);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Values decoded by a {@link DecoderPlan}. Numbers and booleans are kept in primitive slots, only strings and
+ * floating point numbers are kept as objects. Instances are reusable, a plan overwrites all slots on decoding.
+ */
+public final class DecodedValues {
+
+    private DecoderPlan plan;
+    private int size;
+    private int[] steps = new int[8];
+    private long[] longs = new long[8];
+    private Object[] objects = new Object[8];
+
+    /**
+     * Number of decoded fields.
+     * @return number of decoded fields
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Name of the i-th decoded field.
+     * @param index field index
+     * @return field name
+     */
+    public String getName(int index) {
+        return plan.getName(steps[index]);
+    }
+
+    /**
+     * Raw (not scaled by exponents and multipliers) value of the i-th decoded field if it is an integer or a boolean.
+     * @param index field index
+     * @return raw value
+     */
+    public long getLong(int index) {
+        return longs[index];
+    }
+
+    /**
+     * Appends the value of the i-th field, rendered the same way as FieldHolder.getString() does.
+     * @param builder target
+     * @param index field index
+     * @return target
+     */
+    public StringBuilder appendValue(StringBuilder builder, int index) {
+        return plan.appendValue(builder, steps[index], longs[index], objects[index]);
+    }
+
+    void reset(DecoderPlan plan, int capacity) {
+        this.plan = plan;
+        size = 0;
+        if (steps.length < capacity) {
+            steps = new int[capacity];
+            longs = new long[capacity];
+            objects = new Object[capacity];
+        }
+    }
+
+    void add(int step, long value, Object object) {
+        steps[size] = step;
+        longs[size] = value;
+        objects[size] = object;
+        size++;
+    }
+
+}
@@ -0,0 +1,136 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+
+/**
+ * Caches per characteristic UUID whether the characteristic is known to the GATT parser and its compiled
+ * {@link DecoderPlan}. Characteristics that cannot be compiled are decoded by the GATT parser as before,
+ * unknown characteristics are rendered as hex.
+ * The cache must be invalidated when GATT specifications change, e.g. extensions are (re)loaded.
+ */
+public class DecoderCache {
+
+    private static final Decoder UNKNOWN = new Decoder(false, null);
+    private static final Decoder GENERIC = new Decoder(true, null);
+
+    private final BluetoothGattParser parser;
+    private final Map<String, Decoder> decoders = new ConcurrentHashMap<>();
+    private final ThreadLocal<DecodedValues> values = ThreadLocal.withInitial(DecodedValues::new);
+
+    public DecoderCache(BluetoothGattParser parser) {
+        this.parser = parser;
+    }
+
+    public BluetoothGattParser getParser() {
+        return parser;
+    }
+
+    public boolean isKnownCharacteristic(String characteristicUUID) {
+        return getDecoder(characteristicUUID).known;
+    }
+
+    /**
+     * Returns compiled decoding plan of a characteristic.
+     * @param characteristicUUID characteristic UUID
+     * @return compiled plan or null if the characteristic is unknown or cannot be compiled
+     */
+    public DecoderPlan getPlan(String characteristicUUID) {
+        return getDecoder(characteristicUUID).plan;
+    }
+
+    /**
+     * Renders a characteristic value: "name: value" columns of its fields for known characteristics
+     * and a list of hex bytes for unknown ones.
+     * @param builder target
+     * @param characteristicUUID characteristic UUID
+     * @param raw raw value
+     * @return target
+     */
+    public StringBuilder render(StringBuilder builder, String characteristicUUID, byte[] raw) {
+        Decoder decoder = getDecoder(characteristicUUID);
+        if (decoder.plan != null) {
+            return DecoderPlan.render(builder, decoder.plan.decode(raw, values.get()));
+        } else if (decoder.known) {
+            return render(builder, parser.parse(characteristicUUID, raw));
+        } else {
+            return HexCodec.appendList(builder, raw);
+        }
+    }
+
+    /**
+     * Renders fields parsed by the GATT parser, the output is the same as of compiled plans.
+     * @param builder target
+     * @param response parsed fields
+     * @return target
+     */
+    public static StringBuilder render(StringBuilder builder, GattResponse response) {
+        boolean first = true;
+        for (FieldHolder holder : response.getFieldHolders()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            builder.append(String.format("%-30s%-50s", holder.getField().getName() + ":", holder.getString(null)));
+        }
+        return builder;
+    }
+
+    public void invalidate() {
+        decoders.clear();
+    }
+
+    private Decoder getDecoder(String characteristicUUID) {
+        return decoders.computeIfAbsent(characteristicUUID, this::compile);
+    }
+
+    private Decoder compile(String characteristicUUID) {
+        if (!parser.isKnownCharacteristic(characteristicUUID)) {
+            return UNKNOWN;
+        }
+        Characteristic characteristic = parser.getCharacteristic(characteristicUUID);
+        if (!characteristic.isValidForRead() || characteristic.getValue() == null) {
+            // the generic parser reports the problem
+            return GENERIC;
+        }
+        DecoderPlan plan = DecoderPlan.compile(characteristic.getValue().getFields());
+        return plan != null ? new Decoder(true, plan) : GENERIC;
+    }
+
+    private static final class Decoder {
+
+        private final boolean known;
+        private final DecoderPlan plan;
+
+        private Decoder(boolean known, DecoderPlan plan) {
+            this.known = known;
+            this.plan = plan;
+        }
+    }
+
+}
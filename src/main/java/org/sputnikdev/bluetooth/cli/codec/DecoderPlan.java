@@ -0,0 +1,391 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicFormatException;
+import org.sputnikdev.bluetooth.gattparser.num.FloatingPointNumberFormatter;
+import org.sputnikdev.bluetooth.gattparser.spec.Bit;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldFormat;
+import org.sputnikdev.bluetooth.gattparser.spec.FieldType;
+import org.sputnikdev.bluetooth.gattparser.spec.FlagUtils;
+
+/**
+ * A characteristic field list compiled into a flat decoding plan: a sequence of steps with bit sizes, formats and
+ * requirement masks, plus lookup tables translating flag values into requirement masks. Decoding walks the steps
+ * and reads bits straight from the raw value, producing the same fields and values as GenericCharacteristicParser
+ * without building BitSets, requirement sets and field holders for every value.
+ * Only fields which can be decoded this way are compiled, see {@link #compile(List)}.
+ */
+public final class DecoderPlan {
+
+    private static final int FLAGS = 0;
+    private static final int BOOLEAN = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int FLOAT = 4;
+    private static final int STRING = 5;
+
+    private static final String MANDATORY = "Mandatory";
+    // the bit of the "Mandatory" requirement, it is always set
+    private static final long MANDATORY_MASK = 1L;
+    private static final String NAME_SUFFIX = ":";
+    private static final String FIELD_SEPARATOR = ",";
+    private static final int NAME_WIDTH = 30;
+    private static final int VALUE_WIDTH = 50;
+
+    private final String[] names;
+    private final int[] kinds;
+    private final int[] sizes;
+    private final boolean[] signed;
+    private final long[] requirements;
+    private final Object[] formats;
+    private final int flagsOffset;
+    private final int[] flagSizes;
+    private final long[][] flagMasks;
+
+    private DecoderPlan(String[] names, int[] kinds, int[] sizes, boolean[] signed, long[] requirements,
+                        Object[] formats, int flagsOffset, int[] flagSizes, long[][] flagMasks) {
+        this.names = names;
+        this.kinds = kinds;
+        this.sizes = sizes;
+        this.signed = signed;
+        this.requirements = requirements;
+        this.formats = formats;
+        this.flagsOffset = flagsOffset;
+        this.flagSizes = flagSizes;
+        this.flagMasks = flagMasks;
+    }
+
+    /**
+     * Compiles a field list of a characteristic. Fields referencing other characteristics, structures,
+     * 64 bit unsigned (and wider) integers, flag bits wider than 8 bits and duplicate field names are not supported.
+     * @param fields characteristic fields
+     * @return compiled plan or null if any of the fields cannot be compiled
+     */
+    public static DecoderPlan compile(List<Field> fields) {
+        int count = fields.size();
+        String[] names = new String[count];
+        int[] kinds = new int[count];
+        int[] sizes = new int[count];
+        boolean[] signed = new boolean[count];
+        long[] requirements = new long[count];
+        Object[] formats = new Object[count];
+        Map<String, Long> requirementBits = new HashMap<>();
+        requirementBits.put(MANDATORY, MANDATORY_MASK);
+        Set<String> uniqueNames = new HashSet<>();
+
+        int flagsOffset = -1;
+        int[] flagSizes = null;
+        long[][] flagMasks = null;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            Field field = fields.get(i);
+            FieldFormat format = field.getFormat();
+            if (field.getReference() != null || format == null) {
+                return null;
+            }
+            int size = format.getSize();
+            names[i] = field.getName();
+            sizes[i] = size;
+            requirements[i] = mask(field.getRequirements(), requirementBits);
+            if (requirements[i] < 0) {
+                return null;
+            }
+            if (FlagUtils.isFlagsField(field)) {
+                kinds[i] = FLAGS;
+                if (flagsOffset < 0 && offset < 0) {
+                    // flags following a variable length field cannot be located
+                    return null;
+                } else if (flagsOffset < 0) {
+                    // only the first flags field is taken into account, the same as FlagUtils.getReadFlags does
+                    List<Bit> bits = field.getBitField().getBits();
+                    flagSizes = new int[bits.size()];
+                    flagMasks = new long[bits.size()][];
+                    for (int b = 0; b < bits.size(); b++) {
+                        flagSizes[b] = bits.get(b).getSize();
+                        flagMasks[b] = compileFlag(bits.get(b), requirementBits);
+                        if (flagMasks[b] == null) {
+                            return null;
+                        }
+                    }
+                    flagsOffset = offset;
+                }
+            } else {
+                kinds[i] = kindOf(format);
+                signed[i] = format.getType() == FieldType.SINT;
+                formats[i] = formatOf(format);
+                if (kinds[i] < 0 || !uniqueNames.add(field.getName())) {
+                    return null;
+                }
+            }
+            if (size == FieldFormat.FULL_SIZE) {
+                offset = -1;
+            } else if (offset >= 0) {
+                offset += size;
+            }
+        }
+        return new DecoderPlan(names, kinds, sizes, signed, requirements, formats, flagsOffset, flagSizes, flagMasks);
+    }
+
+    /**
+     * Decodes a raw value.
+     * @param raw raw value
+     * @param target holder for decoded values, its previous content is discarded
+     * @return target
+     * @throws CharacteristicFormatException if there is not enough data, same as the generic parser
+     */
+    public DecodedValues decode(byte[] raw, DecodedValues target) {
+        target.reset(this, names.length);
+        long active = MANDATORY_MASK;
+        if (flagsOffset >= 0) {
+            int offset = flagsOffset;
+            for (int b = 0; b < flagSizes.length; b++) {
+                active |= flagMasks[b][(int) readBits(raw, offset, flagSizes[b])];
+                offset += flagSizes[b];
+            }
+        }
+        int offset = 0;
+        for (int i = 0; i < names.length; i++) {
+            if ((requirements[i] & active) != requirements[i]) {
+                continue;
+            }
+            int size = sizes[i];
+            if (kinds[i] == FLAGS) {
+                offset += size;
+                continue;
+            }
+            if (size != FieldFormat.FULL_SIZE && offset + size > raw.length * 8) {
+                throw new CharacteristicFormatException("Not enough bits to parse field \"" + names[i]
+                        + "\". Data length: " + raw.length
+                        + " bytes. Looks like your device does not conform SIG specification.");
+            }
+            decodeField(i, raw, offset, target);
+            if (size == FieldFormat.FULL_SIZE) {
+                break;
+            }
+            offset += size;
+        }
+        return target;
+    }
+
+    /**
+     * Renders decoded values as "name: value" columns separated by commas.
+     * @param builder target
+     * @param values decoded values
+     * @return target
+     */
+    public static StringBuilder render(StringBuilder builder, DecodedValues values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                builder.append(FIELD_SEPARATOR);
+            }
+            int start = builder.length();
+            builder.append(values.getName(i)).append(NAME_SUFFIX);
+            pad(builder, start + NAME_WIDTH);
+            start = builder.length();
+            values.appendValue(builder, i);
+            pad(builder, start + VALUE_WIDTH);
+        }
+        return builder;
+    }
+
+    String getName(int step) {
+        return names[step];
+    }
+
+    StringBuilder appendValue(StringBuilder builder, int step, long value, Object object) {
+        switch (kinds[step]) {
+            case BOOLEAN:
+                return builder.append(value != 0);
+            case INTEGER:
+                return builder.append((int) value);
+            case LONG:
+                return builder.append(value);
+            default:
+                return builder.append(object);
+        }
+    }
+
+    static void pad(StringBuilder builder, int length) {
+        while (builder.length() < length) {
+            builder.append(' ');
+        }
+    }
+
+    private void decodeField(int step, byte[] raw, int offset, DecodedValues target) {
+        int size = sizes[step];
+        switch (kinds[step]) {
+            case BOOLEAN:
+                target.add(step, readBits(raw, offset, 1), null);
+                break;
+            case INTEGER:
+            case LONG:
+                long value = readBits(raw, offset, size);
+                if (signed[step] && size > 1 && size < 64 && (value & (1L << (size - 1))) != 0) {
+                    value |= -1L << size;
+                }
+                target.add(step, value, null);
+                break;
+            case FLOAT:
+                FloatingPointNumberFormatter formatter = (FloatingPointNumberFormatter) formats[step];
+                BitSet bits = BitSet.valueOf(raw).get(offset, offset + size);
+                Object number;
+                if (size == 16) {
+                    number = formatter.deserializeSFloat(bits);
+                } else if (size == 32) {
+                    number = formatter.deserializeFloat(bits);
+                } else {
+                    number = formatter.deserializeDouble(bits);
+                }
+                target.add(step, 0, number);
+                break;
+            default:
+                target.add(step, 0, readString(raw, offset, (Charset) formats[step]));
+                break;
+        }
+    }
+
+    private static String readString(byte[] raw, int offset, Charset charset) {
+        if ((offset & 7) != 0) {
+            return new String(BitSet.valueOf(raw).get(offset, offset + raw.length * 8).toByteArray(), charset);
+        }
+        // BitSet.toByteArray drops trailing zero bytes, e.g. null terminators, so do we
+        int from = offset >>> 3;
+        int to = raw.length;
+        while (to > from && raw[to - 1] == 0) {
+            to--;
+        }
+        return from < to ? new String(raw, from, to - from, charset) : "";
+    }
+
+    /**
+     * Reads an unsigned little endian number of up to 64 bits, bits past the end of data are read as zeros.
+     */
+    static long readBits(byte[] raw, int offset, int size) {
+        long value = 0;
+        if ((offset & 7) == 0 && (size & 7) == 0) {
+            int from = offset >>> 3;
+            int to = Math.min(raw.length, from + (size >>> 3));
+            for (int i = from; i < to; i++) {
+                value |= (raw[i] & 0xffL) << ((i - from) << 3);
+            }
+            return value;
+        }
+        for (int i = 0; i < size; i++) {
+            int bit = offset + i;
+            int index = bit >>> 3;
+            if (index >= raw.length) {
+                break;
+            }
+            if ((raw[index] >>> (bit & 7) & 1) != 0) {
+                value |= 1L << i;
+            }
+        }
+        return value;
+    }
+
+    private static int kindOf(FieldFormat format) {
+        int size = format.getSize();
+        switch (format.getType()) {
+            case BOOLEAN:
+                return BOOLEAN;
+            case UINT:
+                return size < 32 ? INTEGER : size < 64 ? LONG : -1;
+            case SINT:
+                return size <= 32 ? INTEGER : size <= 64 ? LONG : -1;
+            case FLOAT_IEE754:
+            case FLOAT_IEE11073:
+                return size == 16 || size == 32 || size == 64 ? FLOAT : -1;
+            case UTF8S:
+            case UTF16S:
+                return STRING;
+            default:
+                return -1;
+        }
+    }
+
+    private static Object formatOf(FieldFormat format) {
+        switch (format.getType()) {
+            case FLOAT_IEE754:
+                return BluetoothGattParserFactory.getIEEE754FloatingPointNumberFormatter();
+            case FLOAT_IEE11073:
+                return BluetoothGattParserFactory.getIEEE11073FloatingPointNumberFormatter();
+            case UTF8S:
+                return StandardCharsets.UTF_8;
+            case UTF16S:
+                return StandardCharsets.UTF_16;
+            default:
+                return null;
+        }
+    }
+
+    private static long[] compileFlag(Bit bit, Map<String, Long> requirementBits) {
+        if (bit.getSize() > 8) {
+            return null;
+        }
+        long[] masks = new long[1 << bit.getSize()];
+        for (int value = 0; value < masks.length; value++) {
+            String requires = bit.getFlag((byte) value);
+            if (requires != null) {
+                masks[value] = mask(Arrays.asList(requires.split(",")), requirementBits);
+                if (masks[value] < 0) {
+                    return null;
+                }
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Translates requirements into a bit mask, each distinct requirement gets its own bit.
+     * @return bit mask or -1 if there are more than 63 distinct requirements
+     */
+    private static long mask(List<String> requires, Map<String, Long> requirementBits) {
+        long mask = 0;
+        if (requires != null) {
+            for (String requirement : requires) {
+                Long bit = requirementBits.get(requirement);
+                if (bit == null) {
+                    if (requirementBits.size() == 63) {
+                        return -1;
+                    }
+                    bit = 1L << requirementBits.size();
+                    requirementBits.put(requirement, bit);
+                }
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses durations in a short form (500ms, 10s, 5m, 1h, 1d) or ISO-8601 (PT10S).
+ * A number without a unit is treated as seconds.
+ */
+public final class Durations {
+
+    private static final Pattern SHORT_FORMAT = Pattern.compile("^(?<amount>\\d+)\\s*(?<unit>ms|s|m|h|d)?$");
+
+    private Durations() { }
+
+    /**
+     * Parses a duration either in the short form (500ms, 10s, 5m, 1h, 1d) or in ISO-8601 format.
+     * @param value duration
+     * @return parsed duration
+     * @throws IllegalArgumentException if the duration is invalid
+     */
+    public static Duration parse(String value) {
+        String text = value.trim().toLowerCase();
+        Matcher matcher = SHORT_FORMAT.matcher(text);
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group("amount"));
+            String unit = matcher.group("unit");
+            if (unit == null || "s".equals(unit)) {
+                return Duration.ofSeconds(amount);
+            }
+            switch (unit) {
+                case "ms": return Duration.ofMillis(amount);
+                case "m": return Duration.ofMinutes(amount);
+                case "h": return Duration.ofHours(amount);
+                default: return Duration.ofDays(amount);
+            }
+        }
+        try {
+            return Duration.parse(value.trim().toUpperCase());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid duration: " + value, ex);
+        }
+    }
+
+}
@@ -0,0 +1,464 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.thoughtworks.xstream.converters.reflection.SunUnsafeReflectionProvider;
+import org.slf4j.LoggerFactory;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.CharacteristicParser;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+
+/**
+ * A binary snapshot of the active GATT specification set (built-in specifications and user extensions).
+ * Reading hundreds of XML specification files on every start is the largest fixed startup cost, so the
+ * specifications are compiled once into an index file which is memory-mapped on later starts.
+ *
+ * <p>The index is stamped with a fingerprint of its sources (the GATT parser library and names, sizes and
+ * timestamps of extension files) and is rebuilt when the fingerprint changes. The index is written into
+ * a temporary file which is then moved in place, so that concurrently started instances never see
+ * a partially written index.
+ *
+ * <p>Specification objects are plain beans populated by XStream from XML, the index stores lookup maps
+ * of the specification reader and fields of the beans reflectively, preserving object identity
+ * (a characteristic is shared by several maps). The index describes the layout of every stored class,
+ * an index whose layout does not match the loaded library is treated as stale.
+ */
+public final class GattSpecIndex {
+
+    public static final String INDEX_FILE = "gatt-spec.idx";
+
+    static final int MAGIC = 0x47535058;
+    static final short VERSION = 1;
+
+    private static final Logger LOGGER = HandlerUtils.getLogger(GattSpecIndex.class);
+
+    private static final String[] EXTENSION_FOLDERS = {"service", "characteristic"};
+    private static final String SPEC_PACKAGE = "org.sputnikdev.bluetooth.gattparser.spec.";
+
+    private static final byte NULL = 0;
+    private static final byte REFERENCE = 1;
+    private static final byte STRING = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte BIG_INTEGER = 6;
+    private static final byte LIST = 7;
+    private static final byte OBJECT = 8;
+    private static final byte URL_STRING = 9;
+
+    private static final Map<Class<?>, java.lang.reflect.Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    private GattSpecIndex() { }
+
+    /**
+     * Creates a GATT parser with built-in specifications and extensions of a folder, reading them from the index
+     * file in that folder if it is up to date, otherwise reading the XML files and (re)building the index.
+     * @param extensionFolder extension folder, e.g. ~/.bluetooth_smart, the index file is created in it
+     * @return GATT parser
+     */
+    public static BluetoothGattParser load(File extensionFolder) {
+        File index = new File(extensionFolder, INDEX_FILE);
+        long fingerprint = fingerprint(extensionFolder);
+        if (index.isFile()) {
+            try {
+                BluetoothGattSpecificationReader reader = read(index, fingerprint);
+                if (reader != null) {
+                    return createParser(reader);
+                }
+            } catch (IOException | RuntimeException | ReflectiveOperationException ex) {
+                LOGGER.log(Level.WARNING, "Could not read GATT specification index: " + index, ex);
+            }
+        }
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        if (extensionFolder.isDirectory()) {
+            parser.loadExtensionsFromFolder(extensionFolder.getAbsolutePath());
+        }
+        try {
+            BluetoothGattSpecificationReader reader = BluetoothGattParserFactory.getSpecificationReader();
+            materialize(reader);
+            write(reader, index, fingerprint);
+            LOGGER.info("GATT specification index has been rebuilt: " + index);
+        } catch (IOException | RuntimeException | ReflectiveOperationException ex) {
+            LOGGER.log(Level.WARNING, "Could not write GATT specification index: " + index, ex);
+        }
+        return parser;
+    }
+
+    /**
+     * Reads a specification reader from an index file.
+     * @param index index file
+     * @param fingerprint expected fingerprint of sources
+     * @return specification reader or null if the index is stale
+     * @throws IOException if the file cannot be read
+     * @throws ReflectiveOperationException if the index cannot be applied to specification classes
+     */
+    static BluetoothGattSpecificationReader read(File index, long fingerprint)
+            throws IOException, ReflectiveOperationException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION || buffer.getLong() != fingerprint) {
+            return null;
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        int classCount = buffer.getShort();
+        for (int i = 0; i < classCount; i++) {
+            Class<?> type = Class.forName(readString(buffer));
+            if (!readString(buffer).equals(layout(type))) {
+                return null;
+            }
+            classes.add(type);
+        }
+        // the public constructor reads the built-in catalog, which is exactly what is avoided
+        BluetoothGattSpecificationReader reader = (BluetoothGattSpecificationReader)
+                new SunUnsafeReflectionProvider().newInstance(BluetoothGattSpecificationReader.class);
+        List<Object> objects = new ArrayList<>();
+        for (java.lang.reflect.Field field : readerFields()) {
+            if (org.slf4j.Logger.class.equals(field.getType())) {
+                field.set(reader, LoggerFactory.getLogger(BluetoothGattSpecificationReader.class));
+                continue;
+            }
+            int size = buffer.getInt();
+            Map<Object, Object> map = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(readString(buffer), readValue(buffer, classes, objects));
+            }
+            field.set(reader, map);
+        }
+        return reader;
+    }
+
+    /**
+     * Writes specifications of a reader into an index file.
+     * @param reader specification reader
+     * @param index index file
+     * @param fingerprint fingerprint of sources
+     * @throws IOException if the file cannot be written
+     * @throws ReflectiveOperationException if specification classes cannot be accessed
+     */
+    static void write(BluetoothGattSpecificationReader reader, File index, long fingerprint)
+            throws IOException, ReflectiveOperationException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256 * 1024);
+        List<Class<?>> classes = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            Map<Object, Integer> objects = new IdentityHashMap<>();
+            for (java.lang.reflect.Field field : readerFields()) {
+                if (org.slf4j.Logger.class.equals(field.getType())) {
+                    continue;
+                }
+                Map<?, ?> map = (Map<?, ?>) field.get(reader);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(out, (String) entry.getKey());
+                    writeValue(out, entry.getValue(), classes, objects);
+                }
+            }
+        }
+
+        File folder = index.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create folder: " + folder);
+        }
+        File temp = File.createTempFile(INDEX_FILE, ".tmp", folder);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(fingerprint);
+                out.writeShort(classes.size());
+                for (Class<?> type : classes) {
+                    writeString(out, type.getName());
+                    writeString(out, layout(type));
+                }
+                body.writeTo(out);
+            }
+            Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Computes a fingerprint of specification sources: the GATT parser library and extension files.
+     * @param extensionFolder extension folder
+     * @return fingerprint
+     */
+    static long fingerprint(File extensionFolder) {
+        long hash = mix(1125899906842597L, extensionFolder.getAbsolutePath().hashCode());
+        CodeSource codeSource = BluetoothGattParser.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            hash = mix(hash, codeSource.getLocation().toString().hashCode());
+            try {
+                hash = mixFile(hash, new File(codeSource.getLocation().toURI()));
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                // not a file, the location alone identifies the library
+            }
+        }
+        for (String name : EXTENSION_FOLDERS) {
+            File[] files = new File(extensionFolder, name).listFiles();
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files, Comparator.comparing(File::getName));
+            for (File file : files) {
+                hash = mixFile(mix(hash, file.getName().hashCode()), file);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Loads all specifications of the catalog, built-in specifications are otherwise read from XML on first use.
+     * @param reader specification reader
+     * @throws ReflectiveOperationException if the catalog cannot be accessed
+     */
+    private static void materialize(BluetoothGattSpecificationReader reader) throws ReflectiveOperationException {
+        for (String uuid : registry(reader, "servicesRegistry")) {
+            try {
+                reader.getService(uuid);
+            } catch (RuntimeException ex) {
+                LOGGER.fine("Skipping invalid service specification: " + uuid + ": " + ex);
+            }
+        }
+        for (String uuid : registry(reader, "characteristicsRegistry")) {
+            try {
+                reader.getCharacteristicByUUID(uuid);
+            } catch (RuntimeException ex) {
+                // the same happens on first use when the specification is read lazily
+                LOGGER.fine("Skipping invalid characteristic specification: " + uuid + ": " + ex);
+            }
+        }
+    }
+
+    private static List<String> registry(BluetoothGattSpecificationReader reader, String name)
+            throws ReflectiveOperationException {
+        java.lang.reflect.Field field = BluetoothGattSpecificationReader.class.getDeclaredField(name);
+        field.setAccessible(true);
+        List<String> uuids = new ArrayList<>();
+        for (Object uuid : ((Map<?, ?>) field.get(reader)).keySet()) {
+            uuids.add((String) uuid);
+        }
+        return uuids;
+    }
+
+    private static BluetoothGattParser createParser(BluetoothGattSpecificationReader reader)
+            throws ReflectiveOperationException {
+        // the same wiring as BluetoothGattParserFactory.getDefault() does, but with the given reader
+        Constructor<?> parserConstructor = Class.forName("org.sputnikdev.bluetooth.gattparser."
+                + "GenericCharacteristicParser").getDeclaredConstructor(BluetoothGattSpecificationReader.class);
+        parserConstructor.setAccessible(true);
+        Constructor<BluetoothGattParser> constructor = BluetoothGattParser.class.getDeclaredConstructor(
+                BluetoothGattSpecificationReader.class, CharacteristicParser.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(reader, parserConstructor.newInstance(reader));
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, List<Class<?>> classes,
+                                   Map<Object, Integer> objects) throws IOException, ReflectiveOperationException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            out.writeByte(BIG_INTEGER);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof URL) {
+            out.writeByte(URL_STRING);
+            writeString(out, value.toString());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element, classes, objects);
+            }
+        } else {
+            Integer id = objects.get(value);
+            if (id != null) {
+                out.writeByte(REFERENCE);
+                out.writeInt(id);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (!type.getName().startsWith(SPEC_PACKAGE)) {
+                throw new IllegalStateException("Unsupported specification type: " + type);
+            }
+            int classIndex = classes.indexOf(type);
+            if (classIndex < 0) {
+                classIndex = classes.size();
+                classes.add(type);
+            }
+            objects.put(value, objects.size());
+            out.writeByte(OBJECT);
+            out.writeShort(classIndex);
+            for (java.lang.reflect.Field field : fields(type)) {
+                writeValue(out, field.get(value), classes, objects);
+            }
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, List<Class<?>> classes, List<Object> objects)
+            throws ReflectiveOperationException {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case REFERENCE:
+                return objects.get(buffer.getInt());
+            case STRING:
+                return readString(buffer);
+            case INTEGER:
+                return buffer.getInt();
+            case DOUBLE:
+                return buffer.getDouble();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case BIG_INTEGER:
+                byte[] bytes = new byte[buffer.getShort()];
+                buffer.get(bytes);
+                return new BigInteger(bytes);
+            case URL_STRING:
+                try {
+                    return new URL(readString(buffer));
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Invalid URL in GATT specification index", ex);
+                }
+            case LIST:
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer, classes, objects));
+                }
+                return list;
+            case OBJECT:
+                Class<?> type = classes.get(buffer.getShort());
+                Object object = type.getDeclaredConstructor().newInstance();
+                objects.add(object);
+                for (java.lang.reflect.Field field : fields(type)) {
+                    Object value = readValue(buffer, classes, objects);
+                    if (value != null || !field.getType().isPrimitive()) {
+                        field.set(object, value);
+                    }
+                }
+                return object;
+            default:
+                throw new IllegalStateException("Corrupted GATT specification index, unknown tag: " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns fields of the specification reader that the index restores: lookup maps and the logger.
+     * @return fields
+     */
+    private static java.lang.reflect.Field[] readerFields() {
+        java.lang.reflect.Field[] fields = fields(BluetoothGattSpecificationReader.class);
+        for (java.lang.reflect.Field field : fields) {
+            if (!Map.class.equals(field.getType()) && !org.slf4j.Logger.class.equals(field.getType())) {
+                throw new IllegalStateException("Unsupported specification reader field: " + field);
+            }
+        }
+        return fields;
+    }
+
+    private static java.lang.reflect.Field[] fields(Class<?> type) {
+        return FIELDS.computeIfAbsent(type, key -> Arrays.stream(key.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic())
+                .sorted(Comparator.comparing(java.lang.reflect.Field::getName))
+                .peek(field -> field.setAccessible(true))
+                .toArray(java.lang.reflect.Field[]::new));
+    }
+
+    private static String layout(Class<?> type) {
+        StringBuilder builder = new StringBuilder();
+        for (java.lang.reflect.Field field : fields(type)) {
+            builder.append(field.getName()).append(':').append(field.getType().getName()).append(';');
+        }
+        return builder.toString();
+    }
+
+    private static long mixFile(long hash, File file) {
+        return mix(mix(hash, file.length()), file.lastModified());
+    }
+
+    private static long mix(long hash, long value) {
+        long result = (hash ^ value) * 0x100000001b3L;
+        return result ^ (result >>> 29);
+    }
+
+}
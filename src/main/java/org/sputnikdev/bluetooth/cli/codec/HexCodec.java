@@ -0,0 +1,113 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Renders bytes as hex digits. All methods write into a caller supplied buffer through a lookup table,
+ * so that rendering a value does not allocate anything apart from (possibly) growing the buffer.
+ * Lowercase hex digits are used throughout.
+ */
+public final class HexCodec {
+
+    /**
+     * Default separator of the list format, e.g. [16, 4b, 3a, 03].
+     */
+    public static final String LIST_SEPARATOR = ", ";
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    // two characters per byte value, indexed by (value & 0xff) << 1
+    private static final char[] TABLE = new char[512];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            TABLE[i << 1] = DIGITS[i >>> 4];
+            TABLE[(i << 1) + 1] = DIGITS[i & 0x0f];
+        }
+    }
+
+    private HexCodec() { }
+
+    /**
+     * Appends two hex digits of a byte.
+     * @param builder target
+     * @param value byte
+     * @return target
+     */
+    public static StringBuilder append(StringBuilder builder, byte value) {
+        int index = (value & 0xff) << 1;
+        return builder.append(TABLE[index]).append(TABLE[index + 1]);
+    }
+
+    /**
+     * Appends hex digits of a range of bytes, optionally separating groups of bytes.
+     * @param builder target
+     * @param data bytes
+     * @param offset first byte
+     * @param length number of bytes
+     * @param group number of bytes in a group, 0 for no grouping
+     * @param separator group separator
+     * @return target
+     */
+    public static StringBuilder append(StringBuilder builder, byte[] data, int offset, int length,
+                                       int group, CharSequence separator) {
+        builder.ensureCapacity(builder.length() + length * 2
+                + (group > 0 ? (length / group) * separator.length() : 0));
+        for (int i = 0; i < length; i++) {
+            if (group > 0 && i > 0 && i % group == 0) {
+                builder.append(separator);
+            }
+            append(builder, data[offset + i]);
+        }
+        return builder;
+    }
+
+    /**
+     * Appends hex digits of all bytes without any separators, e.g. 164b3a03.
+     * @param builder target
+     * @param data bytes
+     * @return target
+     */
+    public static StringBuilder append(StringBuilder builder, byte[] data) {
+        return append(builder, data, 0, data.length, 0, "");
+    }
+
+    /**
+     * Appends bytes in the list format, e.g. [16, 4b, 3a, 03].
+     * @param builder target
+     * @param data bytes
+     * @return target
+     */
+    public static StringBuilder appendList(StringBuilder builder, byte[] data) {
+        builder.append('[');
+        append(builder, data, 0, data.length, 1, LIST_SEPARATOR);
+        return builder.append(']');
+    }
+
+    /**
+     * Converts bytes into the list format, e.g. [16, 4b, 3a, 03].
+     * @param data bytes
+     * @return formatted bytes
+     */
+    public static String toList(byte[] data) {
+        return appendList(new StringBuilder(data.length * 4 + 2), data).toString();
+    }
+
+}
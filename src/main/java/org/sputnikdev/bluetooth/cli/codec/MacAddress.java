@@ -0,0 +1,112 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Packs 48 bit MAC addresses (AA:BB:CC:DD:EE:FF) into a long, so that they can be used as primitive keys
+ * and compared without string processing.
+ */
+public final class MacAddress {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int LENGTH = 6;
+
+    private MacAddress() { }
+
+    /**
+     * Packs a MAC address into a long, the first octet being the most significant one.
+     * @param address MAC address, octets separated by ':' or '-'
+     * @return packed address
+     * @throws IllegalArgumentException if the address is malformed
+     */
+    public static long toLong(CharSequence address) {
+        if (address.length() != LENGTH * 3 - 1) {
+            throw new IllegalArgumentException("Invalid MAC address: " + address);
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int position = i * 3;
+            if (i > 0 && address.charAt(position - 1) != ':' && address.charAt(position - 1) != '-') {
+                throw new IllegalArgumentException("Invalid MAC address: " + address);
+            }
+            value = value << 8 | digit(address, position) << 4 | digit(address, position + 1);
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether a string is a MAC address.
+     * @param address string to check, can be null
+     * @return true if the string is a MAC address
+     */
+    public static boolean isValid(CharSequence address) {
+        if (address == null || address.length() != LENGTH * 3 - 1) {
+            return false;
+        }
+        try {
+            toLong(address);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Formats a packed MAC address, e.g. AA:BB:CC:DD:EE:FF.
+     * @param address packed address
+     * @return formatted address
+     */
+    public static String toString(long address) {
+        char[] chars = new char[LENGTH * 3 - 1];
+        for (int i = 0; i < LENGTH; i++) {
+            int octet = (int) (address >>> ((LENGTH - 1 - i) * 8)) & 0xff;
+            int position = i * 3;
+            chars[position] = DIGITS[octet >>> 4];
+            chars[position + 1] = DIGITS[octet & 0x0f];
+            if (i < LENGTH - 1) {
+                chars[position + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns octets of a packed MAC address, the first octet being the most significant one.
+     * @param address packed address
+     * @return 6 bytes
+     */
+    public static byte[] toBytes(long address) {
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            bytes[i] = (byte) (address >>> ((LENGTH - 1 - i) * 8));
+        }
+        return bytes;
+    }
+
+    private static int digit(CharSequence address, int position) {
+        int digit = Character.digit(address.charAt(position), 16);
+        if (digit < 0) {
+            throw new IllegalArgumentException("Invalid MAC address: " + address);
+        }
+        return digit;
+    }
+
+}
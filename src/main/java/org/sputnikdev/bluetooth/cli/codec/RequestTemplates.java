@@ -0,0 +1,117 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.GattRequest;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+/**
+ * Caches per characteristic UUID the fields of a write request, so that preparing a request does not
+ * look up and flatten the characteristic specification again on every write and every completion.
+ * A new request is created straight from the cached fields through the package-private
+ * {@link GattRequest} constructor that the parser itself uses; if the constructor is not available
+ * (another GATT parser release), requests are prepared by the parser as before.
+ * The cache must be invalidated when GATT specifications change, e.g. extensions are (re)loaded.
+ */
+public class RequestTemplates {
+
+    private static final MethodHandle REQUEST_CONSTRUCTOR = findRequestConstructor();
+
+    private final BluetoothGattParser parser;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    public RequestTemplates(BluetoothGattParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Returns a new request with no field values set.
+     * @param characteristicUUID characteristic UUID
+     * @return new request
+     */
+    public GattRequest prepare(String characteristicUUID) {
+        Template template = getTemplate(characteristicUUID);
+        if (REQUEST_CONSTRUCTOR != null) {
+            try {
+                return (GattRequest) REQUEST_CONSTRUCTOR.invokeExact(template.uuid, template.fields);
+            } catch (Throwable ex) {
+                throw new IllegalStateException("Could not create GATT request: " + characteristicUUID, ex);
+            }
+        }
+        return parser.prepare(characteristicUUID);
+    }
+
+    /**
+     * Returns names of all fields of a characteristic request.
+     * @param characteristicUUID characteristic UUID
+     * @return field names
+     */
+    public List<String> getFieldNames(String characteristicUUID) {
+        return getTemplate(characteristicUUID).fieldNames;
+    }
+
+    public void invalidate() {
+        templates.clear();
+    }
+
+    private Template getTemplate(String characteristicUUID) {
+        return templates.computeIfAbsent(characteristicUUID, uuid -> new Template(parser.prepare(uuid)));
+    }
+
+    private static MethodHandle findRequestConstructor() {
+        try {
+            Constructor<GattRequest> constructor = GattRequest.class.getDeclaredConstructor(String.class, List.class);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(GattRequest.class, String.class, List.class));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static final class Template {
+
+        private final String uuid;
+        private final List<Field> fields;
+        private final List<String> fieldNames;
+
+        private Template(GattRequest request) {
+            uuid = request.getCharacteristicUUID();
+            fields = Collections.unmodifiableList(request.getAllFieldHolders().stream()
+                    .map(FieldHolder::getField).collect(Collectors.toList()));
+            fieldNames = Collections.unmodifiableList(fields.stream().map(Field::getName)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+}
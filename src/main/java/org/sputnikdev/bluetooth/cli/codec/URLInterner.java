@@ -0,0 +1,284 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * Maps bluetooth URLs (adapters, devices, services, characteristics) to small integer ids and canonical URL
+ * instances. Hot paths resolve a URL once (e.g. when a listener is attached) and then key on the id,
+ * so that no URL is parsed, formatted or hashed per event. Device addresses are kept packed into longs.
+ * <p>
+ * Devices with rotating random addresses would grow the interner forever, therefore URLs of lost devices
+ * are released (see {@link #remove(URL)}). A removed URL stays resolvable for a minute, so that events queued
+ * before the device was lost can still be processed, and it is not released at all while its id is retained
+ * by a long lived consumer (see {@link #retain(int)}). Ids are never reused, as they are written into capture
+ * files and carried by queued events; entries are kept in chunks which get dropped once all their URLs are released.
+ */
+public final class URLInterner {
+
+    public static final long NO_ADDRESS = -1;
+
+    private static final long RELEASE_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int PARSED_CACHE_SIZE = 256;
+
+    private final long releaseDelay;
+    private final Map<URL, Entry> ids = new ConcurrentHashMap<>();
+    // URL strings typed by the user, the cache is bounded as the strings are not normalized
+    private final Map<String, URL> parsed = Collections.synchronizedMap(
+        new LinkedHashMap<String, URL>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, URL> eldest) {
+                return size() > PARSED_CACHE_SIZE;
+            }
+        });
+    private final List<Entry> removed = new ArrayList<>();
+    // entries of each device (the device itself, its services and characteristics), guarded by the interner
+    private final Map<URL, List<Entry>> devices = new HashMap<>();
+
+    private volatile Entry[][] chunks = new Entry[1][CHUNK_SIZE];
+    private int[] live = new int[1];
+    private volatile int next;
+
+    public URLInterner() {
+        this(RELEASE_DELAY_NANOS);
+    }
+
+    URLInterner(long releaseDelay) {
+        this.releaseDelay = releaseDelay;
+    }
+
+    /**
+     * Returns an id of the URL, the URL gets interned if it has not been seen before.
+     * @param url bluetooth URL
+     * @return URL id
+     */
+    public int id(URL url) {
+        Entry entry = ids.get(url);
+        return entry != null && !entry.removed ? entry.id : add(url);
+    }
+
+    /**
+     * Returns a canonical instance of the URL.
+     * @param url bluetooth URL
+     * @return canonical instance
+     */
+    public URL intern(URL url) {
+        return get(id(url));
+    }
+
+    /**
+     * Parses a URL string, parsed URLs are cached and interned.
+     * @param url URL string
+     * @return canonical URL instance
+     * @throws IllegalArgumentException if the URL is invalid
+     */
+    public URL parse(String url) {
+        URL result = parsed.get(url);
+        if (result == null) {
+            result = new URL(url);
+            parsed.put(url, result);
+        }
+        return intern(result);
+    }
+
+    /**
+     * Returns URL by its id.
+     * @param id URL id
+     * @return canonical URL instance
+     * @throws IndexOutOfBoundsException if the id is unknown or released
+     */
+    public URL get(int id) {
+        return entry(id).url;
+    }
+
+    /**
+     * Returns device address of the URL packed into a long.
+     * @param id URL id
+     * @return packed device address or {@link #NO_ADDRESS} if the URL does not have a valid device address
+     * @throws IndexOutOfBoundsException if the id is unknown or released
+     */
+    public long getDeviceAddress(int id) {
+        return entry(id).deviceAddress;
+    }
+
+    /**
+     * Prevents the URL from being released while the id is in use, e.g. by an attached listener.
+     * Each call must be paired with {@link #release(int)}.
+     * @param id URL id
+     * @throws IndexOutOfBoundsException if the id is unknown or released
+     */
+    public synchronized void retain(int id) {
+        entry(id).holders++;
+    }
+
+    /**
+     * Releases an id retained by {@link #retain(int)}.
+     * @param id URL id
+     */
+    public synchronized void release(int id) {
+        Entry entry = entry(id);
+        if (entry.holders == 0) {
+            throw new IllegalStateException("URL id is not retained: " + id);
+        }
+        entry.holders--;
+    }
+
+    /**
+     * Marks a lost device and all its services and characteristics as removed, they get released
+     * after a minute unless they are retained or seen again.
+     * @param deviceURL device URL
+     */
+    public synchronized void remove(URL deviceURL) {
+        long now = System.nanoTime();
+        for (Entry entry : devices.getOrDefault(deviceURL.getDeviceURL(), Collections.emptyList())) {
+            if (!entry.removed) {
+                entry.removed = true;
+                entry.removedAt = now;
+                if (!entry.pending) {
+                    entry.pending = true;
+                    removed.add(entry);
+                }
+            }
+        }
+        sweep(now);
+    }
+
+    /**
+     * Returns the number of interned URLs.
+     * @return number of URLs
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private Entry entry(int id) {
+        Entry[][] current = chunks;
+        Entry entry = null;
+        if (id >= 0 && id < next) {
+            Entry[] chunk = current[id >>> CHUNK_BITS];
+            entry = chunk != null ? chunk[id & (CHUNK_SIZE - 1)] : null;
+        }
+        if (entry == null) {
+            throw new IndexOutOfBoundsException("Unknown URL id: " + id);
+        }
+        return entry;
+    }
+
+    private synchronized int add(URL url) {
+        Entry existing = ids.get(url);
+        if (existing != null) {
+            // the URL has been seen again before it got released
+            existing.removed = false;
+            return existing.id;
+        }
+        sweep(System.nanoTime());
+        int id = next;
+        if (id == Integer.MAX_VALUE) {
+            throw new IllegalStateException("URL ids are exhausted");
+        }
+        int index = id >>> CHUNK_BITS;
+        Entry[][] current = chunks;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, index << 1);
+            live = Arrays.copyOf(live, index << 1);
+        }
+        if (current[index] == null) {
+            current[index] = new Entry[CHUNK_SIZE];
+        }
+        long deviceAddress = MacAddress.isValid(url.getDeviceAddress())
+                ? MacAddress.toLong(url.getDeviceAddress()) : NO_ADDRESS;
+        Entry entry = new Entry(id, url, deviceAddress);
+        current[index][id & (CHUNK_SIZE - 1)] = entry;
+        live[index]++;
+        chunks = current;
+        next = id + 1;
+        ids.put(url, entry);
+        if (url.getDeviceAddress() != null) {
+            devices.computeIfAbsent(url.getDeviceURL(), device -> new ArrayList<>()).add(entry);
+        }
+        return id;
+    }
+
+    private void sweep(long now) {
+        for (Iterator<Entry> iterator = removed.iterator(); iterator.hasNext();) {
+            Entry entry = iterator.next();
+            if (!entry.removed) {
+                iterator.remove();
+                entry.pending = false;
+            } else if (entry.holders == 0 && now - entry.removedAt >= releaseDelay) {
+                iterator.remove();
+                ids.remove(entry.url, entry);
+                unindex(entry);
+                int index = entry.id >>> CHUNK_BITS;
+                chunks[index][entry.id & (CHUNK_SIZE - 1)] = null;
+                // the chunk that new ids are allocated from is kept
+                if (--live[index] == 0 && index != next >>> CHUNK_BITS) {
+                    chunks[index] = null;
+                }
+            }
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.url.getDeviceAddress() != null) {
+            URL deviceURL = entry.url.getDeviceURL();
+            List<Entry> entries = devices.get(deviceURL);
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                devices.remove(deviceURL);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private final URL url;
+        private final long deviceAddress;
+        // guarded by the interner
+        private int holders;
+        private long removedAt;
+        private boolean pending;
+        private volatile boolean removed;
+
+        private Entry(int id, URL url, long deviceAddress) {
+            this.id = id;
+            this.url = url;
+            this.deviceAddress = deviceAddress;
+        }
+
+    }
+
+}
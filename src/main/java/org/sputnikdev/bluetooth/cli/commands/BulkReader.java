@@ -0,0 +1,129 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+
+/**
+ * Reads a list of characteristics keeping a fixed number of blocking reads in flight. Results are handed
+ * to the consumer on the calling thread in the order they complete, so that decoding and printing
+ * need not be thread safe.
+ */
+class BulkReader {
+
+    private final int inflight;
+
+    BulkReader(int inflight) {
+        if (inflight < 1) {
+            throw new IllegalArgumentException("Number of reads in flight must be positive: " + inflight);
+        }
+        this.inflight = inflight;
+    }
+
+    /**
+     * Reads all characteristics and blocks until every read completes or fails.
+     * @param characteristics characteristics to read
+     * @param consumer receives results as they complete
+     * @return wall time in nanoseconds
+     */
+    long read(List<CharacteristicGovernor> characteristics, Consumer<Result> consumer) {
+        long started = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(inflight, Math.max(1, characteristics.size())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "read-all-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        try {
+            CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+            for (CharacteristicGovernor governor : characteristics) {
+                completionService.submit(() -> read(governor));
+            }
+            for (int i = 0; i < characteristics.size(); i++) {
+                consumer.accept(completionService.take().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // read() catches everything a governor can throw
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return System.nanoTime() - started;
+    }
+
+    private static Result read(CharacteristicGovernor governor) {
+        long started = System.nanoTime();
+        try {
+            byte[] value = governor.read();
+            return new Result(governor, value, null, System.nanoTime() - started);
+        } catch (Exception ex) {
+            return new Result(governor, null, ex, System.nanoTime() - started);
+        }
+    }
+
+    static final class Result {
+
+        private final CharacteristicGovernor governor;
+        private final byte[] value;
+        private final Exception error;
+        private final long latency;
+
+        private Result(CharacteristicGovernor governor, byte[] value, Exception error, long latency) {
+            this.governor = governor;
+            this.value = value;
+            this.error = error;
+            this.latency = latency;
+        }
+
+        CharacteristicGovernor getGovernor() {
+            return governor;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        Exception getError() {
+            return error;
+        }
+
+        long getLatency() {
+            return latency;
+        }
+
+        boolean isFailed() {
+            return error != null || value == null;
+        }
+    }
+
+}
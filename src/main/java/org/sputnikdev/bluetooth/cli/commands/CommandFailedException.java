@@ -0,0 +1,42 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Thrown by a command that has done a part of its work, e.g. read some of characteristics, and failed the rest.
+ * The output of the part that succeeded is preserved, so that batch scripts can print it.
+ */
+public class CommandFailedException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String output;
+
+    public CommandFailedException(String message, String output) {
+        super(message);
+        this.output = output;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+}
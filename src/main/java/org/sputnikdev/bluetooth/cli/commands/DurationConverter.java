@@ -0,0 +1,55 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.shell.core.Completion;
+import org.springframework.shell.core.Converter;
+import org.springframework.shell.core.MethodTarget;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.codec.Durations;
+
+/**
+ * Converts durations in a short form (500ms, 10s, 5m, 1h, 1d) or ISO-8601 (PT10S).
+ * A number without a unit is treated as seconds.
+ */
+@Component
+public class DurationConverter implements Converter<Duration> {
+
+    @Override
+    public boolean supports(Class<?> type, String optionContext) {
+        return type.equals(Duration.class);
+    }
+
+    @Override
+    public Duration convertFromText(String value, Class<?> targetType, String optionContext) {
+        return Durations.parse(value);
+    }
+
+    @Override
+    public boolean getAllPossibleValues(List<Completion> completions, Class<?> targetType,
+            String existingData, String optionContext, MethodTarget target) {
+        return false;
+    }
+
+}
@@ -28,7 +28,6 @@ import org.springframework.shell.core.Converter;
 import org.springframework.shell.core.MethodTarget;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
-import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.FieldHolder;
 import org.sputnikdev.bluetooth.gattparser.GattRequest;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
@@ -50,24 +49,22 @@ public class FieldConverter implements Converter<FieldHolder> {
 
     @Override
     public FieldHolder convertFromText(String value, Class<?> targetType, String optionContext) {
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
         CharacteristicGovernor characteristicGovernor =
                 (CharacteristicGovernor) bluetoothManagerCli.getSelected();
-        GattRequest gattRequest = parser.prepare(characteristicGovernor.getURL().getCharacteristicUUID());
+        GattRequest gattRequest = bluetoothManagerCli.getRequestTemplates()
+                .prepare(characteristicGovernor.getURL().getCharacteristicUUID());
         return gattRequest.getFieldHolder(value);
     }
 
     @Override
     public boolean getAllPossibleValues(List<Completion> completions, Class<?> targetType,
             String existingData, String optionContext, MethodTarget target) {
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
         CharacteristicGovernor characteristicGovernor =
                 (CharacteristicGovernor) bluetoothManagerCli.getSelected();
 
-        GattRequest gattRequest = parser.prepare(characteristicGovernor.getURL().getCharacteristicUUID());
-
-        for (FieldHolder fieldHolder : gattRequest.getAllFieldHolders()) {
-            completions.add(new Completion(fieldHolder.getField().getName()));
+        for (String fieldName : bluetoothManagerCli.getRequestTemplates()
+                .getFieldNames(characteristicGovernor.getURL().getCharacteristicUUID())) {
+            completions.add(new Completion(fieldName));
         }
 
         return true;
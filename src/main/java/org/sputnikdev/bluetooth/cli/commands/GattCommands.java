@@ -0,0 +1,56 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+
+/**
+ * Commands to manage GATT specifications, e.g. to reload extensions from "~/.bluetooth_smart" folder.
+ */
+@Component
+public class GattCommands implements CommandMarker {
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    @CliAvailabilityIndicator({"gatt"})
+    public boolean isGattAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "gatt", help = "GATT specifications: reload (extensions from ~/.bluetooth_smart folder)")
+    public String gatt(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "reload",
+                    help = "GATT: reload") final String command) {
+        if ("reload".equals(command)) {
+            bluetoothManagerCli.reloadGattExtensions();
+            return "GATT extensions reloaded, cached decoders and request templates are invalidated";
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+}
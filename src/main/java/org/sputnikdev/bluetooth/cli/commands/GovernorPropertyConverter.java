@@ -20,52 +20,47 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.util.List;
-import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.Completion;
 import org.springframework.shell.core.Converter;
 import org.springframework.shell.core.MethodTarget;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperties;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperty;
 
 /**
  *
  * @author Vlad Kolotov
  */
 @Component
-public class MethodConverter implements Converter<Method> {
+public class GovernorPropertyConverter implements Converter<GovernorProperty> {
 
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
 
     @Override
     public boolean supports(Class<?> type, String optionContext) {
-        return type.equals(Method.class);
+        return type.equals(GovernorProperty.class);
     }
 
     @Override
-    public Method convertFromText(String value, Class<?> targetType, String optionContext) {
-        String propertyName = StringUtils.uncapitalize(value.replaceAll("\\s",""));
-        for (Map.Entry<String, PropertyDescriptor> property :
-                bluetoothManagerCli.getSelectedGovernorProperties(true).entrySet()) {
-            if (propertyName.equals(property.getValue().getDisplayName())) {
-                return property.getValue().getWriteMethod();
-            }
-        }
-        return null;
+    public GovernorProperty convertFromText(String value, Class<?> targetType, String optionContext) {
+        GovernorProperties properties = bluetoothManagerCli.getSelectedGovernorProperties();
+        GovernorProperty property = properties != null ? properties.find(value) : null;
+        return property != null && property.isWritable() ? property : null;
     }
 
     @Override
     public boolean getAllPossibleValues(List<Completion> completions, Class<?> targetType,
             String existingData, String optionContext, MethodTarget target) {
-        for (Map.Entry<String, PropertyDescriptor> property :
-                bluetoothManagerCli.getSelectedGovernorProperties(true).entrySet()) {
-            completions.add(new Completion(property.getKey()));
+        GovernorProperties properties = bluetoothManagerCli.getSelectedGovernorProperties();
+        if (properties != null) {
+            for (GovernorProperty property : properties.getWritableProperties()) {
+                completions.add(new Completion(property.getDisplayName()));
+            }
         }
         return true;
     }
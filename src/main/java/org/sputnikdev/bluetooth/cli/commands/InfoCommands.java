@@ -25,17 +25,25 @@ import org.springframework.shell.core.CommandMarker;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
 import org.springframework.shell.core.annotation.CliCommand;
 import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.logging.HandlerUtils;
 import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperties;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperty;
+import org.sputnikdev.bluetooth.cli.governor.GovernorTree;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.manager.*;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 
-import java.beans.PropertyDescriptor;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -47,6 +55,10 @@ public class InfoCommands implements CommandMarker {
 
     private static final String FORMAT_TWO_COLUMNS = "%-30s%-50s";
     private static final String FORMAT_THREE_COLUMNS = "%-15s%-30s%-30s";
+    private static final String TREE_PARALLELISM_PROPERTY = "bluetooth.cli.info.parallelism";
+    private static final String TREE_TIMEOUT_PROPERTY = "bluetooth.cli.info.timeout";
+
+    protected final Logger logger = HandlerUtils.getLogger(getClass());
 
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
@@ -67,44 +79,73 @@ public class InfoCommands implements CommandMarker {
     }
 
     @CliCommand(value = "info", help = "Print details about bluetooth object")
-    public String info(@CliOption(key = {"url"}, mandatory = false, help = "Bluetooth URL") final URL url) {
+    public String info(@CliOption(key = {"url"}, mandatory = false, help = "Bluetooth URL") final URL url,
+            @CliOption(key = {"tree"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false",
+                    help = "Print all descendants: adapters, devices, services, characteristics") final boolean tree,
+            @CliOption(key = {"timeout"}, mandatory = false,
+                    help = "Tree only: how long to wait for a single object, e.g. 2s") final Duration timeout) {
         URL objectURL = url;
 
         if (url == null || url.isRoot()) {
             if (bluetoothManagerCli.getSelected() != null) {
                 objectURL = bluetoothManagerCli.getSelected().getURL();
+            } else if (tree) {
+                objectURL = new URL();
             } else {
-                return "Select a bluetooth object (see 'cd' command) or specify --url parameter";
+                throw new IllegalArgumentException("Select a bluetooth object (see 'cd' command)"
+                        + " or specify --url parameter");
             }
         }
-        return getBluetoothGovernorInfo(bluetoothManagerCli.getBluetoothManager().getGovernor(objectURL));
+        if (tree) {
+            return printTree(objectURL,
+                    timeout != null ? timeout.toMillis() : Long.getLong(TREE_TIMEOUT_PROPERTY, 2000));
+        }
+        return describe(bluetoothManagerCli.getBluetoothManager().getGovernor(objectURL),
+                bluetoothManagerCli.getGattParser());
     }
 
-    private void format(StringBuilder builder, String colum1, String column2) {
+    public String info(URL url) {
+        return info(url, false, null);
+    }
+
+    static void format(StringBuilder builder, String colum1, String column2) {
         builder.append(String.format(FORMAT_TWO_COLUMNS, colum1, column2)).append(OsUtils.LINE_SEPARATOR);
     }
 
-    private void format(StringBuilder builder, String colum1, String column2, String column3) {
+    static void format(StringBuilder builder, String colum1, String column2, String column3) {
         builder.append(String.format(FORMAT_THREE_COLUMNS, colum1, column2, column3)).append(OsUtils.LINE_SEPARATOR);
     }
 
-    private String getBluetoothGovernorInfo(BluetoothGovernor bluetoothGovernor) {
+    /**
+     * Prints properties of a governor followed by its children (devices, services and characteristics etc).
+     * @param bluetoothGovernor governor
+     * @param parser GATT parser to resolve names of services and characteristics
+     * @return governor details
+     */
+    static String describe(BluetoothGovernor bluetoothGovernor, BluetoothGattParser parser) {
         StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, PropertyDescriptor> property :
-                bluetoothManagerCli.getSelectedGovernorProperties(false).entrySet()) {
-            try {
-                format(builder, property.getKey() + ":",
-                        String.valueOf(property.getValue().getReadMethod().invoke(bluetoothGovernor)));
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
+        GovernorProperties properties = GovernorProperties.of(bluetoothGovernor);
+        if (properties != null) {
+            for (GovernorProperty property : properties.getProperties()) {
+                format(builder, property.getDisplayName() + ":", String.valueOf(property.get(bluetoothGovernor)));
             }
         }
-        printChildren(builder, bluetoothGovernor);
+        printChildren(builder, bluetoothGovernor, parser);
 
         return builder.toString();
     }
 
-    private void printChildren(StringBuilder builder, BluetoothGovernor governor) {
+    private String printTree(URL root, long timeout) {
+        GovernorTree governorTree = new GovernorTree(bluetoothManagerCli.getBluetoothManager(),
+                bluetoothManagerCli.getGattParser(), Integer.getInteger(TREE_PARALLELISM_PROPERTY, 8), timeout,
+                logger::info);
+        long elapsed = governorTree.walk(root);
+        return "Objects: " + governorTree.getNodes() + ", not ready: " + governorTree.getNotReady()
+                + ", timed out: " + governorTree.getTimedOut() + ", elapsed: " + LatencyHistogram.format(elapsed);
+    }
+
+    private static void printChildren(StringBuilder builder, BluetoothGovernor governor, BluetoothGattParser parser) {
         try {
             governor.accept(new BluetoothObjectVisitor() {
                 @Override public void visit(AdapterGovernor governor) throws NotReadyException {
@@ -112,11 +153,11 @@ public class InfoCommands implements CommandMarker {
                 }
 
                 @Override public void visit(DeviceGovernor governor) throws NotReadyException {
-                    printServicesAndCharacteristics(builder, governor);
+                    printServicesAndCharacteristics(builder, governor, parser);
                 }
 
                 @Override public void visit(CharacteristicGovernor governor) throws NotReadyException {
-                    printCharacteristic(builder, governor);
+                    printCharacteristic(builder, governor, parser);
                 }
             });
         } catch (Exception e) {
@@ -124,53 +165,51 @@ public class InfoCommands implements CommandMarker {
         }
     }
 
-    private void print(StringBuilder builder, List<? extends BluetoothGovernor> governors) {
+    private static void print(StringBuilder builder, List<? extends BluetoothGovernor> governors) {
         for (BluetoothGovernor governor : governors) {
             format(builder, "", governor.toString());
         }
     }
 
-    private void printDevices(StringBuilder builder, List<? extends BluetoothGovernor> governors) {
+    private static void printDevices(StringBuilder builder, List<? extends BluetoothGovernor> governors) {
         format(builder, "Devices:", "");
         print(builder, governors);
     }
 
-    private void printServicesAndCharacteristics(StringBuilder builder, DeviceGovernor governor)
-            throws NotReadyException {
+    private static void printServicesAndCharacteristics(StringBuilder builder, DeviceGovernor governor,
+                                                        BluetoothGattParser parser) throws NotReadyException {
         format(builder, "Services:", "");
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
         Map<URL, List<CharacteristicGovernor>> services = governor.getServicesToCharacteristicsMap();
         for (Map.Entry<URL, List<CharacteristicGovernor>> service : services.entrySet()) {
             String serviceUUID = service.getKey().getServiceUUID();
             String serviceName = parser.isKnownService(service.getKey().getServiceUUID()) ?
                     parser.getService(serviceUUID).getName() : "Unrecognised";
             format(builder, "", serviceUUID + " [" + serviceName + "]", "");
-            printCharacteristics(builder, service.getValue());
+            printCharacteristics(builder, parser, service.getValue());
         }
     }
 
-    private void printCharacteristics(StringBuilder builder, List<CharacteristicGovernor> characteristics) {
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
+    private static void printCharacteristics(StringBuilder builder, BluetoothGattParser parser,
+                                             List<CharacteristicGovernor> characteristics) {
         format(builder, "", "Characteristics:");
         for (CharacteristicGovernor characteristic : characteristics) {
-            String characteristicUUID = characteristic.getURL().getCharacteristicUUID();
-            String characteristicName = parser.isKnownCharacteristic(characteristicUUID) ?
-                    parser.getCharacteristic(characteristicUUID).getName() : "Unrecognised";
-            format(builder, "", "", characteristicUUID + " [" + characteristicName + "] [" +
-                    characteristic.getFlags().stream().map(Enum::toString).collect(Collectors.joining(", ")) + "]");
+            formatCharacteristic(builder, parser, characteristic.getURL().getCharacteristicUUID(),
+                    characteristic.getFlags());
         }
     }
 
-    private void printCharacteristic(StringBuilder builder, CharacteristicGovernor governor) throws NotReadyException {
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
-        String characteristicUUID = governor.getURL().getCharacteristicUUID();
-        format(builder, "Name:", parser.isKnownCharacteristic(characteristicUUID) ?
-                parser.getCharacteristic(characteristicUUID).getName() : "Unrecognised");
-        format(builder, "Flags:", governor.isReady() ?
-                governor.getFlags().stream().map(Enum::toString).collect(Collectors.joining(", ")) : "Not ready");
-        if (parser.isKnownCharacteristic(governor.getURL().getCharacteristicUUID())) {
+    static void formatCharacteristic(StringBuilder builder, BluetoothGattParser parser, String characteristicUUID,
+                                     Set<CharacteristicAccessType> flags) {
+        String characteristicName = parser.isKnownCharacteristic(characteristicUUID) ?
+                parser.getCharacteristic(characteristicUUID).getName() : "Unrecognised";
+        format(builder, "", "", characteristicUUID + " [" + characteristicName + "] [" +
+                flags.stream().map(Enum::toString).collect(Collectors.joining(", ")) + "]");
+    }
+
+    static void formatFields(StringBuilder builder, BluetoothGattParser parser, String characteristicUUID) {
+        if (parser.isKnownCharacteristic(characteristicUUID)) {
             format(builder, "Fields:", "");
-            List<Field> fields = parser.getFields(governor.getURL().getCharacteristicUUID());
+            List<Field> fields = parser.getFields(characteristicUUID);
             for (Field field : fields) {
                 format(builder, "", field.getName() + " [" + field.getFormat().getName() + "]");
             }
@@ -179,4 +218,14 @@ public class InfoCommands implements CommandMarker {
         }
     }
 
+    private static void printCharacteristic(StringBuilder builder, CharacteristicGovernor governor,
+                                            BluetoothGattParser parser) throws NotReadyException {
+        String characteristicUUID = governor.getURL().getCharacteristicUUID();
+        format(builder, "Name:", parser.isKnownCharacteristic(characteristicUUID) ?
+                parser.getCharacteristic(characteristicUUID).getName() : "Unrecognised");
+        format(builder, "Flags:", governor.isReady() ?
+                governor.getFlags().stream().map(Enum::toString).collect(Collectors.joining(", ")) : "Not ready");
+        formatFields(builder, parser, characteristicUUID);
+    }
+
 }
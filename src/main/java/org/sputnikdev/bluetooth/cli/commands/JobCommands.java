@@ -0,0 +1,116 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.jobs.Job;
+import org.sputnikdev.bluetooth.cli.jobs.JobRegistry;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * Commands to list, await and cancel background jobs (see "read --async" and "write --async").
+ */
+@Component
+public class JobCommands implements CommandMarker {
+
+    private static final String FORMAT_JOB = "%-6s%-12s%-10s%-60s";
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @CliAvailabilityIndicator({"jobs"})
+    public boolean isJobsAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "jobs", help = "Background jobs: list / status / await / cancel")
+    public String jobs(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "list",
+                    help = "Jobs: list / status / await / cancel") final String command,
+            @CliOption(key = {"id"}, mandatory = false, help = "Job id") final Integer id,
+            @CliOption(key = {"timeout"}, mandatory = false,
+                    help = "Await only: how long to wait, e.g. 10s") final Duration timeout) {
+        if ("list".equals(command)) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format(FORMAT_JOB, "Id", "Status", "Elapsed", "Operation"))
+                    .append(OsUtils.LINE_SEPARATOR);
+            for (Job job : jobRegistry.getJobs()) {
+                builder.append(String.format(FORMAT_JOB, job.getId(), job.getStatus(),
+                        LatencyHistogram.format(job.getElapsed()), job.getOperation() + " " + job.getURL()))
+                        .append(OsUtils.LINE_SEPARATOR);
+            }
+            return builder.toString();
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("Specify --id parameter");
+        }
+        Job job = jobRegistry.get(id);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown job: " + id);
+        }
+        if ("status".equals(command)) {
+            return status(job);
+        } else if ("await".equals(command)) {
+            try {
+                if (timeout != null) {
+                    job.getResult().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                } else {
+                    job.getResult().join();
+                }
+            } catch (TimeoutException ex) {
+                throw new IllegalStateException("Job is still running: " + status(job));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                // the outcome is reported by status
+            }
+            if (job.getStatus() == Job.Status.FAILED || job.getStatus() == Job.Status.TIMED_OUT) {
+                throw new IllegalStateException(status(job));
+            }
+            return status(job);
+        } else if ("cancel".equals(command)) {
+            return jobRegistry.cancel(id) ? "Cancelled: " + job : "Job is not running: " + status(job);
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private static String status(Job job) {
+        Job.Status status = job.getStatus();
+        String summary = "Job " + job + ": " + status + " (" + LatencyHistogram.format(job.getElapsed()) + ")";
+        if (status == Job.Status.DONE) {
+            return summary + OsUtils.LINE_SEPARATOR + job.getResult().join();
+        } else if (status == Job.Status.FAILED || status == Job.Status.TIMED_OUT) {
+            return summary + ": " + job.getError().getMessage();
+        }
+        return summary;
+    }
+
+}
@@ -20,6 +20,8 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
+import java.util.List;
+
 import com.google.common.base.Joiner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
@@ -29,6 +31,8 @@ import org.springframework.shell.core.annotation.CliOption;
 import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.devices.DeviceQuery;
+import org.sputnikdev.bluetooth.cli.devices.DeviceRecord;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 
@@ -39,6 +43,8 @@ import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 @Component
 public class NavigationCommands implements CommandMarker {
 
+    private static final String DEVICE_FORMAT = "%-40s%-8s%-30s%-10s%s";
+
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
 
@@ -55,8 +61,18 @@ public class NavigationCommands implements CommandMarker {
         return true;
     }
 
-    @CliCommand(value = "ls", help = "Print available bluetooth objects (dependants)")
-    public String ls() {
+    @CliCommand(value = "ls", help = "Print available bluetooth objects (dependants) or query discovered devices")
+    public String ls(
+            @CliOption(key = {"filter"}, mandatory = false,
+                    help = "Device filter, e.g. \"rssi>-70 and service=fe95 and name~mi and age<30s\"")
+            final String filter,
+            @CliOption(key = {"sort"}, mandatory = false, help = "Sort devices by: rssi / name / mac / seen")
+            final String sort,
+            @CliOption(key = {"limit"}, mandatory = false, unspecifiedDefaultValue = "0",
+                    help = "Maximum number of devices") final int limit) {
+        if (filter != null || sort != null || limit > 0) {
+            return devices(DeviceQuery.parse(filter, sort, limit));
+        }
         if (bluetoothManagerCli.getSelected() == null) {
             return Joiner.on(OsUtils.LINE_SEPARATOR).join(bluetoothManagerCli.getDiscoveredAdapters());
         } else {
@@ -64,6 +80,22 @@ public class NavigationCommands implements CommandMarker {
         }
     }
 
+    private String devices(DeviceQuery query) {
+        long now = System.currentTimeMillis();
+        List<DeviceRecord> devices = bluetoothManagerCli.getDeviceTable().query(query, now);
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(DEVICE_FORMAT, "URL", "RSSI", "Name", "Seen", "Services"));
+        for (DeviceRecord device : devices) {
+            builder.append(OsUtils.LINE_SEPARATOR).append(String.format(DEVICE_FORMAT, device.getURL(),
+                    device.getRSSI(), device.getName() != null ? device.getName() : "",
+                    (now - device.getLastSeen()) / 1000 + "s ago",
+                    String.join(", ", device.getServices())));
+        }
+        builder.append(OsUtils.LINE_SEPARATOR).append(devices.size()).append(" of ")
+                .append(bluetoothManagerCli.getDeviceTable().size()).append(" devices");
+        return builder.toString();
+    }
+
     @CliCommand(value = "cd", help = "Change device (adapter, device or characteristic)")
     public String cd(
             @CliOption(key = {"url"}, mandatory = true, help = "Bluetooth URL") final URL url) {
@@ -20,16 +20,20 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
-import org.springframework.shell.core.JLineShellComponent;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
 import org.springframework.shell.core.annotation.CliCommand;
 import org.springframework.shell.core.annotation.CliOption;
@@ -38,7 +42,23 @@ import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.capture.Recorder;
+import org.sputnikdev.bluetooth.cli.codec.DecoderCache;
+import org.sputnikdev.bluetooth.cli.codec.HexCodec;
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.cli.pipeline.Frame;
+import org.sputnikdev.bluetooth.cli.pipeline.FramePipeline;
+import org.sputnikdev.bluetooth.cli.pipeline.OverflowPolicy;
+import org.sputnikdev.bluetooth.cli.pipeline.ThrottlePolicies;
+import org.sputnikdev.bluetooth.cli.pipeline.ThrottlePolicy;
+import org.sputnikdev.bluetooth.cli.pipeline.WindowAggregator;
+import org.sputnikdev.bluetooth.cli.subscription.Subscription;
+import org.sputnikdev.bluetooth.cli.subscription.SubscriptionPattern;
+import org.sputnikdev.bluetooth.cli.subscription.SubscriptionRegistry;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
@@ -54,20 +74,61 @@ import org.sputnikdev.bluetooth.manager.ValueListener;
 @Component
 public class NotificationCommands implements CommandMarker {
 
-    private static final String[] DEVICE_NOTIFICATIONS = {"ONLINE", "BLOCKED", "RSSI", "CONNECTED", "SERVICES RESOLVED"};
+    private static final String[] DEVICE_NOTIFICATIONS = {"ONLINE", "BLOCKED", "RSSI", "CONNECTED", "SERVICES RESOLVED",
+        "SERVICE DATA", "MANUFACTURER DATA"};
     private static final String[] CHARACTERISTIC_NOTIFICATIONS = {"VALUE CHANGED"};
 
+    private static final String BUFFER_SIZE_PROPERTY = "bluetooth.cli.notification.buffer";
+    private static final String CONSUMERS_PROPERTY = "bluetooth.cli.notification.consumers";
+    private static final String OVERFLOW_PROPERTY = "bluetooth.cli.notification.overflow";
+
+    private static final long RSSI_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    private static final long TICK_RATE = 100;
+
     protected final Logger logger = HandlerUtils.getLogger(getClass());
 
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
 
-    @Autowired
-    private JLineShellComponent shell;
     @Autowired
     private ReadWriteCommands readWriteCommands;
+    @Autowired
+    private Recorder recorder;
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
 
-    private final Map<URL, NotificationLogger> listeners = new HashMap<>();
+    // listeners keyed by interned URL ids
+    private final Map<Integer, NotificationLogger> listeners = new ConcurrentHashMap<>();
+
+    private FramePipeline pipeline;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void init() {
+        pipeline = new FramePipeline("notification",
+                Integer.getInteger(BUFFER_SIZE_PROPERTY, 1024),
+                Integer.getInteger(CONSUMERS_PROPERTY, 2),
+                OverflowPolicy.fromString(System.getProperty(OVERFLOW_PROPERTY, "drop-oldest")),
+                this::render);
+        pipeline.start();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_RATE, TICK_RATE, TimeUnit.MILLISECONDS);
+        subscriptionRegistry.setHandler(this::attach);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        ticker.shutdownNow();
+        pipeline.stop();
+    }
+
+    public FramePipeline getPipeline() {
+        return pipeline;
+    }
 
     @CliAvailabilityIndicator({"notification"})
     public boolean isNotificationAvailable() {
@@ -81,43 +142,74 @@ public class NotificationCommands implements CommandMarker {
 
     @CliCommand(value = "notification", help = "Enable/Disable notifications")
     public String notification(
-            @CliOption(key = {""}, mandatory = true, help = "Enable/Disable notifications: on / off") final String command) {
+            @CliOption(key = {""}, mandatory = true, help = "Enable/Disable notifications: on / off") final String command,
+            @CliOption(key = {"policy"}, mandatory = false, unspecifiedDefaultValue = ThrottlePolicies.LATEST,
+                    help = "Throttle policy: all / sample / latest / window / change") final String policy,
+            @CliOption(key = {"interval"}, mandatory = false, unspecifiedDefaultValue = "1s",
+                    help = "Interval for 'latest' and 'window' policies, e.g. 500ms, 1s, 1m") final Duration interval,
+            @CliOption(key = {"every"}, mandatory = false, unspecifiedDefaultValue = "10",
+                    help = "Forward every N-th value for 'sample' policy") final int every) {
         BluetoothGovernor selected = bluetoothManagerCli.getSelected();
         URL selectedURL = selected.getURL();
+        String[] notifications = selected instanceof DeviceGovernor
+                ? DEVICE_NOTIFICATIONS : CHARACTERISTIC_NOTIFICATIONS;
         synchronized (listeners) {
+            Subscription subscription = subscriptionRegistry.getAttached(selectedURL);
             if ("on".equals(command)) {
-                if (!listeners.containsKey(selectedURL)) {
-                    NotificationLogger logger = new NotificationLogger(selected);
-                    listeners.put(selectedURL, logger);
-                    if (selected instanceof DeviceGovernor) {
-                        DeviceGovernor deviceGovernor = (DeviceGovernor) selected;
-                        deviceGovernor.addBluetoothSmartDeviceListener(logger);
-                        deviceGovernor.addGenericBluetoothDeviceListener(logger);
-                        return "Notifications enabled: " + String.join(", ", DEVICE_NOTIFICATIONS);
-                    } else if (selected instanceof CharacteristicGovernor) {
-                        CharacteristicGovernor characteristicGovernor = (CharacteristicGovernor) selected;
-                        characteristicGovernor.addValueListener(logger);
+                if (subscription == null) {
+                    subscription = subscriptionRegistry.subscribe(SubscriptionPattern.exact(selectedURL),
+                            policy, interval, every);
+                    if (selected instanceof CharacteristicGovernor) {
                         checkConnected(selectedURL.getDeviceURL());
-                        return "Notifications enabled: " + String.join(", ", CHARACTERISTIC_NOTIFICATIONS);
                     }
+                    return "Notifications enabled: " + String.join(", ", notifications)
+                            + " (subscription #" + subscription.getId() + ")";
                 }
             } else if ("off".equals(command)) {
-                if (listeners.containsKey(selectedURL)) {
-                    listeners.remove(selectedURL);
-                    if (selected instanceof DeviceGovernor) {
-                        ((DeviceGovernor) selected).removeBluetoothSmartDeviceListener(listeners.get(selectedURL));
-                        ((DeviceGovernor) selected).removeGenericBluetoothDeviceListener(listeners.get(selectedURL));
-                        return "Notifications disabled: " + String.join(", ", DEVICE_NOTIFICATIONS);
-                    } else if (selected instanceof CharacteristicGovernor) {
-                        ((CharacteristicGovernor) selected).removeValueListener(listeners.get(selectedURL));
-                        return "Notifications disabled: " + String.join(", ", CHARACTERISTIC_NOTIFICATIONS);
+                if (subscription != null) {
+                    if (!subscription.getPattern().isExact()) {
+                        return "Notifications are enabled by subscription #" + subscription.getId() + ": "
+                                + subscription.getPattern() + ". Use 'subscription remove' to disable them";
                     }
+                    subscriptionRegistry.remove(subscription.getId());
+                    return "Notifications disabled: " + String.join(", ", notifications);
                 }
+            } else {
+                throw new IllegalArgumentException("Unknown command: " + command);
             }
         }
         return "Nothing to enable";
     }
 
+    private Runnable attach(Subscription subscription, URL url) {
+        BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+        String policy = subscription.getPolicy();
+        if (url.isDevice()) {
+            DeviceGovernor deviceGovernor = bluetoothManager.getDeviceGovernor(url);
+            NotificationLogger listener = new NotificationLogger(url, deviceGovernor, subscription,
+                    ThrottlePolicies.passAll(), null, true);
+            listeners.put(listener.urlId, listener);
+            deviceGovernor.addBluetoothSmartDeviceListener(listener);
+            deviceGovernor.addGenericBluetoothDeviceListener(listener);
+            return () -> {
+                deviceGovernor.removeBluetoothSmartDeviceListener(listener);
+                deviceGovernor.removeGenericBluetoothDeviceListener(listener);
+                listeners.remove(listener.urlId, listener);
+            };
+        }
+        CharacteristicGovernor characteristicGovernor = bluetoothManager.getCharacteristicGovernor(url);
+        NotificationLogger listener = new NotificationLogger(url, characteristicGovernor, subscription,
+                ThrottlePolicies.create(policy, subscription.getInterval(), subscription.getEvery()),
+                ThrottlePolicies.WINDOW.equals(policy) ? new WindowAggregator(subscription.getInterval().toNanos())
+                        : null, true);
+        listeners.put(listener.urlId, listener);
+        characteristicGovernor.addValueListener(listener);
+        return () -> {
+            characteristicGovernor.removeValueListener(listener);
+            listeners.remove(listener.urlId, listener);
+        };
+    }
+
     private void checkConnected(URL deviceURL) {
         DeviceGovernor deviceGovernor =
                 bluetoothManagerCli.getBluetoothManager().getDeviceGovernor(deviceURL);
@@ -133,67 +225,202 @@ public class NotificationCommands implements CommandMarker {
         }
     }
 
-    private class NotificationLogger implements GenericBluetoothDeviceListener,
+    private void render(Frame frame) {
+        NotificationLogger listener = listeners.get(frame.getURLId());
+        Object source = listener != null ? listener.source : frame.getURL();
+        if (listener != null && listener.aggregator != null) {
+            String summary = listener.aggregator.add(frame.getTimestamp(), decode(frame));
+            if (summary != null) {
+                logger.info(source + ": " + summary);
+            }
+            return;
+        }
+        logger.info(source + ": VALUE CHANGED:" + OsUtils.LINE_SEPARATOR +
+                readWriteCommands.parse(frame.getURL(), frame.getValue()));
+    }
+
+    private GattResponse decode(Frame frame) {
+        DecoderCache decoderCache = bluetoothManagerCli.getDecoderCache();
+        String characteristicUUID = frame.getURL().getCharacteristicUUID();
+        return decoderCache.isKnownCharacteristic(characteristicUUID)
+                ? decoderCache.getParser().parse(characteristicUUID, frame.getValue()) : null;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (NotificationLogger listener : listeners.values()) {
+            byte[] due = listener.throttlePolicy.poll(now);
+            if (due != null) {
+                pipeline.publish(new Frame(now, listener.urlId, listener.url, due, listener.latency));
+            }
+            if (listener.aggregator != null) {
+                String summary = listener.aggregator.poll(now);
+                if (summary != null) {
+                    logger.info(listener.source + ": " + summary);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a listener that renders events of the given URL the same way as if notifications were enabled for it.
+     * The listener is not attached to any governor, it is used to replay captured streams, so that values
+     * it receives are not recorded. Pipeline latency of its values is recorded into the given histogram,
+     * so that it does not mix with latency of live notifications.
+     * @param url bluetooth URL
+     * @param latency histogram for pipeline latency of the values
+     * @return a new listener
+     */
+    public NotificationLogger createReplayListener(URL url, LatencyHistogram latency) {
+        return new NotificationLogger(url, url, null, ThrottlePolicies.passAll(), null, false, latency);
+    }
+
+    public class NotificationLogger implements GenericBluetoothDeviceListener,
             BluetoothSmartDeviceListener, ValueListener {
 
-        private final BluetoothGovernor governor;
-        private LocalDateTime lastRSSINotified = LocalDateTime.now().minus(1, ChronoUnit.MINUTES);
-        private LocalDateTime lastValueNotified = LocalDateTime.now().minus(1, ChronoUnit.MINUTES);
+        private final URL url;
+        private final int urlId;
+        private final Object source;
+        private final Subscription subscription;
+        private final ThrottlePolicy throttlePolicy;
+        private final WindowAggregator aggregator;
+        private final boolean recorded;
+        // null for live listeners, see Frame#getLatency
+        private final LatencyHistogram latency;
+        private long lastRSSINotified = System.nanoTime() - RSSI_INTERVAL;
+        // advertisements repeat the same data, only changes are printed
+        private String lastServiceData;
+        private String lastManufacturerData;
+
+        private NotificationLogger(URL url, Object source, Subscription subscription,
+                                   ThrottlePolicy throttlePolicy, WindowAggregator aggregator, boolean recorded) {
+            this(url, source, subscription, throttlePolicy, aggregator, recorded, null);
+        }
 
-        private NotificationLogger(BluetoothGovernor governor) {
-            this.governor = governor;
+        private NotificationLogger(URL url, Object source, Subscription subscription, ThrottlePolicy throttlePolicy,
+                                   WindowAggregator aggregator, boolean recorded, LatencyHistogram latency) {
+            URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+            this.urlId = urlInterner.id(url);
+            this.url = urlInterner.get(urlId);
+            this.source = source;
+            this.subscription = subscription;
+            this.throttlePolicy = throttlePolicy;
+            this.aggregator = aggregator;
+            this.recorded = recorded;
+            this.latency = latency;
         }
 
         @Override
         public void online() {
-            logger.info(governor + ": ONLINE");
-            shell.promptLoop();
+            dispatch(() -> log("ONLINE"));
         }
 
         @Override
         public void offline() {
-            logger.info(governor + ": OFFLINE");
+            dispatch(() -> log("OFFLINE"));
         }
 
         @Override
         public void blocked(boolean blocked) {
-            logger.info(governor + ": " + (blocked ? "BLOCKED" : "UNBLOCKED"));
+            dispatch(() -> log(blocked ? "BLOCKED" : "UNBLOCKED"));
         }
 
         @Override
         public void rssiChanged(short rssi) {
-            if (LocalDateTime.now().minus(1, ChronoUnit.MINUTES).isAfter(lastRSSINotified)) {
-                logger.info(governor + ": RSSI " + rssi);
-                lastRSSINotified = LocalDateTime.now();
-            }
+            bluetoothManagerCli.getDispatcher().offer(url, () -> {
+                long now = System.nanoTime();
+                if (now - lastRSSINotified >= RSSI_INTERVAL && log("RSSI " + rssi)) {
+                    lastRSSINotified = now;
+                }
+            });
+        }
+
+        @Override
+        public void serviceDataChanged(Map<URL, byte[]> serviceData) {
+            bluetoothManagerCli.getDispatcher().offer(url, () -> {
+                StringBuilder builder = new StringBuilder("SERVICE DATA");
+                for (Map.Entry<URL, byte[]> entry : serviceData.entrySet()) {
+                    builder.append(' ').append(entry.getKey().getServiceUUID()).append(": ");
+                    HexCodec.appendList(builder, entry.getValue());
+                }
+                String event = builder.toString();
+                if (!event.equals(lastServiceData) && log(event)) {
+                    lastServiceData = event;
+                }
+            });
+        }
+
+        @Override
+        public void manufacturerDataChanged(Map<Short, byte[]> manufacturerData) {
+            bluetoothManagerCli.getDispatcher().offer(url, () -> {
+                StringBuilder builder = new StringBuilder("MANUFACTURER DATA");
+                for (Map.Entry<Short, byte[]> entry : manufacturerData.entrySet()) {
+                    builder.append(String.format(" 0x%04x: ", entry.getKey() & 0xffff));
+                    HexCodec.appendList(builder, entry.getValue());
+                }
+                String event = builder.toString();
+                if (!event.equals(lastManufacturerData) && log(event)) {
+                    lastManufacturerData = event;
+                }
+            });
         }
 
         @Override
         public void connected() {
-            logger.info(governor + ": CONNECTED");
+            dispatch(() -> log("CONNECTED"));
         }
 
         @Override
         public void disconnected() {
-            logger.info(governor + ": DISCONNECTED");
+            dispatch(() -> log("DISCONNECTED"));
         }
 
         @Override
         public void servicesResolved(List<GattService> gattServices) {
-            logger.info(governor + ": SERVICES RESOLVED: " + gattServices.size());
+            dispatch(() -> log("SERVICES RESOLVED: " + gattServices.size()));
         }
 
         @Override
         public void servicesUnresolved() {
-            logger.info(governor + ": SERVICES UNRESOLVED");
+            dispatch(() -> log("SERVICES UNRESOLVED"));
         }
 
         @Override
         public void changed(byte[] value) {
-            if (LocalDateTime.now().minus(1, ChronoUnit.SECONDS).isAfter(lastValueNotified)) {
-                logger.info(governor + ": VALUE CHANGED:" + OsUtils.LINE_SEPARATOR +
-                        readWriteCommands.parse(governor.getURL(), value));
-                lastValueNotified = LocalDateTime.now();
+            // values skip the dispatcher: publishing is cheap and the pipeline is the only queue they go through
+            if (isPaused()) {
+                return;
+            }
+            long received = System.nanoTime();
+            countEvent();
+            if (recorded) {
+                recorder.recordValue(urlId, received, value);
+            }
+            if (throttlePolicy.accept(received, value)) {
+                pipeline.publish(new Frame(received, urlId, url, value, latency));
+            }
+        }
+
+        private void dispatch(Runnable callback) {
+            bluetoothManagerCli.getDispatcher().dispatch(url, callback);
+        }
+
+        private boolean log(String event) {
+            if (isPaused()) {
+                return false;
+            }
+            countEvent();
+            logger.info(source + ": " + event);
+            return true;
+        }
+
+        private boolean isPaused() {
+            return subscription != null && subscription.isPaused();
+        }
+
+        private void countEvent() {
+            if (subscription != null) {
+                subscription.recordEvent();
             }
         }
 
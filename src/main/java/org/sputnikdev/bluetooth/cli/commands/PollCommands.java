@@ -0,0 +1,143 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.cli.polling.PollScheduler;
+import org.sputnikdev.bluetooth.cli.polling.PollTask;
+
+/**
+ * Commands to read characteristics periodically, e.g. sensors that do not support notifications.
+ */
+@Component
+public class PollCommands implements CommandMarker {
+
+    private static final String FORMAT = "%-5s%-70s%-10s%-10s%-10s%-10s%-10s%-10s%-10s";
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    @Autowired
+    private PollScheduler pollScheduler;
+
+    @CliAvailabilityIndicator({"poll"})
+    public boolean isPollAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "poll", help = "Periodical reads: add / list / status / remove / clear")
+    public String poll(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "list",
+                    help = "Poll: add / list / status / remove / clear") final String command,
+            @CliOption(key = {"url"}, mandatory = false,
+                    help = "Add only: characteristic URL, the selected characteristic by default") final URL url,
+            @CliOption(key = {"every"}, mandatory = false, unspecifiedDefaultValue = "10m",
+                    help = "Add only: polling period, e.g. 30s, 10m, 1h") final Duration every,
+            @CliOption(key = {"jitter"}, mandatory = false, unspecifiedDefaultValue = "0",
+                    help = "Add only: maximum random delay of every read, e.g. 30s") final Duration jitter,
+            @CliOption(key = {"id"}, mandatory = false, help = "Poll id") final Integer id) {
+        if ("add".equals(command)) {
+            URL characteristicURL = url != null ? url : bluetoothManagerCli.getSelected() != null
+                    ? bluetoothManagerCli.getSelected().getURL() : null;
+            if (characteristicURL == null || !characteristicURL.isCharacteristic()) {
+                throw new IllegalArgumentException("Select a characteristic (see 'cd' command)"
+                        + " or specify --url parameter");
+            }
+            PollTask task = pollScheduler.add(characteristicURL, every.toMillis(), jitter.toMillis());
+            return "Poll " + task + " added: every " + LatencyHistogram.format(task.getPeriod())
+                    + ", jitter " + LatencyHistogram.format(task.getJitter());
+        } else if ("list".equals(command)) {
+            return list(pollScheduler.getTasks());
+        } else if ("clear".equals(command)) {
+            int size = pollScheduler.getTasks().size();
+            pollScheduler.clear();
+            return "Removed polls: " + size;
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("Specify a poll id (--id parameter)");
+        }
+        if ("status".equals(command)) {
+            PollTask task = pollScheduler.get(id);
+            if (task == null) {
+                throw new IllegalArgumentException("No such poll: " + id);
+            }
+            return status(task);
+        } else if ("remove".equals(command)) {
+            if (pollScheduler.remove(id) == null) {
+                throw new IllegalArgumentException("No such poll: " + id);
+            }
+            return "Poll #" + id + ": removed";
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private static String list(Collection<PollTask> tasks) {
+        if (tasks.isEmpty()) {
+            return "No polls";
+        }
+        long now = System.nanoTime();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(FORMAT, "Id", "URL", "Every", "Next", "Lag p90", "Polled", "Failed",
+                "Skipped", "Missed"));
+        for (PollTask task : tasks) {
+            builder.append(OsUtils.LINE_SEPARATOR).append(String.format(FORMAT, task.getId(), task.getURL(),
+                    LatencyHistogram.format(task.getPeriod()),
+                    LatencyHistogram.format(Math.max(0, task.getDeadline() - now)),
+                    LatencyHistogram.format(task.getLag().getPercentile(90)), task.getPolled(), task.getFailed(),
+                    task.getSkipped(), task.getMissed()));
+        }
+        return builder.toString();
+    }
+
+    private static String status(PollTask task) {
+        StringBuilder builder = new StringBuilder();
+        InfoCommands.format(builder, "Poll:", task.toString());
+        InfoCommands.format(builder, "Period:", LatencyHistogram.format(task.getPeriod())
+                + " (jitter: " + LatencyHistogram.format(task.getJitter()) + ")");
+        InfoCommands.format(builder, "Next read in:",
+                LatencyHistogram.format(Math.max(0, task.getDeadline() - System.nanoTime())));
+        InfoCommands.format(builder, "Polled:", String.valueOf(task.getPolled()));
+        InfoCommands.format(builder, "Failed:", String.valueOf(task.getFailed()));
+        InfoCommands.format(builder, "Skipped (out of range):", String.valueOf(task.getSkipped()));
+        InfoCommands.format(builder, "Missed deadlines:", String.valueOf(task.getMissed()));
+        InfoCommands.format(builder, "Lag:", task.getLag().summary());
+        if (task.getLastValue() != null) {
+            InfoCommands.format(builder, "Last value:", task.getLastValue());
+        }
+        if (task.getLastError() != null) {
+            InfoCommands.format(builder, "Last error:", String.valueOf(task.getLastError().getMessage()));
+        }
+        return builder.toString();
+    }
+
+}
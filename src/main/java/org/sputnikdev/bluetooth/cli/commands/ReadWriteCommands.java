@@ -20,24 +20,36 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
 import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
 import org.springframework.shell.core.annotation.CliCommand;
 import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.shell.support.util.OsUtils;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.codec.DecoderCache;
+import org.sputnikdev.bluetooth.cli.jobs.Job;
+import org.sputnikdev.bluetooth.cli.jobs.JobRegistry;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.FieldHolder;
 import org.sputnikdev.bluetooth.gattparser.GattRequest;
-import org.sputnikdev.bluetooth.gattparser.GattResponse;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 import org.sputnikdev.bluetooth.manager.BluetoothObjectType;
 import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 
 /**
  *
@@ -46,74 +58,220 @@ import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 @Component
 public class ReadWriteCommands implements CommandMarker {
 
+    private static final String INFLIGHT_PROPERTY = "bluetooth.cli.read.inflight";
+    private static final String JOB_TIMEOUT_PROPERTY = "bluetooth.cli.jobs.timeout";
+
+    protected final Logger logger = HandlerUtils.getLogger(getClass());
+
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
 
     @Autowired
     private InfoCommands infoCommands;
 
+    @Autowired
+    private JobRegistry jobRegistry;
+
     @CliAvailabilityIndicator({"read"})
     public boolean isReadAvailable() {
-        BluetoothGovernor selected = bluetoothManagerCli.getSelected();
-        if (selected != null && selected.getType() == BluetoothObjectType.CHARACTERISTIC && selected.isReady()) {
-            CharacteristicGovernor characteristicGovernor = (CharacteristicGovernor) selected;
-            return characteristicGovernor.isReadable();
-        }
-        return false;
+        // "read --all" works for any device, hence availability is checked by the command
+        return true;
     }
 
     @CliAvailabilityIndicator({"write"})
     public boolean isWriteAvailable() {
         BluetoothGovernor selected = bluetoothManagerCli.getSelected();
-        if (selected != null && selected.getType() == BluetoothObjectType.CHARACTERISTIC && selected.isReady()) {
-            CharacteristicGovernor characteristicGovernor = (CharacteristicGovernor) selected;
-            return characteristicGovernor.isWritable();
+        if (selected != null && selected.getType() == BluetoothObjectType.CHARACTERISTIC) {
+            // an asynchronous write waits for the characteristic to become ready
+            return !selected.isReady() || ((CharacteristicGovernor) selected).isWritable();
         }
         return false;
     }
 
-    @CliCommand(value = "read", help = "Reads from selected characteristics")
-    public String read() {
-        CharacteristicGovernor characteristicGovernor =
-                (CharacteristicGovernor) bluetoothManagerCli.getSelected();
+    @CliCommand(value = "read", help = "Reads from selected characteristic or from all readable characteristics "
+            + "of a device (--all), values of all characteristics are printed as they are read")
+    public String read(
+            @CliOption(key = {"all"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false", help = "Read all readable characteristics") final boolean all,
+            @CliOption(key = {"device"}, mandatory = false,
+                    help = "All only: device URL, the selected device by default") final URL device,
+            @CliOption(key = {"inflight"}, mandatory = false,
+                    help = "All only: number of reads in flight") final Integer inflight,
+            @CliOption(key = {"async"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false", help = "Read in background, see 'jobs'") final boolean async,
+            @CliOption(key = {"timeout"}, mandatory = false,
+                    help = "Async only: how long to wait for the device, e.g. 30s") final Duration timeout) {
+        BluetoothGovernor selected = bluetoothManagerCli.getSelected();
+        if (all) {
+            URL deviceURL = device != null ? device : selected != null && !selected.getURL().isAdapter()
+                    ? selected.getURL().getDeviceURL() : null;
+            if (deviceURL == null || !deviceURL.isDevice()) {
+                throw new IllegalArgumentException("Select a device (see 'cd' command) or specify --device parameter");
+            }
+            return readAll(bluetoothManagerCli.getBluetoothManager().getDeviceGovernor(deviceURL),
+                    inflight != null ? inflight : Integer.getInteger(INFLIGHT_PROPERTY, 4));
+        }
+        if (async) {
+            if (selected == null || selected.getType() != BluetoothObjectType.CHARACTERISTIC) {
+                throw new IllegalArgumentException("Select a characteristic (see 'cd' command)");
+            }
+            CharacteristicGovernor characteristicGovernor = (CharacteristicGovernor) selected;
+            URL url = characteristicGovernor.getURL();
+            DecoderCache decoderCache = bluetoothManagerCli.getDecoderCache();
+            return started(jobRegistry.submit("read", url,
+                () -> characteristicGovernor.whenReady(CharacteristicGovernor::read),
+                raw -> parse(decoderCache, url, raw), getTimeout(timeout)));
+        }
+        if (selected == null || selected.getType() != BluetoothObjectType.CHARACTERISTIC || !selected.isReady()
+                || !((CharacteristicGovernor) selected).isReadable()) {
+            throw new IllegalArgumentException("Select a readable characteristic (see 'cd' command) or use --all");
+        }
+        CharacteristicGovernor characteristicGovernor = (CharacteristicGovernor) selected;
         return parse(characteristicGovernor.getURL(), characteristicGovernor.read());
     }
 
-    @CliCommand(value = "write", help = "Writes to selected characteristics")
-    public String write(@CliOption(key = {"fieldName"}, mandatory = true, help = "Field name") final FieldHolder holder,
-            @CliOption(key = {"value"}, mandatory = true, help = "Field value") final String value) {
+    @CliCommand(value = "write", help = "Writes to selected characteristics a field value (--field, --value) "
+            + "or several field values (--fields), with --repeat writes the value many times "
+            + "and reports throughput and latency")
+    public String write(
+            @CliOption(key = {"fieldName", "field"}, mandatory = false, help = "Field name") final FieldHolder holder,
+            @CliOption(key = {"value"}, mandatory = false, help = "Field value") final String value,
+            @CliOption(key = {"fields"}, mandatory = false,
+                    help = "Field values separated by ';', e.g. \"Op Code=1;Parameter=10\"") final String fields,
+            @CliOption(key = {"async"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false", help = "Write in background, see 'jobs'") final boolean async,
+            @CliOption(key = {"timeout"}, mandatory = false,
+                    help = "Async only: how long to wait for the device, e.g. 30s") final Duration timeout,
+            @CliOption(key = {"repeat"}, mandatory = false, unspecifiedDefaultValue = "1",
+                    help = "Number of writes") final int repeat,
+            @CliOption(key = {"rate"}, mandatory = false,
+                    help = "Repeat only: writes per second (minute, hour), e.g. 200/s, 600/m") final String rate,
+            @CliOption(key = {"inflight"}, mandatory = false, unspecifiedDefaultValue = "1",
+                    help = "Repeat only: number of writes in flight") final int inflight) {
+        if ((holder == null) != (value == null) || holder == null && fields == null) {
+            throw new IllegalArgumentException("Specify --field and --value parameters and/or --fields parameter");
+        }
         BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
         CharacteristicGovernor characteristicGovernor =
                 (CharacteristicGovernor) bluetoothManagerCli.getSelected();
 
-        GattRequest gattRequest = parser.prepare(characteristicGovernor.getURL().getCharacteristicUUID());
+        GattRequest gattRequest = bluetoothManagerCli.getRequestTemplates()
+                .prepare(characteristicGovernor.getURL().getCharacteristicUUID());
 
-        gattRequest.setField(holder.getField().getName(), value);
+        if (holder != null) {
+            gattRequest.setField(holder.getField().getName(), value);
+        }
+        if (fields != null) {
+            for (Map.Entry<String, String> field : parseFields(fields).entrySet()) {
+                gattRequest.setField(field.getKey(), field.getValue());
+            }
+        }
 
-        characteristicGovernor.write(parser.serialize(gattRequest));
+        byte[] data = parser.serialize(gattRequest);
+        if (async) {
+            if (repeat > 1) {
+                throw new IllegalArgumentException("--async cannot be combined with --repeat");
+            }
+            return started(jobRegistry.submit("write", characteristicGovernor.getURL(),
+                () -> characteristicGovernor.whenReady((CharacteristicGovernor governor) -> governor.write(data)),
+                written -> written ? "OK" : "Write failed", getTimeout(timeout)));
+        }
+        if (!characteristicGovernor.isReady()) {
+            throw new IllegalStateException("Characteristic is not ready, use --async to write when it gets ready");
+        }
+        if (repeat > 1) {
+            return writeRepeatedly(characteristicGovernor, data, repeat,
+                    rate != null ? RepeatedWriter.parseRate(rate) : 0, inflight);
+        }
+        characteristicGovernor.write(data);
 
         return "OK";
     }
 
-    String parse(URL url, byte[] raw) {
+    static Map<String, String> parseFields(String fields) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String field : fields.split(";")) {
+            if (field.trim().isEmpty()) {
+                continue;
+            }
+            int separator = field.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid field value, expected name=value: " + field);
+            }
+            result.put(field.substring(0, separator).trim(), field.substring(separator + 1).trim());
+        }
+        return result;
+    }
+
+    private static String writeRepeatedly(CharacteristicGovernor governor, byte[] data, int repeat, double rate,
+                                          int inflight) {
+        RepeatedWriter writer = new RepeatedWriter(repeat, rate, inflight);
+        long elapsed = writer.write(governor, data);
         StringBuilder builder = new StringBuilder();
+        InfoCommands.format(builder, "Writes:", writer.getCompleted() + " of " + repeat + " (failed: "
+                + writer.getFailed() + ")");
+        InfoCommands.format(builder, "Elapsed:", LatencyHistogram.format(elapsed));
+        InfoCommands.format(builder, "Throughput:", String.format("%.1f/s (target: %s)",
+                writer.getCompleted() * 1e9 / Math.max(1, elapsed), rate > 0 ? String.format("%.1f/s", rate) : "none"));
+        InfoCommands.format(builder, "Latency:", writer.getLatency().summary());
+        if (writer.getLastError() != null) {
+            InfoCommands.format(builder, "Last error:", writer.getLastError().getMessage());
+        }
+        return builder.toString();
+    }
 
-        BluetoothGattParser parser = bluetoothManagerCli.getGattParser();
-        String characteristicUUID = url.getCharacteristicUUID();
-        if (parser.isKnownCharacteristic(url.getCharacteristicUUID())) {
-            GattResponse gattResponse = parser.parse(characteristicUUID, raw);
-            builder.append(gattResponse.getFieldHolders().stream().map(
-                    holder -> String.format("%-30s%-50s", holder.getField().getName() + ":", holder.getString(null))).
-                    collect(Collectors.joining(",")));
-        } else {
-            builder.append("[");
-            builder.append(IntStream.range(0, raw.length).mapToObj(
-                    i -> String.format("%02x", raw[i] & 0xff)).collect(Collectors.joining(", ")));
-            builder.append("]");
+    private static long getTimeout(Duration timeout) {
+        return timeout != null ? timeout.toMillis() : Long.getLong(JOB_TIMEOUT_PROPERTY, 30000);
+    }
+
+    private static String started(Job job) {
+        return "Job " + job.getId() + " started: " + job.getOperation() + " " + job.getURL();
+    }
+
+    private String readAll(DeviceGovernor deviceGovernor, int inflight) {
+        if (!deviceGovernor.isReady()) {
+            throw new IllegalStateException("Device is not ready");
+        }
+        List<CharacteristicGovernor> readable = deviceGovernor.getCharacteristicGovernors().stream()
+                .filter(characteristic -> characteristic.isReady() && characteristic.isReadable())
+                .collect(Collectors.toList());
+        if (readable.isEmpty()) {
+            throw new IllegalStateException("No readable characteristics (services might not be resolved yet)");
         }
+        DecoderCache decoderCache = bluetoothManagerCli.getDecoderCache();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger failed = new AtomicInteger();
+        // values are printed as they are read, unless there is no console to print them to
+        StringBuilder values = new StringBuilder();
+        Consumer<String> printer = bluetoothManagerCli.isHeadless()
+                ? value -> values.append(value).append(OsUtils.LINE_SEPARATOR) : logger::info;
+        long elapsed = new BulkReader(inflight).read(readable, result -> {
+            URL url = result.getGovernor().getURL();
+            latency.record(result.getLatency());
+            if (result.isFailed()) {
+                failed.incrementAndGet();
+                printer.accept(url + " [" + LatencyHistogram.format(result.getLatency()) + "]: FAILED: "
+                        + (result.getError() != null ? result.getError().getMessage() : "no value"));
+            } else {
+                printer.accept(url + " [" + LatencyHistogram.format(result.getLatency()) + "]:"
+                        + OsUtils.LINE_SEPARATOR + parse(decoderCache, url, result.getValue()));
+            }
+        });
+        String summary = "Read " + readable.size() + " characteristics (failed: " + failed.get() + ") in "
+                + LatencyHistogram.format(elapsed) + " with " + inflight + " in flight, latency: "
+                + latency.summary();
+        if (failed.get() > 0) {
+            throw new CommandFailedException(summary, values.toString());
+        }
+        return values + summary;
+    }
 
-        return builder.toString();
+    String parse(URL url, byte[] raw) {
+        return parse(bluetoothManagerCli.getDecoderCache(), url, raw);
     }
 
+    static String parse(DecoderCache decoderCache, URL url, byte[] raw) {
+        return decoderCache.render(new StringBuilder(), url.getCharacteristicUUID(), raw).toString();
+    }
 
 }
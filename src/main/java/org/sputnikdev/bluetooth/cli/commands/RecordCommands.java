@@ -0,0 +1,78 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.capture.CaptureWriter;
+import org.sputnikdev.bluetooth.cli.capture.Recorder;
+
+/**
+ * Commands to record notifications and advertisements into a capture file.
+ */
+@Component
+public class RecordCommands implements CommandMarker {
+
+    @Autowired
+    private Recorder recorder;
+
+    @CliAvailabilityIndicator({"record"})
+    public boolean isRecordAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "record", help = "Start/Stop recording notifications and advertisements into a capture file")
+    public String record(
+            @CliOption(key = {""}, mandatory = true, help = "Recording: start / stop / status") final String command,
+            @CliOption(key = {"file"}, mandatory = false, help = "Capture file") final String file,
+            @CliOption(key = {"advertisements"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false", help = "Record RSSI updates and advertised data of all devices "
+                    + "(creates a governor for every device)") final boolean advertisements)
+            throws IOException {
+        if ("start".equals(command)) {
+            if (file == null) {
+                throw new IllegalArgumentException("Specify a capture file (--file parameter)");
+            }
+            recorder.start(new File(file), advertisements);
+            return "Recording into: " + file;
+        } else if ("stop".equals(command)) {
+            CaptureWriter writer = recorder.stop();
+            return writer != null ? "Recording stopped: " + status(writer) : "Nothing to stop";
+        } else if ("status".equals(command)) {
+            CaptureWriter writer = recorder.getWriter();
+            return writer != null ? "Recording: " + status(writer) : "Not recording";
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private static String status(CaptureWriter writer) {
+        return writer.getFile() + ", records: " + writer.getRecords() + ", bytes: " + writer.getSize()
+                + (writer.getError() != null ? ", error: " + writer.getError().getMessage() : "");
+    }
+
+}
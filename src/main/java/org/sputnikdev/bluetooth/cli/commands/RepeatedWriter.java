@@ -0,0 +1,148 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+
+/**
+ * Writes the same value to a characteristic many times with a fixed number of writes in flight
+ * and an optional rate limit. Memory use does not depend on the number of writes: the serialized value is
+ * shared by all writes and latencies are recorded into a histogram.
+ * With a rate limit every write has a scheduled send time and its latency is measured from that time,
+ * so that a stalled device shows up in the latency instead of silently lowering the send rate.
+ */
+class RepeatedWriter {
+
+    private final int repeat;
+    private final double rate;
+    private final int inflight;
+
+    private final AtomicInteger issued = new AtomicInteger();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile Exception lastError;
+
+    /**
+     * Creates a writer.
+     * @param repeat number of writes
+     * @param rate writes per second, 0 for no limit
+     * @param inflight number of writes in flight
+     */
+    RepeatedWriter(int repeat, double rate, int inflight) {
+        if (repeat < 1 || inflight < 1 || rate < 0) {
+            throw new IllegalArgumentException("Invalid parameters, repeat: " + repeat + ", rate: " + rate
+                    + ", in flight: " + inflight);
+        }
+        this.repeat = repeat;
+        this.rate = rate;
+        this.inflight = inflight;
+    }
+
+    /**
+     * Parses a rate: "200", "200/s", "600/m" or "3600/h".
+     * @param value rate
+     * @return writes per second
+     */
+    static double parseRate(String value) {
+        String[] parts = value.trim().split("/");
+        double count = Double.parseDouble(parts[0].trim());
+        if (parts.length == 1 || "s".equals(parts[1].trim())) {
+            return count;
+        } else if ("m".equals(parts[1].trim())) {
+            return count / 60;
+        } else if ("h".equals(parts[1].trim())) {
+            return count / 3600;
+        }
+        throw new IllegalArgumentException("Invalid rate: " + value);
+    }
+
+    /**
+     * Writes the value and blocks until all writes complete.
+     * @param governor characteristic
+     * @param data serialized value
+     * @return elapsed time in nanoseconds
+     */
+    long write(CharacteristicGovernor governor, byte[] data) {
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        long started = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(inflight, repeat), runnable -> {
+            Thread thread = new Thread(runnable, "write-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < Math.min(inflight, repeat); i++) {
+            executor.execute(() -> {
+                int sequence;
+                while ((sequence = issued.getAndIncrement()) < repeat && !Thread.currentThread().isInterrupted()) {
+                    long scheduled = started + sequence * interval;
+                    long delay = scheduled - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                    long sent = interval > 0 ? scheduled : System.nanoTime();
+                    try {
+                        if (!governor.write(data)) {
+                            failed.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failed.incrementAndGet();
+                        lastError = ex;
+                    }
+                    latency.record(System.nanoTime() - sent);
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return System.nanoTime() - started;
+    }
+
+    long getCompleted() {
+        return latency.getCount();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    Exception getLastError() {
+        return lastError;
+    }
+
+}
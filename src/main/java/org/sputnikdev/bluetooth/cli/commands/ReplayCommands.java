@@ -0,0 +1,88 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.capture.Replayer;
+
+/**
+ * Commands to replay capture files.
+ */
+@Component
+public class ReplayCommands implements CommandMarker {
+
+    private static final String MAX_SPEED = "max";
+
+    @Autowired
+    private Replayer replayer;
+
+    @CliAvailabilityIndicator({"replay"})
+    public boolean isReplayAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "replay", help = "Replay a capture file through notification and discovery listeners")
+    public String replay(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "start",
+                    help = "Replay: start / stop / status") final String command,
+            @CliOption(key = {"file"}, mandatory = false, help = "Capture file") final String file,
+            @CliOption(key = {"speed"}, mandatory = false, unspecifiedDefaultValue = "1x",
+                    help = "Replay speed: 1x, 10x, max") final String speed) throws IOException {
+        if ("start".equals(command)) {
+            if (file == null) {
+                throw new IllegalArgumentException("Specify a capture file (--file parameter)");
+            }
+            replayer.start(new File(file), parseSpeed(speed));
+            return "Replaying: " + file + " at " + speed + " speed";
+        } else if ("stop".equals(command)) {
+            Replayer.Replay replay = replayer.stop();
+            return replay != null ? "Replay stopped" : "Nothing to stop";
+        } else if ("status".equals(command)) {
+            Replayer.Replay replay = replayer.getCurrent();
+            return replay != null ? replay.report() : "Nothing has been replayed";
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private static double parseSpeed(String speed) {
+        String value = speed.trim().toLowerCase();
+        if (MAX_SPEED.equals(value)) {
+            return 0;
+        }
+        if (value.endsWith("x")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        double factor = Double.parseDouble(value);
+        if (factor <= 0) {
+            throw new IllegalArgumentException("Speed must be positive: " + speed);
+        }
+        return factor;
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.pipeline.OverflowPolicy;
+import org.sputnikdev.bluetooth.cli.scan.NdjsonWriter;
+import org.sputnikdev.bluetooth.cli.scan.Scanner;
+
+/**
+ * Commands to stream discovered devices, RSSI updates and advertisement data into a file or standard output.
+ * Standard output is shared with the shell, it can be streamed into only in headless mode, where log messages
+ * go to the standard error. Status of a scan into standard output is logged rather than returned, so that
+ * the output stays valid NDJSON.
+ */
+@Component
+public class ScanCommands implements CommandMarker {
+
+    private static final String NDJSON_FORMAT = "ndjson";
+    private static final String STANDARD_OUTPUT = "-";
+    private static final String STANDARD_OUTPUT_TARGET = "stdout";
+    private static final String QUEUE_PROPERTY = "bluetooth.cli.scan.queue";
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+    @Autowired
+    private Scanner scanner;
+
+    @CliAvailabilityIndicator({"scan"})
+    public boolean isScanAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "scan", help = "Stream discovered devices, with --advertisements also RSSI updates "
+            + "and advertisement data. With a duration the command returns when the scan is over, "
+            + "otherwise it runs till 'scan stop'")
+    public String scan(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "start",
+                    help = "Scan: start / stop / status") final String command,
+            @CliOption(key = {"duration"}, mandatory = false,
+                    help = "Scan duration, e.g. 60s, 5m") final Duration duration,
+            @CliOption(key = {"format"}, mandatory = false, unspecifiedDefaultValue = NDJSON_FORMAT,
+                    help = "Output format: ndjson") final String format,
+            @CliOption(key = {"out"}, mandatory = false, unspecifiedDefaultValue = STANDARD_OUTPUT,
+                    help = "Output file, '-' for standard output (headless mode only)") final String out,
+            @CliOption(key = {"advertisements"}, mandatory = false, specifiedDefaultValue = "true",
+                    unspecifiedDefaultValue = "false", help = "Stream RSSI updates and advertised data too "
+                    + "(creates a governor for every device)") final boolean advertisements,
+            @CliOption(key = {"overflow"}, mandatory = false, unspecifiedDefaultValue = "drop-oldest",
+                    help = "When the output cannot keep up: drop-oldest / drop-newest / block "
+                            + "(makes bluetooth callbacks wait for the output)") final String overflow)
+            throws IOException {
+        if ("start".equals(command)) {
+            if (!NDJSON_FORMAT.equals(format)) {
+                throw new IllegalArgumentException("Unsupported format: " + format);
+            }
+            if (scanner.getWriter() != null) {
+                throw new IllegalStateException("Already scanning into: " + scanner.getWriter().getTarget());
+            }
+            NdjsonWriter started = createWriter(out, OverflowPolicy.fromString(overflow));
+            scanner.start(started, advertisements);
+            if (duration == null) {
+                return report(started, "Scanning into: " + out);
+            }
+            try {
+                Thread.sleep(duration.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            NdjsonWriter writer = scanner.stop();
+            return writer != null ? report(writer, "Scan finished: " + status(writer)) : "Scan has been stopped";
+        } else if ("stop".equals(command)) {
+            NdjsonWriter writer = scanner.stop();
+            return writer != null ? report(writer, "Scan stopped: " + status(writer)) : "Nothing to stop";
+        } else if ("status".equals(command)) {
+            NdjsonWriter writer = scanner.getWriter();
+            return writer != null ? report(writer, "Scanning: " + status(writer)) : "Not scanning";
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private NdjsonWriter createWriter(String out, OverflowPolicy overflowPolicy) throws IOException {
+        int capacity = Integer.getInteger(QUEUE_PROPERTY, 8192);
+        boolean standardOutput = STANDARD_OUTPUT.equals(out);
+        if (standardOutput && !bluetoothManagerCli.isHeadless()) {
+            throw new IllegalArgumentException("Standard output is shared with the shell, specify an output file: "
+                    + "--out <file> (standard output is supported in headless mode only)");
+        }
+        OutputStream stream = standardOutput ? System.out : new FileOutputStream(out);
+        return new NdjsonWriter(standardOutput ? STANDARD_OUTPUT_TARGET : out, stream, !standardOutput, capacity,
+                overflowPolicy, bluetoothManagerCli.getURLInterner());
+    }
+
+    private String report(NdjsonWriter writer, String message) {
+        if (STANDARD_OUTPUT_TARGET.equals(writer.getTarget())) {
+            logger.info(message);
+            return null;
+        }
+        return message;
+    }
+
+    private static String status(NdjsonWriter writer) {
+        return writer.getTarget() + ", events: " + writer.getWritten() + ", queued: " + writer.getQueueDepth()
+                + "/" + writer.getCapacity() + ", dropped: " + writer.getDropped()
+                + ", producer waits: " + writer.getBlocked()
+                + (writer.getError() != null ? ", error: " + writer.getError().getMessage() : "");
+    }
+
+}
@@ -20,8 +20,6 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
-import java.lang.reflect.Method;
-
 import org.apache.commons.beanutils.ConvertUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.shell.core.CommandMarker;
@@ -30,6 +28,7 @@ import org.springframework.shell.core.annotation.CliCommand;
 import org.springframework.shell.core.annotation.CliOption;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.governor.GovernorProperty;
 
 /**
  *
@@ -50,15 +49,14 @@ public class SetCommands implements CommandMarker {
     }
 
     @CliCommand(value = "set", help = "Modifies an attribute of a bluetooth object")
-    public String set(@CliOption(key = {"name"}, mandatory = true, help = "Attribute name") final Method method,
+    public String set(
+            @CliOption(key = {"name"}, mandatory = true, help = "Attribute name") final GovernorProperty property,
             @CliOption(key = {"value"}, mandatory = true, help = "Attribute value") final String value) {
 
-        try {
-            method.invoke(bluetoothManagerCli.getSelected(),
-                    ConvertUtils.convert(value, method.getParameterTypes()[0]));
-        } catch (Exception e) {
-            throw new IllegalStateException(e);
+        if (property == null) {
+            throw new IllegalArgumentException("Unknown attribute");
         }
+        property.set(bluetoothManagerCli.getSelected(), ConvertUtils.convert(value, property.getType()));
 
         return infoCommands.info(bluetoothManagerCli.getSelected().getURL());
     }
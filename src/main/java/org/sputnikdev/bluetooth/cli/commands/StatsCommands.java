@@ -0,0 +1,131 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.cli.metrics.StartupTimeline;
+import org.sputnikdev.bluetooth.cli.pipeline.AdvertisementDeduplicator;
+import org.sputnikdev.bluetooth.cli.pipeline.FramePipeline;
+import org.sputnikdev.bluetooth.cli.pipeline.ShardedDispatcher;
+import org.sputnikdev.bluetooth.cli.polling.PollScheduler;
+
+/**
+ * Commands to inspect internal counters of the CLI.
+ */
+@Component
+public class StatsCommands implements CommandMarker {
+
+    private static final String FORMAT_TWO_COLUMNS = "%-30s%-50s";
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+    @Autowired
+    private NotificationCommands notificationCommands;
+    @Autowired
+    private PollScheduler pollScheduler;
+
+    @CliAvailabilityIndicator({"stats"})
+    public boolean isStatsAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "stats", help = "Print internal statistics (notification pipeline, dispatcher, polling etc)")
+    public String stats() {
+        StringBuilder builder = new StringBuilder();
+        printPipeline(builder, "Notification pipeline:", notificationCommands.getPipeline());
+        printDispatcher(builder, "Listener dispatcher:", bluetoothManagerCli.getDispatcher());
+        printDeduplicator(builder, "Discovery deduplication:", bluetoothManagerCli.getDeduplicator());
+        printStartup(builder, "Startup:", bluetoothManagerCli.getStartupTimeline());
+        printPolling(builder, "Polling:", pollScheduler);
+        return builder.toString();
+    }
+
+    private void printPipeline(StringBuilder builder, String title, FramePipeline pipeline) {
+        format(builder, title, "");
+        format(builder, "  Overflow policy:", pipeline.getOverflowPolicy().toString());
+        format(builder, "  Consumers:", String.valueOf(pipeline.getConsumers()));
+        format(builder, "  Buffered:",
+                pipeline.size() + " / " + pipeline.getCapacity());
+        format(builder, "  Published:", String.valueOf(pipeline.getPublished()));
+        format(builder, "  Dropped:", String.valueOf(pipeline.getDropped()));
+        format(builder, "  Processed:", String.valueOf(pipeline.getProcessed()));
+        format(builder, "  Failed:", String.valueOf(pipeline.getFailed()));
+        format(builder, "  Latency:", pipeline.getLatency().summary());
+    }
+
+    private void printDispatcher(StringBuilder builder, String title, ShardedDispatcher dispatcher) {
+        format(builder, title, "");
+        for (ShardedDispatcher.Shard shard : dispatcher.getShards()) {
+            format(builder, "  " + shard.getName() + ":", "");
+            format(builder, "    Queued:", shard.getQueueDepth() + " (droppable: " + shard.getDroppable()
+                    + " / " + shard.getCapacity() + ")");
+            format(builder, "    Dispatched:", String.valueOf(shard.getDispatched()));
+            format(builder, "    Dropped:", String.valueOf(shard.getDropped()));
+            format(builder, "    Failed:", String.valueOf(shard.getFailed()));
+            format(builder, "    Service time:", shard.getServiceTime().summary());
+        }
+    }
+
+    private void printDeduplicator(StringBuilder builder, String title, AdvertisementDeduplicator deduplicator) {
+        format(builder, title, "");
+        format(builder, "  Cache slots:", String.valueOf(deduplicator.getCapacity()));
+        format(builder, "  RSSI bucket:", deduplicator.getRSSIBucket() + " dBm");
+        format(builder, "  Heartbeat:", LatencyHistogram.format(deduplicator.getHeartbeat()));
+        format(builder, "  Received:", String.valueOf(deduplicator.getReceived()));
+        format(builder, "  Suppressed:", String.valueOf(deduplicator.getSuppressed()));
+        format(builder, "  Forwarded:", deduplicator.getForwarded() + " (new: " + deduplicator.getNewDevices()
+                + ", RSSI: " + deduplicator.getRSSIChanges() + ", attributes: " + deduplicator.getAttributeChanges()
+                + ", heartbeat: " + deduplicator.getHeartbeats() + ")");
+        format(builder, "  Evicted:", String.valueOf(deduplicator.getEvicted()));
+    }
+
+    private void printStartup(StringBuilder builder, String title, StartupTimeline timeline) {
+        format(builder, title, "");
+        for (StartupTimeline.Stage stage : timeline.getStages()) {
+            format(builder, "  " + stage.getName() + ":", LatencyHistogram.format(stage.getDuration())
+                    + " (started at +" + LatencyHistogram.format(stage.getStart()) + " on " + stage.getThread()
+                    + (stage.isFailed() ? ", failed" : "") + ")");
+        }
+    }
+
+    private void printPolling(StringBuilder builder, String title, PollScheduler scheduler) {
+        format(builder, title, "");
+        format(builder, "  Polls:", String.valueOf(scheduler.getTasks().size()));
+        format(builder, "  Polled:", String.valueOf(scheduler.getPolled()));
+        format(builder, "  Failed:", String.valueOf(scheduler.getFailed()));
+        format(builder, "  Skipped rounds:", String.valueOf(scheduler.getSkippedRounds()));
+        format(builder, "  Missed deadlines:", String.valueOf(scheduler.getMissed()));
+        format(builder, "  Lag:", scheduler.getLag().summary());
+        format(builder, "  Round time:", scheduler.getRoundTime().summary());
+    }
+
+    private void format(StringBuilder builder, String column1, String column2) {
+        builder.append(String.format(FORMAT_TWO_COLUMNS, column1, column2)).append(OsUtils.LINE_SEPARATOR);
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.sputnikdev.bluetooth.cli.commands;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.cli.pipeline.ThrottlePolicies;
+import org.sputnikdev.bluetooth.cli.subscription.Subscription;
+import org.sputnikdev.bluetooth.cli.subscription.SubscriptionPattern;
+import org.sputnikdev.bluetooth.cli.subscription.SubscriptionRegistry;
+
+/**
+ * Commands to manage notification subscriptions.
+ */
+@Component
+public class SubscriptionCommands implements CommandMarker {
+
+    private static final String FORMAT = "%-5s%-70s%-10s%-10s%-10s%-10s";
+
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @CliAvailabilityIndicator({"subscribe", "subscription"})
+    public boolean isSubscriptionAvailable() {
+        return true;
+    }
+
+    @CliCommand(value = "subscribe",
+            help = "Enable notifications of all devices or characteristics matching a pattern as they get discovered")
+    public String subscribe(
+            @CliOption(key = {"url"}, mandatory = true,
+                    help = "URL pattern, e.g. /*/*/180d/2a37 or /XX:XX:XX:XX:XX:XX/*") final String url,
+            @CliOption(key = {"name"}, mandatory = false,
+                    help = "Regular expression to match device name or alias") final String name,
+            @CliOption(key = {"policy"}, mandatory = false, unspecifiedDefaultValue = ThrottlePolicies.LATEST,
+                    help = "Throttle policy: all / sample / latest / window / change") final String policy,
+            @CliOption(key = {"interval"}, mandatory = false, unspecifiedDefaultValue = "1s",
+                    help = "Interval for 'latest' and 'window' policies, e.g. 500ms, 1s, 1m") final Duration interval,
+            @CliOption(key = {"every"}, mandatory = false, unspecifiedDefaultValue = "10",
+                    help = "Forward every N-th value for 'sample' policy") final int every) {
+        // fail fast on unknown policies rather than when the first object gets attached
+        ThrottlePolicies.create(policy, interval, every);
+        Subscription subscription =
+                subscriptionRegistry.subscribe(SubscriptionPattern.parse(url, name), policy, interval, every);
+        return "Subscription #" + subscription.getId() + " created: " + subscription.getPattern()
+                + ", attached: " + subscription.getAttached().size();
+    }
+
+    @CliCommand(value = "subscription", help = "List / pause / resume / remove notification subscriptions")
+    public String subscription(
+            @CliOption(key = {""}, mandatory = false, unspecifiedDefaultValue = "list",
+                    help = "Subscription: list / pause / resume / remove") final String command,
+            @CliOption(key = {"id"}, mandatory = false, help = "Subscription id") final Integer id) {
+        if ("list".equals(command)) {
+            return list(subscriptionRegistry.getSubscriptions());
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("Specify a subscription id (--id parameter)");
+        }
+        Subscription subscription;
+        if ("pause".equals(command) || "resume".equals(command)) {
+            subscription = subscriptionRegistry.setPaused(id, "pause".equals(command));
+        } else if ("remove".equals(command)) {
+            subscription = subscriptionRegistry.remove(id);
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        if (subscription == null) {
+            throw new IllegalArgumentException("No such subscription: " + id);
+        }
+        return "Subscription #" + id + ": " + command + "d";
+    }
+
+    private static String list(List<Subscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return "No subscriptions";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(FORMAT, "Id", "Pattern", "Policy", "State", "Attached", "Events"));
+        for (Subscription subscription : subscriptions) {
+            builder.append(OsUtils.LINE_SEPARATOR).append(String.format(FORMAT,
+                    subscription.getId(), subscription.getPattern(), subscription.getPolicy(),
+                    subscription.isPaused() ? "paused" : "active", subscription.getAttached().size(),
+                    subscription.getEvents()));
+        }
+        return builder.toString();
+    }
+
+}
@@ -20,8 +20,6 @@ package org.sputnikdev.bluetooth.cli.commands;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -32,10 +30,10 @@ import org.springframework.shell.core.MethodTarget;
 import org.springframework.stereotype.Component;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
-import org.sputnikdev.bluetooth.manager.AdapterGovernor;
+import org.sputnikdev.bluetooth.cli.devices.URLIndex;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
-import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
 
 /**
  *
@@ -44,6 +42,8 @@ import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
 @Component
 public class URLConverter implements Converter<URL> {
 
+    private static final String COMPLETION_LIMIT_PROPERTY = "bluetooth.cli.completion.limit";
+
     @Autowired
     private BluetoothManagerCli bluetoothManagerCli;
 
@@ -62,42 +62,39 @@ public class URLConverter implements Converter<URL> {
             URL parent = selectedURL.getParent();
             return parent.isService() ? parent.getParent() : parent;
         }
-        return new URL(value);
+        List<URL> named = bluetoothManagerCli.getURLIndex().findDevices(value);
+        if (named.size() == 1) {
+            return named.get(0);
+        } else if (named.size() > 1) {
+            throw new IllegalArgumentException("Ambiguous device name: " + value + ", use one of: " + named);
+        }
+        return bluetoothManagerCli.getURLInterner().parse(value);
     }
 
     @Override
     public boolean getAllPossibleValues(List<Completion> completions, Class<?> targetType,
             String existingData, String optionContext, MethodTarget target) {
-        BluetoothGovernor selected = bluetoothManagerCli.getSelected();
-        if (selected == null) {
-            completions.addAll(getAdapters());
-        } else if (selected instanceof AdapterGovernor) {
-            completions.addAll(getDevices((AdapterGovernor) selected));
-        } else if (selected instanceof DeviceGovernor) {
-            completions.addAll(getCharacteristics((DeviceGovernor) selected));
+        URLIndex urlIndex = bluetoothManagerCli.getURLIndex();
+        int limit = Integer.getInteger(COMPLETION_LIMIT_PROPERTY, 100);
+        if (existingData == null || existingData.isEmpty()) {
+            BluetoothGovernor selected = bluetoothManagerCli.getSelected();
+            List<URL> children = urlIndex.getChildren(selected != null ? selected.getURL() : null, limit);
+            if (children.isEmpty() && selected instanceof DeviceGovernor && selected.isReady()) {
+                // services might have been resolved before the device got into the index
+                children = getCharacteristics((DeviceGovernor) selected);
+            }
+            children.forEach(url -> completions.add(new Completion(url.toString())));
+        } else {
+            urlIndex.findURLs(existingData, limit).forEach(url -> completions.add(new Completion(url.toString())));
+            urlIndex.findNames(existingData, limit).forEach(name -> completions.add(new Completion(name)));
         }
         return true;
     }
 
-    private List<Completion> getAdapters() {
-        List<Completion> result = new ArrayList<>();
-        for (DiscoveredAdapter adapter : bluetoothManagerCli.getDiscoveredAdapters()) {
-            result.add(new Completion(adapter.getURL().toString()));
-        }
-        return result;
-    }
-
-    private List<Completion> getDevices(AdapterGovernor adapterGovernor) {
-        return adapterGovernor.isReady() ?
-                getCompletions(adapterGovernor.getDeviceGovernors()) : Collections.emptyList();
-    }
-
-    private List<Completion> getCharacteristics(DeviceGovernor deviceGovernor) {
-        return deviceGovernor.isReady() ?
-                getCompletions(deviceGovernor.getCharacteristicGovernors()) : Collections.emptyList();
-    }
-
-    private List<Completion> getCompletions(List<? extends BluetoothGovernor> governors) {
-        return governors.stream().map(governor -> new Completion(governor.getURL().toString())).collect(Collectors.toList());
+    private List<URL> getCharacteristics(DeviceGovernor deviceGovernor) {
+        List<URL> characteristics = deviceGovernor.getCharacteristicGovernors().stream()
+                .map(CharacteristicGovernor::getURL).collect(Collectors.toList());
+        bluetoothManagerCli.getURLIndex().setCharacteristics(deviceGovernor.getURL(), characteristics);
+        return characteristics;
     }
 }
@@ -0,0 +1,51 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives RSSI updates and advertised data collected by {@link AdvertisementTaps}. Methods are called on transport
+ * threads, URL ids are interned, see {@link org.sputnikdev.bluetooth.cli.codec.URLInterner}.
+ */
+public interface AdvertisementListener {
+
+    /**
+     * Called when RSSI of a device changes.
+     * @param deviceId id of the device URL
+     * @param rssi RSSI
+     */
+    void rssiChanged(int deviceId, short rssi);
+
+    /**
+     * Called for each advertised service data entry.
+     * @param serviceId id of the service URL
+     * @param data service data
+     */
+    void serviceDataChanged(int serviceId, byte[] data);
+
+    /**
+     * Called for each advertised manufacturer data entry.
+     * @param deviceId id of the device URL
+     * @param manufacturerId manufacturer id
+     * @param data manufacturer data
+     */
+    void manufacturerDataChanged(int deviceId, short manufacturerId, byte[] data);
+
+}
@@ -0,0 +1,145 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.bluetooth.manager.GattService;
+import org.sputnikdev.bluetooth.manager.GenericBluetoothDeviceListener;
+
+/**
+ * Taps RSSI updates and advertised service/manufacturer data of discovered devices. These are delivered only
+ * to device governor listeners, so tapping a device makes the manager create a governor for it. Governors cannot be
+ * disposed through the manager API, hence consumers tap devices only on request and taps are removed when devices
+ * are lost. A closed instance does not tap any more devices.
+ */
+public class AdvertisementTaps {
+
+    private final BluetoothManagerCli bluetoothManagerCli;
+    private final AdvertisementListener listener;
+    private final Map<URL, Tap> taps = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    public AdvertisementTaps(BluetoothManagerCli bluetoothManagerCli, AdvertisementListener listener) {
+        this.bluetoothManagerCli = bluetoothManagerCli;
+        this.listener = listener;
+    }
+
+    /**
+     * Taps a device unless it is tapped already.
+     * @param url device URL
+     */
+    public void attach(URL url) {
+        if (closed) {
+            return;
+        }
+        Tap tap = taps.computeIfAbsent(url, Tap::new);
+        if (closed && taps.remove(url, tap)) {
+            // closed meanwhile, close might have missed the tap
+            tap.detach();
+        }
+    }
+
+    /**
+     * Removes a tap of a device, e.g. when the device is lost.
+     * @param url device URL
+     */
+    public void detach(URL url) {
+        Tap tap = taps.remove(url);
+        if (tap != null) {
+            tap.detach();
+        }
+    }
+
+    /**
+     * Removes all taps.
+     */
+    public void close() {
+        closed = true;
+        // taps are removed one by one, whoever removes a tap detaches it, see attach
+        for (URL url : taps.keySet()) {
+            detach(url);
+        }
+    }
+
+    private final class Tap implements GenericBluetoothDeviceListener, BluetoothSmartDeviceListener {
+
+        private final int urlId;
+        private final DeviceGovernor governor;
+
+        private Tap(URL url) {
+            URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+            this.urlId = urlInterner.id(url);
+            this.governor = bluetoothManagerCli.getBluetoothManager().getDeviceGovernor(url);
+            governor.addGenericBluetoothDeviceListener(this);
+            governor.addBluetoothSmartDeviceListener(this);
+            // the id stays valid while the tap is attached, even if the device gets lost meanwhile
+            urlInterner.retain(urlId);
+        }
+
+        private void detach() {
+            governor.removeGenericBluetoothDeviceListener(this);
+            governor.removeBluetoothSmartDeviceListener(this);
+            bluetoothManagerCli.getURLInterner().release(urlId);
+        }
+
+        @Override
+        public void online() { }
+
+        @Override
+        public void offline() { }
+
+        @Override
+        public void blocked(boolean blocked) { }
+
+        @Override
+        public void rssiChanged(short rssi) {
+            listener.rssiChanged(urlId, rssi);
+        }
+
+        @Override
+        public void servicesResolved(List<GattService> gattServices) { }
+
+        @Override
+        public void serviceDataChanged(Map<URL, byte[]> serviceData) {
+            URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+            for (Map.Entry<URL, byte[]> entry : serviceData.entrySet()) {
+                listener.serviceDataChanged(urlInterner.id(entry.getKey()), entry.getValue());
+            }
+        }
+
+        @Override
+        public void manufacturerDataChanged(Map<Short, byte[]> manufacturerData) {
+            for (Map.Entry<Short, byte[]> entry : manufacturerData.entrySet()) {
+                listener.manufacturerDataChanged(urlId, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+}
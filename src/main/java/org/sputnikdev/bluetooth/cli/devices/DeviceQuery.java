@@ -0,0 +1,226 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sputnikdev.bluetooth.cli.codec.Durations;
+import org.sputnikdev.bluetooth.cli.codec.MacAddress;
+
+/**
+ * A query over {@link DeviceTable}: a conjunction of conditions, sort order and limit.
+ * Conditions are given in the form of "rssi>-70 and service=fe95 and name~mi and age<30s", supported fields:
+ * <ul>
+ *     <li>rssi: =, &gt;, &gt;=, &lt;, &lt;=</li>
+ *     <li>service: = (full or short UUID of an advertised service), advertised services are tracked only
+ *     if bluetooth.cli.devices.services system property is set to true</li>
+ *     <li>name: = (case insensitive), ~ (regular expression)</li>
+ *     <li>mac: = (device address)</li>
+ *     <li>age: &lt;, &lt;= (time since the device was last seen, e.g. 30s, 5m)</li>
+ * </ul>
+ */
+public final class DeviceQuery {
+
+    /**
+     * Sort order of query results.
+     */
+    public enum Sort {
+        /** Insertion order. */
+        NONE,
+        /** Strongest signal first. */
+        RSSI,
+        /** Alphabetically by name, devices without name last. */
+        NAME,
+        /** By device address. */
+        MAC,
+        /** Most recently seen first. */
+        SEEN
+    }
+
+    private static final Pattern AND = Pattern.compile("\\s+and\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONDITION =
+            Pattern.compile("^(?<field>\\w+)\\s*(?<operator>>=|<=|!=|=|>|<|~)\\s*(?<value>.+)$");
+    private static final String BASE_UUID_SUFFIX = "-0000-1000-8000-00805f9b34fb";
+
+    private int minRSSI = Short.MIN_VALUE;
+    private int maxRSSI = Short.MAX_VALUE;
+    private final List<String> services = new ArrayList<>();
+    private Pattern name;
+    private long mac = -1;
+    private long maxAge = -1;
+    private Sort sort = Sort.NONE;
+    private int limit;
+
+    private DeviceQuery() { }
+
+    /**
+     * Parses a query.
+     * @param filter conditions joined by "and", can be null or empty
+     * @param sort sort order (rssi, name, mac, seen), can be null
+     * @param limit maximum number of results, 0 for no limit
+     * @return parsed query
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static DeviceQuery parse(String filter, String sort, int limit) {
+        DeviceQuery query = new DeviceQuery();
+        if (filter != null && !filter.trim().isEmpty()) {
+            for (String condition : AND.split(filter.trim())) {
+                query.addCondition(condition.trim());
+            }
+        }
+        if (sort != null && !sort.trim().isEmpty()) {
+            try {
+                query.sort = Sort.valueOf(sort.trim().toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unsupported sort order: " + sort);
+            }
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        query.limit = limit;
+        return query;
+    }
+
+    public int getMinRSSI() {
+        return minRSSI;
+    }
+
+    public int getMaxRSSI() {
+        return maxRSSI;
+    }
+
+    public List<String> getServices() {
+        return Collections.unmodifiableList(services);
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns a packed address of the device the query is restricted to.
+     * @return packed device address or -1
+     */
+    public long getMac() {
+        return mac;
+    }
+
+    /**
+     * Checks conditions that are not covered by table indexes.
+     * @param deviceName device name, can be null
+     * @param lastSeen when the device was last seen, ms
+     * @param now current time, ms
+     * @return true if the conditions are met
+     */
+    boolean matches(String deviceName, long lastSeen, long now) {
+        if (maxAge >= 0 && now - lastSeen > maxAge) {
+            return false;
+        }
+        return name == null || deviceName != null && name.matcher(deviceName).find();
+    }
+
+    private void addCondition(String condition) {
+        Matcher matcher = CONDITION.matcher(condition);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid condition: " + condition);
+        }
+        String field = matcher.group("field").toLowerCase();
+        String operator = matcher.group("operator");
+        String value = unquote(matcher.group("value").trim());
+        switch (field) {
+            case "rssi":
+                addRSSICondition(condition, operator, Integer.parseInt(value));
+                return;
+            case "service":
+                checkOperator(condition, operator, "=");
+                String uuid = value.toLowerCase();
+                services.add(uuid.length() == 4 ? "0000" + uuid + BASE_UUID_SUFFIX : uuid);
+                return;
+            case "name":
+                if ("~".equals(operator)) {
+                    name = Pattern.compile(value, Pattern.CASE_INSENSITIVE);
+                } else {
+                    checkOperator(condition, operator, "=");
+                    name = Pattern.compile("^" + Pattern.quote(value) + "$", Pattern.CASE_INSENSITIVE);
+                }
+                return;
+            case "mac":
+                checkOperator(condition, operator, "=");
+                mac = MacAddress.toLong(value);
+                return;
+            case "age":
+                if (!"<".equals(operator) && !"<=".equals(operator)) {
+                    throw new IllegalArgumentException("Unsupported operator: " + condition);
+                }
+                maxAge = Durations.parse(value).toMillis();
+                return;
+            default:
+                throw new IllegalArgumentException("Unsupported field: " + condition);
+        }
+    }
+
+    private void addRSSICondition(String condition, String operator, int rssi) {
+        switch (operator) {
+            case "=":
+                minRSSI = Math.max(minRSSI, rssi);
+                maxRSSI = Math.min(maxRSSI, rssi);
+                break;
+            case ">":
+                minRSSI = Math.max(minRSSI, rssi + 1);
+                break;
+            case ">=":
+                minRSSI = Math.max(minRSSI, rssi);
+                break;
+            case "<":
+                maxRSSI = Math.min(maxRSSI, rssi - 1);
+                break;
+            case "<=":
+                maxRSSI = Math.min(maxRSSI, rssi);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operator: " + condition);
+        }
+    }
+
+    private static void checkOperator(String condition, String operator, String expected) {
+        if (!expected.equals(operator)) {
+            throw new IllegalArgumentException("Unsupported operator: " + condition);
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() > 1 && (value.startsWith("\"") && value.endsWith("\"")
+                || value.startsWith("'") && value.endsWith("'"))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.codec.MacAddress;
+
+/**
+ * An immutable snapshot of a {@link DeviceTable} row.
+ */
+public final class DeviceRecord {
+
+    private final URL url;
+    private final long mac;
+    private final String name;
+    private final short rssi;
+    private final long lastSeen;
+    private final List<String> services;
+
+    DeviceRecord(URL url, long mac, String name, short rssi, long lastSeen, List<String> services) {
+        this.url = url;
+        this.mac = mac;
+        this.name = name;
+        this.rssi = rssi;
+        this.lastSeen = lastSeen;
+        this.services = services;
+    }
+
+    /**
+     * Returns URL the device was last discovered with.
+     * @return device URL
+     */
+    public URL getURL() {
+        return url;
+    }
+
+    public long getMac() {
+        return mac;
+    }
+
+    public String getAddress() {
+        return MacAddress.toString(mac);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public short getRSSI() {
+        return rssi;
+    }
+
+    /**
+     * Returns when the device was last seen.
+     * @return time in ms
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Returns UUIDs of services the device advertises data for.
+     * @return service UUIDs
+     */
+    public List<String> getServices() {
+        return services;
+    }
+
+}
@@ -0,0 +1,348 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.codec.MacAddress;
+
+/**
+ * An in-memory table of discovered devices maintained by discovery callbacks. Devices are keyed by their
+ * MAC address packed into a long, attributes are stored in columns. Rows are indexed by RSSI (a bitmap per
+ * RSSI value) and advertised service UUIDs (a bitmap per service), so that typical queries only touch
+ * matching rows.
+ */
+public class DeviceTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // RSSI values outside of this range are clamped in the index
+    private static final int MIN_RSSI = -128;
+    private static final int MAX_RSSI = 127;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntMap index = new LongIntMap(INITIAL_CAPACITY);
+    private long[] macs = new long[INITIAL_CAPACITY];
+    private short[] rssi = new short[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private URL[] urls = new URL[INITIAL_CAPACITY];
+    private int[][] services = new int[INITIAL_CAPACITY][];
+    private int size;
+
+    // RSSI index, bitmaps are created lazily as only a narrow range of RSSI values is used in practice
+    private final BitSet[] rssiIndex = new BitSet[MAX_RSSI - MIN_RSSI + 1];
+    private final Map<String, Integer> serviceIds = new HashMap<>();
+    private final List<String> serviceUUIDs = new ArrayList<>();
+    private final List<BitSet> serviceIndex = new ArrayList<>();
+
+    /**
+     * Inserts or updates a device.
+     * @param mac device address packed into a long, see {@link MacAddress}
+     * @param url device URL
+     * @param name device name, can be null
+     * @param rssi signal strength
+     * @param timestamp time when the device was seen, ms
+     */
+    public void update(long mac, URL url, String name, short rssi, long timestamp) {
+        lock.writeLock().lock();
+        try {
+            int row = index.get(mac);
+            if (row == LongIntMap.MISSING) {
+                row = append(mac);
+            } else {
+                rssiBitmap(this.rssi[row]).clear(row);
+            }
+            rssiBitmap(rssi).set(row);
+            this.rssi[row] = rssi;
+            lastSeen[row] = timestamp;
+            urls[row] = url;
+            if (name != null) {
+                names[row] = name;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates services the device advertises data for. The update is ignored if the device is not in the table.
+     * @param mac device address packed into a long, see {@link MacAddress}
+     * @param uuids service UUIDs
+     */
+    public void updateServices(long mac, Collection<String> uuids) {
+        lock.writeLock().lock();
+        try {
+            int row = index.get(mac);
+            if (row == LongIntMap.MISSING) {
+                return;
+            }
+            for (int id : services[row]) {
+                serviceIndex.get(id).clear(row);
+            }
+            int[] ids = new int[uuids.size()];
+            int count = 0;
+            for (String uuid : uuids) {
+                int id = serviceId(uuid.toLowerCase());
+                serviceIndex.get(id).set(row);
+                ids[count++] = id;
+            }
+            services[row] = ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a device, e.g. when it is lost. The last row takes the place of the removed one,
+     * so that rows stay dense.
+     * @param mac device address packed into a long, see {@link MacAddress}
+     * @return true if the device was in the table
+     */
+    public boolean remove(long mac) {
+        lock.writeLock().lock();
+        try {
+            int row = index.remove(mac);
+            if (row == LongIntMap.MISSING) {
+                return false;
+            }
+            rssiBitmap(rssi[row]).clear(row);
+            for (int id : services[row]) {
+                serviceIndex.get(id).clear(row);
+            }
+            int last = --size;
+            if (row != last) {
+                BitSet rssiRows = rssiBitmap(rssi[last]);
+                rssiRows.clear(last);
+                rssiRows.set(row);
+                for (int id : services[last]) {
+                    serviceIndex.get(id).clear(last);
+                    serviceIndex.get(id).set(row);
+                }
+                macs[row] = macs[last];
+                rssi[row] = rssi[last];
+                lastSeen[row] = lastSeen[last];
+                names[row] = names[last];
+                urls[row] = urls[last];
+                services[row] = services[last];
+                index.put(macs[row], row);
+            }
+            names[last] = null;
+            urls[last] = null;
+            services[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a query.
+     * @param query query
+     * @param now current time, ms, used to evaluate device age
+     * @return matching devices
+     */
+    public List<DeviceRecord> query(DeviceQuery query, long now) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = candidates(query);
+            if (candidates.isEmpty()) {
+                return Collections.emptyList();
+            }
+            int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+            List<DeviceRecord> result = new ArrayList<>(Math.min(limit, candidates.cardinality()));
+            if (query.getSort() == DeviceQuery.Sort.RSSI) {
+                // walking the RSSI index from the strongest signal gives sorted results without sorting
+                int min = clamp(query.getMinRSSI());
+                for (int value = clamp(query.getMaxRSSI()); value >= min && result.size() < limit; value--) {
+                    BitSet rows = rssiIndex[value - MIN_RSSI];
+                    if (rows == null) {
+                        continue;
+                    }
+                    for (int row = rows.nextSetBit(0); row >= 0 && result.size() < limit;
+                         row = rows.nextSetBit(row + 1)) {
+                        if (candidates.get(row) && rssi[row] >= query.getMinRSSI() && rssi[row] <= query.getMaxRSSI()
+                                && query.matches(names[row], lastSeen[row], now)) {
+                            result.add(record(row));
+                        }
+                    }
+                }
+                return result;
+            }
+            int[] rows = new int[candidates.cardinality()];
+            int count = 0;
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (query.matches(names[row], lastSeen[row], now)) {
+                    rows[count++] = row;
+                }
+            }
+            if (query.getSort() == DeviceQuery.Sort.NONE) {
+                for (int i = 0; i < count && i < limit; i++) {
+                    result.add(record(rows[i]));
+                }
+                return result;
+            }
+            // keep only top "limit" rows in a heap rather than sorting all matching rows
+            Comparator<Integer> comparator = comparator(query.getSort());
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, count) + 1, comparator.reversed());
+            for (int i = 0; i < count; i++) {
+                if (top.size() < limit) {
+                    top.add(rows[i]);
+                } else if (comparator.compare(rows[i], top.peek()) < 0) {
+                    top.poll();
+                    top.add(rows[i]);
+                }
+            }
+            Integer[] sorted = top.toArray(new Integer[top.size()]);
+            Arrays.sort(sorted, comparator);
+            for (Integer row : sorted) {
+                result.add(record(row));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet candidates(DeviceQuery query) {
+        BitSet candidates = new BitSet(size);
+        if (query.getMac() >= 0) {
+            int row = index.get(query.getMac());
+            if (row != LongIntMap.MISSING) {
+                candidates.set(row);
+            }
+        } else {
+            candidates.set(0, size);
+        }
+        for (String uuid : query.getServices()) {
+            Integer id = serviceIds.get(uuid);
+            if (id == null) {
+                return new BitSet();
+            }
+            candidates.and(serviceIndex.get(id));
+        }
+        if (query.getSort() != DeviceQuery.Sort.RSSI
+                && (query.getMinRSSI() > Short.MIN_VALUE || query.getMaxRSSI() < Short.MAX_VALUE)) {
+            BitSet inRange = new BitSet(size);
+            for (int value = clamp(query.getMinRSSI()); value <= clamp(query.getMaxRSSI()); value++) {
+                BitSet rows = rssiIndex[value - MIN_RSSI];
+                if (rows != null) {
+                    inRange.or(rows);
+                }
+            }
+            candidates.and(inRange);
+            // out of range values are clamped into the edge slots of the index, so exact values are checked
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (rssi[row] < query.getMinRSSI() || rssi[row] > query.getMaxRSSI()) {
+                    candidates.clear(row);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private Comparator<Integer> comparator(DeviceQuery.Sort sort) {
+        switch (sort) {
+            case NAME:
+                return Comparator.comparing((Integer row) -> names[row],
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            case MAC:
+                return Comparator.comparingLong(row -> macs[row]);
+            case SEEN:
+                return Comparator.comparingLong((Integer row) -> lastSeen[row]).reversed();
+            default:
+                return Comparator.comparingInt(row -> -rssi[row]);
+        }
+    }
+
+    private DeviceRecord record(int row) {
+        int[] ids = services[row];
+        List<String> uuids = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            uuids.add(serviceUUIDs.get(id));
+        }
+        return new DeviceRecord(urls[row], macs[row], names[row], rssi[row], lastSeen[row], uuids);
+    }
+
+    private int append(long mac) {
+        if (size == macs.length) {
+            int capacity = size << 1;
+            macs = Arrays.copyOf(macs, capacity);
+            rssi = Arrays.copyOf(rssi, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            names = Arrays.copyOf(names, capacity);
+            urls = Arrays.copyOf(urls, capacity);
+            services = Arrays.copyOf(services, capacity);
+        }
+        int row = size++;
+        macs[row] = mac;
+        services[row] = new int[0];
+        index.put(mac, row);
+        return row;
+    }
+
+    private BitSet rssiBitmap(short value) {
+        int slot = clamp(value) - MIN_RSSI;
+        BitSet rows = rssiIndex[slot];
+        if (rows == null) {
+            rows = new BitSet();
+            rssiIndex[slot] = rows;
+        }
+        return rows;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(MIN_RSSI, Math.min(MAX_RSSI, value));
+    }
+
+    private int serviceId(String uuid) {
+        Integer id = serviceIds.get(uuid);
+        if (id == null) {
+            id = serviceUUIDs.size();
+            serviceIds.put(uuid, id);
+            serviceUUIDs.add(uuid);
+            serviceIndex.add(new BitSet());
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A minimal open addressing map of primitive long keys to non negative int values.
+ * Not thread-safe, guarded by {@link DeviceTable}.
+ */
+class LongIntMap {
+
+    static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntMap(int capacity) {
+        int length = Integer.highestOneBit(Math.max(16, (int) (capacity / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[length];
+        values = new int[length];
+        Arrays.fill(values, MISSING);
+    }
+
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int index = hash(key) & mask; values[index] != MISSING; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(long key, int value) {
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (values[index] != MISSING) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Removes a key, entries that follow it in the probe sequence are shifted back, so no tombstones are left.
+     * @param key key
+     * @return removed value or {@link #MISSING}
+     */
+    int remove(long key) {
+        int mask = keys.length - 1;
+        for (int index = hash(key) & mask; values[index] != MISSING; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                int value = values[index];
+                int free = index;
+                for (int next = (index + 1) & mask; values[next] != MISSING; next = (next + 1) & mask) {
+                    // an entry can move back only if the free slot is not before its home slot
+                    int home = hash(keys[next]) & mask;
+                    if (((next - home) & mask) >= ((next - free) & mask)) {
+                        keys[free] = keys[next];
+                        values[free] = values[next];
+                        free = next;
+                    }
+                }
+                values[free] = MISSING;
+                size--;
+                return value;
+            }
+        }
+        return MISSING;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new int[oldValues.length << 1];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
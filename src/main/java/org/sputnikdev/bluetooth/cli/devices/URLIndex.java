@@ -0,0 +1,213 @@
+package org.sputnikdev.bluetooth.cli.devices;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * A sorted index of known adapter, device and characteristic URLs and of device names and aliases, maintained
+ * incrementally by discovery and services-resolved callbacks. Lookups are prefix range scans of skip lists,
+ * so their cost depends on the number of matches rather than on the number of known objects.
+ * Children of an object are found by a range scan of the next level with the object URL as prefix
+ * (services are skipped, children of a device are its characteristics).
+ */
+public class URLIndex {
+
+    // any character that sorts after all characters used in URLs and names
+    private static final char RANGE_END = Character.MAX_VALUE;
+    // separates a lowercased name from the URL of its device in name keys
+    private static final char NAME_SEPARATOR = '\u0000';
+
+    private final NavigableMap<String, URL> adapters = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, URL> devices = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, URL> characteristics = new ConcurrentSkipListMap<>();
+    // "lowercased name \0 url" -> name as advertised
+    private final NavigableMap<String, String> names = new ConcurrentSkipListMap<>();
+    // name keys of every device, so that they can be removed when the device is updated or lost
+    private final Map<URL, List<String>> deviceNames = new ConcurrentHashMap<>();
+
+    public void addAdapter(URL url) {
+        adapters.put(url.toString(), url);
+    }
+
+    /**
+     * Adds or updates a device.
+     * @param url device URL
+     * @param name device name, can be null
+     * @param alias device alias, can be null
+     */
+    public void addDevice(URL url, String name, String alias) {
+        String key = url.toString();
+        devices.put(key, url);
+        List<String> keys = new ArrayList<>(2);
+        for (String label : new String[] {name, alias}) {
+            if (label != null && !label.trim().isEmpty() && !keys.contains(nameKey(label, key))) {
+                keys.add(nameKey(label, key));
+                names.put(nameKey(label, key), label);
+            }
+        }
+        List<String> previous = deviceNames.put(url, keys);
+        if (previous != null) {
+            previous.stream().filter(previousKey -> !keys.contains(previousKey)).forEach(names::remove);
+        }
+    }
+
+    /**
+     * Replaces characteristics of a device.
+     * @param device device URL
+     * @param urls characteristic URLs
+     */
+    public void setCharacteristics(URL device, Iterable<URL> urls) {
+        clear(characteristics, device.toString() + "/");
+        for (URL url : urls) {
+            characteristics.put(url.toString(), url);
+        }
+    }
+
+    /**
+     * Removes an object and all its descendants.
+     * @param url adapter, device or characteristic URL
+     */
+    public void remove(URL url) {
+        String key = url.toString();
+        if (url.isAdapter()) {
+            adapters.remove(key);
+            for (URL device : new ArrayList<>(range(devices, key + "/").values())) {
+                remove(device);
+            }
+        } else if (url.isDevice()) {
+            devices.remove(key);
+            List<String> keys = deviceNames.remove(url);
+            if (keys != null) {
+                keys.forEach(names::remove);
+            }
+            clear(characteristics, key + "/");
+        } else {
+            characteristics.remove(key);
+        }
+    }
+
+    /**
+     * Returns direct children of an object: adapters of the root, devices of an adapter, characteristics
+     * of a device.
+     * @param parent parent URL
+     * @param limit maximum number of results
+     * @return URLs of children, sorted
+     */
+    public List<URL> getChildren(URL parent, int limit) {
+        NavigableMap<String, URL> children;
+        if (parent == null || parent.isRoot()) {
+            children = adapters;
+        } else if (parent.isAdapter()) {
+            children = range(devices, parent.toString() + "/");
+        } else if (parent.isDevice()) {
+            children = range(characteristics, parent.toString() + "/");
+        } else {
+            return Collections.emptyList();
+        }
+        return take(children.values(), limit);
+    }
+
+    /**
+     * Returns URLs that start with the given prefix.
+     * @param prefix URL prefix
+     * @param limit maximum number of results
+     * @return matching URLs, adapters first then devices then characteristics
+     */
+    public List<URL> findURLs(String prefix, int limit) {
+        List<URL> result = new ArrayList<>(take(range(adapters, prefix).values(), limit));
+        result.addAll(take(range(devices, prefix).values(), limit - result.size()));
+        result.addAll(take(range(characteristics, prefix).values(), limit - result.size()));
+        return result;
+    }
+
+    /**
+     * Returns distinct device names and aliases that start with the given prefix, case insensitive.
+     * @param prefix name prefix
+     * @param limit maximum number of results
+     * @return matching names, sorted
+     */
+    public Set<String> findNames(String prefix, int limit) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : range(names, prefix.toLowerCase(Locale.ROOT)).values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Returns URLs of devices that have the given name or alias, case insensitive.
+     * @param name device name or alias
+     * @return device URLs
+     */
+    public List<URL> findDevices(String name) {
+        List<URL> result = new ArrayList<>();
+        for (String key : range(names, name.toLowerCase(Locale.ROOT) + NAME_SEPARATOR).keySet()) {
+            URL url = devices.get(key.substring(key.indexOf(NAME_SEPARATOR) + 1));
+            if (url != null) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+
+    public int getSize() {
+        return adapters.size() + devices.size() + characteristics.size();
+    }
+
+    private static String nameKey(String name, String url) {
+        return name.toLowerCase(Locale.ROOT) + NAME_SEPARATOR + url;
+    }
+
+    private static <V> NavigableMap<String, V> range(NavigableMap<String, V> map, String prefix) {
+        return map.subMap(prefix, true, prefix + RANGE_END, false);
+    }
+
+    private static void clear(NavigableMap<String, ?> map, String prefix) {
+        range(map, prefix).clear();
+    }
+
+    private static <T> List<T> take(Iterable<T> values, int limit) {
+        List<T> result = new ArrayList<>();
+        for (T value : values) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+
+}
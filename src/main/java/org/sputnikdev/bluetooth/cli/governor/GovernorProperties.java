@@ -0,0 +1,174 @@
+package org.sputnikdev.bluetooth.cli.governor;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.sputnikdev.bluetooth.manager.AdapterGovernor;
+import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+
+/**
+ * An immutable table of simple properties of a governor interface. Introspection and method handle lookups
+ * happen once per interface when the class is loaded, so that printing and setting properties
+ * is a map lookup and a direct method handle call.
+ */
+public final class GovernorProperties {
+
+    private static final GovernorProperties ADAPTER = new GovernorProperties(AdapterGovernor.class);
+    private static final GovernorProperties DEVICE = new GovernorProperties(DeviceGovernor.class);
+    private static final GovernorProperties CHARACTERISTIC = new GovernorProperties(CharacteristicGovernor.class);
+
+    private final Class<? extends BluetoothGovernor> governorInterface;
+    private final List<GovernorProperty> properties;
+    private final List<GovernorProperty> writable;
+    private final Map<String, GovernorProperty> byDisplayName;
+    private final Map<String, GovernorProperty> byName;
+
+    private GovernorProperties(Class<? extends BluetoothGovernor> governorInterface) {
+        this.governorInterface = governorInterface;
+        List<GovernorProperty> all = introspect(governorInterface);
+        all.sort(Comparator.comparing(GovernorProperty::getDisplayName));
+        List<GovernorProperty> readable = new ArrayList<>();
+        List<GovernorProperty> writableOnly = new ArrayList<>();
+        Map<String, GovernorProperty> displayNames = new HashMap<>();
+        Map<String, GovernorProperty> names = new HashMap<>();
+        for (GovernorProperty property : all) {
+            if (property.isReadable()) {
+                readable.add(property);
+            }
+            if (property.isWritable()) {
+                writableOnly.add(property);
+            }
+            displayNames.put(property.getDisplayName(), property);
+            names.put(property.getName(), property);
+        }
+        this.properties = Collections.unmodifiableList(readable);
+        this.writable = Collections.unmodifiableList(writableOnly);
+        this.byDisplayName = Collections.unmodifiableMap(displayNames);
+        this.byName = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Returns the property table of the governor interface implemented by the given governor.
+     * @param governor governor
+     * @return property table or null if the governor is null or does not implement any supported interface
+     */
+    public static GovernorProperties of(BluetoothGovernor governor) {
+        if (governor instanceof AdapterGovernor) {
+            return ADAPTER;
+        } else if (governor instanceof DeviceGovernor) {
+            return DEVICE;
+        } else if (governor instanceof CharacteristicGovernor) {
+            return CHARACTERISTIC;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the property table of a governor interface.
+     * @param governorInterface one of {@link AdapterGovernor}, {@link DeviceGovernor}
+     *                          or {@link CharacteristicGovernor}
+     * @return property table
+     */
+    public static GovernorProperties forInterface(Class<?> governorInterface) {
+        if (AdapterGovernor.class.equals(governorInterface)) {
+            return ADAPTER;
+        } else if (DeviceGovernor.class.equals(governorInterface)) {
+            return DEVICE;
+        } else if (CharacteristicGovernor.class.equals(governorInterface)) {
+            return CHARACTERISTIC;
+        }
+        throw new IllegalArgumentException("Unsupported governor interface: " + governorInterface);
+    }
+
+    public Class<? extends BluetoothGovernor> getGovernorInterface() {
+        return governorInterface;
+    }
+
+    /**
+     * Returns all readable properties sorted by display name.
+     * @return properties
+     */
+    public List<GovernorProperty> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns writable properties sorted by display name.
+     * @return writable properties
+     */
+    public List<GovernorProperty> getWritableProperties() {
+        return writable;
+    }
+
+    /**
+     * Looks up a property by its display name ("Connection Control") or by its property name
+     * ("connectionControl"), whitespace and the case of the first letter are ignored.
+     * @param name display or property name
+     * @return property or null if not found
+     */
+    public GovernorProperty find(String name) {
+        GovernorProperty property = byDisplayName.get(name);
+        if (property == null) {
+            property = byName.get(StringUtils.uncapitalize(name.replaceAll("\\s", "")));
+        }
+        return property;
+    }
+
+    private static List<GovernorProperty> introspect(Class<?> governorInterface) {
+        List<GovernorProperty> result = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(governorInterface).getPropertyDescriptors()) {
+                Class<?> propertyClass = descriptor.getPropertyType();
+                if (propertyClass == null
+                        || !(propertyClass.isPrimitive() || propertyClass.isAssignableFrom(Number.class)
+                        || propertyClass.equals(String.class))) {
+                    continue;
+                }
+                String displayName = StringUtils.capitalize(String.join(" ",
+                        StringUtils.splitByCharacterTypeCamelCase(descriptor.getDisplayName())));
+                MethodHandle getter = descriptor.getReadMethod() != null
+                        ? lookup.unreflect(descriptor.getReadMethod()) : null;
+                MethodHandle setter = descriptor.getWriteMethod() != null
+                        ? lookup.unreflect(descriptor.getWriteMethod()) : null;
+                result.add(new GovernorProperty(descriptor.getName(), displayName, propertyClass, getter, setter));
+            }
+        } catch (IntrospectionException | IllegalAccessException ex) {
+            throw new IllegalStateException("Could not introspect governor interface: " + governorInterface, ex);
+        }
+        return result;
+    }
+
+}
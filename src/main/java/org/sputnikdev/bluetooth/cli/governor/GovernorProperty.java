@@ -0,0 +1,112 @@
+package org.sputnikdev.bluetooth.cli.governor;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+
+/**
+ * A simple (primitive, number or string) property of a governor interface with getter and setter
+ * resolved into method handles.
+ */
+public final class GovernorProperty {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, BluetoothGovernor.class);
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, BluetoothGovernor.class, Object.class);
+
+    private final String name;
+    private final String displayName;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    GovernorProperty(String name, String displayName, Class<?> type, MethodHandle getter, MethodHandle setter) {
+        this.name = name;
+        this.displayName = displayName;
+        this.type = type;
+        this.getter = getter != null ? getter.asType(GETTER_TYPE) : null;
+        this.setter = setter != null ? setter.asType(SETTER_TYPE) : null;
+    }
+
+    /**
+     * Returns the bean property name, e.g. "connectionControl".
+     * @return property name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the human readable name, e.g. "Connection Control".
+     * @return display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Reads the property.
+     * @param governor governor implementing the interface of the property
+     * @return property value
+     */
+    public Object get(BluetoothGovernor governor) {
+        if (getter == null) {
+            throw new IllegalStateException("Property is not readable: " + name);
+        }
+        try {
+            return (Object) getter.invokeExact(governor);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Could not read property: " + name, ex);
+        }
+    }
+
+    /**
+     * Writes the property.
+     * @param governor governor implementing the interface of the property
+     * @param value property value of the property type (or its wrapper)
+     */
+    public void set(BluetoothGovernor governor, Object value) {
+        if (setter == null) {
+            throw new IllegalStateException("Property is not writable: " + name);
+        }
+        try {
+            setter.invokeExact(governor, value);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Could not write property: " + name, ex);
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+package org.sputnikdev.bluetooth.cli.governor;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.manager.AdapterGovernor;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+
+/**
+ * Walks the governor hierarchy (adapters, devices, services and characteristics) below a URL.
+ * State of every node is fetched on a worker pool, so that independent branches are queried concurrently,
+ * and a node that does not respond within the timeout is reported as such without descending into it.
+ * Rows are passed to the sink as soon as their node is fetched, hence rows of different branches may
+ * interleave; every row carries the full URL of its object and is indented by depth.
+ */
+public class GovernorTree {
+
+    private static final String INDENT = "  ";
+
+    private final BluetoothManager bluetoothManager;
+    private final BluetoothGattParser parser;
+    private final int parallelism;
+    private final long timeout;
+    private final Consumer<String> sink;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger nodes = new AtomicInteger();
+    private final AtomicInteger timedOut = new AtomicInteger();
+    private final AtomicInteger notReady = new AtomicInteger();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private ExecutorService executor;
+    private ScheduledExecutorService timer;
+
+    /**
+     * Creates a tree walker, an instance can walk only once.
+     * @param bluetoothManager bluetooth manager
+     * @param parser GATT parser to resolve service and characteristic names
+     * @param parallelism number of nodes fetched concurrently
+     * @param timeout per node timeout in milliseconds
+     * @param sink receives rows as they complete, calls are serialized
+     */
+    public GovernorTree(BluetoothManager bluetoothManager, BluetoothGattParser parser, int parallelism,
+                        long timeout, Consumer<String> sink) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.bluetoothManager = bluetoothManager;
+        this.parser = parser;
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.sink = sink;
+    }
+
+    /**
+     * Walks the tree below the given URL and blocks until all nodes are fetched or timed out.
+     * @param root root, adapter, device, service or characteristic URL
+     * @return elapsed time in nanoseconds
+     */
+    public long walk(URL root) {
+        if (executor != null) {
+            throw new IllegalStateException("Tree has already been walked");
+        }
+        long started = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism,
+                runnable -> daemon(runnable, "info-tree-" + threads.incrementAndGet()));
+        ScheduledThreadPoolExecutor timer =
+                new ScheduledThreadPoolExecutor(1, runnable -> daemon(runnable, "info-tree-timer"));
+        // timeouts of settled nodes are cancelled, they should not stay in the queue till they expire
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+        try {
+            if (root.isRoot()) {
+                pending.incrementAndGet();
+                for (DiscoveredAdapter adapter : bluetoothManager.getDiscoveredAdapters()) {
+                    submit(adapter.getURL(), 0);
+                }
+                complete();
+            } else {
+                submit(root, 0);
+            }
+            done.join();
+        } finally {
+            // workers stuck in unresponsive governors are left to finish on their own
+            executor.shutdownNow();
+            timer.shutdownNow();
+        }
+        return System.nanoTime() - started;
+    }
+
+    public int getNodes() {
+        return nodes.get();
+    }
+
+    public int getTimedOut() {
+        return timedOut.get();
+    }
+
+    public int getNotReady() {
+        return notReady.get();
+    }
+
+    private void submit(URL url, int depth) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            // the timeout starts when the node is fetched, not when it is queued
+            AtomicBoolean settled = new AtomicBoolean();
+            Thread worker = Thread.currentThread();
+            ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+                synchronized (settled) {
+                    if (!settled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    worker.interrupt();
+                }
+                timedOut.incrementAndGet();
+                emit(Collections.singletonList(indent(depth) + url + " [Timed out]"));
+                complete();
+            }, timeout, TimeUnit.MILLISECONDS);
+            Node node = fetch(url, depth);
+            timeoutTask.cancel(false);
+            if (settled.compareAndSet(false, true)) {
+                emit(node.rows);
+                node.children.forEach(child -> submit(child, depth + node.childDepth));
+                complete();
+            } else {
+                synchronized (settled) {
+                    // the interrupt was meant for this node only
+                    Thread.interrupted();
+                }
+            }
+        });
+    }
+
+    private Node fetch(URL url, int depth) {
+        nodes.incrementAndGet();
+        Node node = new Node();
+        String indent = indent(depth);
+        try {
+            if (url.isAdapter()) {
+                AdapterGovernor governor = bluetoothManager.getAdapterGovernor(url);
+                node.rows.add(indent + url + " [" + governor.getDisplayName() + "] powered: " + governor.isPowered()
+                        + ", discovering: " + governor.isDiscovering());
+                node.children.addAll(governor.getDevices());
+            } else if (url.isDevice() || url.isService()) {
+                DeviceGovernor governor = bluetoothManager.getDeviceGovernor(url.getDeviceURL());
+                if (url.isDevice()) {
+                    node.rows.add(indent + url + " [" + governor.getDisplayName() + "] RSSI: " + governor.getRSSI()
+                            + ", connected: " + governor.isConnected());
+                }
+                String serviceIndent = url.isDevice() ? indent(depth + 1) : indent;
+                for (Map.Entry<URL, List<CharacteristicGovernor>> service
+                        : governor.getServicesToCharacteristicsMap().entrySet()) {
+                    if (url.isService() && !url.equals(service.getKey())) {
+                        continue;
+                    }
+                    node.rows.add(serviceIndent + service.getKey() + " ["
+                            + serviceName(service.getKey().getServiceUUID()) + "]");
+                    service.getValue().forEach(characteristic -> node.children.add(characteristic.getURL()));
+                }
+                node.childDepth = url.isDevice() ? 2 : 1;
+            } else if (url.isCharacteristic()) {
+                CharacteristicGovernor governor = bluetoothManager.getCharacteristicGovernor(url);
+                node.rows.add(indent + url + " [" + characteristicName(url.getCharacteristicUUID()) + "] ["
+                        + governor.getFlags().stream().map(Object::toString).collect(Collectors.joining(", ")) + "]");
+            } else {
+                node.rows.add(indent + url + " [Unsupported]");
+            }
+        } catch (NotReadyException ex) {
+            notReady.incrementAndGet();
+            node.rows.add(indent + url + " [Not ready]");
+        } catch (RuntimeException ex) {
+            node.rows.add(indent + url + " [Failed: " + ex.getMessage() + "]");
+        }
+        return node;
+    }
+
+    // the parser loads specifications lazily and is not safe for concurrent use
+    private String serviceName(String serviceUUID) {
+        synchronized (parser) {
+            return parser.isKnownService(serviceUUID) ? parser.getService(serviceUUID).getName() : "Unrecognised";
+        }
+    }
+
+    private String characteristicName(String characteristicUUID) {
+        synchronized (parser) {
+            return parser.isKnownCharacteristic(characteristicUUID)
+                    ? parser.getCharacteristic(characteristicUUID).getName() : "Unrecognised";
+        }
+    }
+
+    private synchronized void emit(List<String> rows) {
+        rows.forEach(sink);
+    }
+
+    private void complete() {
+        if (pending.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+    }
+
+    private static String indent(int depth) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append(INDENT);
+        }
+        return builder.toString();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Node {
+        private final List<String> rows = new ArrayList<>();
+        private final List<URL> children = new ArrayList<>();
+        private int childDepth = 1;
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.sputnikdev.bluetooth.cli.jobs;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * A background operation on a bluetooth object, e.g. an asynchronous read or write.
+ */
+public class Job {
+
+    public enum Status {
+        RUNNING, DONE, FAILED, TIMED_OUT, CANCELLED
+    }
+
+    private final int id;
+    private final String operation;
+    private final URL url;
+    private final long started = System.nanoTime();
+    private final CompletableFuture<String> result;
+    private volatile long finished;
+
+    Job(int id, String operation, URL url, CompletableFuture<String> result) {
+        this.id = id;
+        this.operation = operation;
+        this.url = url;
+        this.result = result;
+        result.whenComplete((value, error) -> finished = System.nanoTime());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns the future of the job result, it completes exceptionally with {@link TimeoutException}
+     * if the job times out and gets cancelled if the job is cancelled.
+     * @return result future
+     */
+    public CompletableFuture<String> getResult() {
+        return result;
+    }
+
+    public Status getStatus() {
+        if (!result.isDone()) {
+            return Status.RUNNING;
+        } else if (result.isCancelled()) {
+            return Status.CANCELLED;
+        } else if (result.isCompletedExceptionally()) {
+            return getError() instanceof TimeoutException ? Status.TIMED_OUT : Status.FAILED;
+        }
+        return Status.DONE;
+    }
+
+    /**
+     * Returns how long the job has been running or took to complete.
+     * @return elapsed time in nanoseconds
+     */
+    public long getElapsed() {
+        long end = finished;
+        return (end != 0 ? end : System.nanoTime()) - started;
+    }
+
+    /**
+     * Returns the error the job failed with.
+     * @return error or null if the job is running or completed successfully
+     */
+    public Throwable getError() {
+        if (!result.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            result.join();
+            return null;
+        } catch (CancellationException ex) {
+            return ex;
+        } catch (CompletionException ex) {
+            return ex.getCause() != null ? ex.getCause() : ex;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + operation + " " + url;
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.sputnikdev.bluetooth.cli.jobs;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.shell.support.util.OsUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * Keeps track of background jobs. A job is driven by a future of the governor API (e.g. "when ready then read"),
+ * so it does not occupy any thread while waiting for a device to become ready; the operation itself is started
+ * on a job thread, so that the shell thread never blocks. Jobs that do not complete in time are failed
+ * with {@link TimeoutException}. Completion of every job is printed to the shell; a limited number of finished
+ * jobs is kept so that their results can be looked up later.
+ */
+@Component
+public class JobRegistry {
+
+    private static final String RETAINED_PROPERTY = "bluetooth.cli.jobs.retained";
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private final NavigableMap<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+    private final int retained = Integer.getInteger(RETAINED_PROPERTY, 100);
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "job-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts a job.
+     * @param operation operation name, e.g. "read"
+     * @param url target of the operation
+     * @param action starts the operation and returns the governor future of it (e.g. of whenReady),
+     *               the future is cancelled if the job times out or gets cancelled
+     * @param formatter converts the operation result into a printable result
+     * @param timeout timeout in milliseconds
+     * @param <T> operation result type
+     * @return started job
+     */
+    public <T> Job submit(String operation, URL url, Supplier<CompletableFuture<T>> action,
+                          Function<T, String> formatter, long timeout) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Job job = new Job(ids.incrementAndGet(), operation, url, result);
+        jobs.put(job.getId(), job);
+        AtomicReference<CompletableFuture<T>> operationFuture = new AtomicReference<>();
+        // governor futures run the action on the calling thread if the object is ready already
+        CompletableFuture<String> pending = CompletableFuture.supplyAsync(() -> {
+            if (result.isDone()) {
+                throw new CancellationException();
+            }
+            CompletableFuture<T> future = action.get();
+            operationFuture.set(future);
+            if (result.isDone()) {
+                // the job finished while the operation was being started
+                future.cancel(true);
+            }
+            return future;
+        }, executor).thenCompose(future -> future.thenApply(formatter));
+        ScheduledFuture<?> timeoutTask = timer.schedule(
+            () -> result.completeExceptionally(new TimeoutException("Timed out after " + timeout + " ms")),
+            timeout, TimeUnit.MILLISECONDS);
+        pending.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                result.complete(value);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            timeoutTask.cancel(false);
+            pending.cancel(true);
+            // otherwise the governor keeps the operation and performs it when the object becomes ready
+            CompletableFuture<T> future = operationFuture.get();
+            if (future != null) {
+                future.cancel(true);
+            }
+            report(job);
+            prune();
+        });
+        return job;
+    }
+
+    public Job get(int id) {
+        return jobs.get(id);
+    }
+
+    public Collection<Job> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * Cancels a job. The job is marked as cancelled straight away and the pending governor operation
+     * is cancelled, so it is not performed when the object becomes ready later. An operation that a device
+     * has already started might still take effect.
+     * @param id job id
+     * @return true if the job was running
+     */
+    public boolean cancel(int id) {
+        Job job = jobs.get(id);
+        return job != null && job.getResult().cancel(true);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void report(Job job) {
+        Job.Status status = job.getStatus();
+        String elapsed = LatencyHistogram.format(job.getElapsed());
+        if (status == Job.Status.DONE) {
+            logger.info("Job " + job + " completed in " + elapsed + ":" + OsUtils.LINE_SEPARATOR
+                    + job.getResult().join());
+        } else {
+            logger.info("Job " + job + " " + status + " after " + elapsed
+                    + (job.getError() != null && status != Job.Status.CANCELLED
+                    ? ": " + job.getError().getMessage() : ""));
+        }
+    }
+
+    private void prune() {
+        List<Integer> finished = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (job.getStatus() != Job.Status.RUNNING) {
+                finished.add(job.getId());
+            }
+        }
+        for (int i = 0; i < finished.size() - retained; i++) {
+            jobs.remove(finished.get(i));
+        }
+    }
+
+}
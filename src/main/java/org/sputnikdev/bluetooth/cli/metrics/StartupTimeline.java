@@ -0,0 +1,169 @@
+package org.sputnikdev.bluetooth.cli.metrics;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Records start offsets and durations of startup stages, which may run concurrently on different threads.
+ */
+public class StartupTimeline {
+
+    private final long origin = System.nanoTime();
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the moment the timeline was created.
+     * @return {@link System#nanoTime()} of the timeline creation
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Runs a stage on the current thread.
+     * @param name stage name
+     * @param stage stage
+     * @param <T> stage result type
+     * @return stage result
+     */
+    public <T> T time(String name, Supplier<T> stage) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = stage.get();
+            failed = false;
+            return result;
+        } finally {
+            stages.add(new Stage(name, Thread.currentThread().getName(), start - origin,
+                    System.nanoTime() - start, failed));
+        }
+    }
+
+    /**
+     * Runs a stage on the current thread.
+     * @param name stage name
+     * @param stage stage
+     */
+    public void time(String name, Runnable stage) {
+        time(name, () -> {
+            stage.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a stage asynchronously.
+     * @param name stage name
+     * @param stage stage
+     * @param executor executor to run the stage
+     * @param <T> stage result type
+     * @return future result of the stage
+     */
+    public <T> CompletableFuture<T> supplyAsync(String name, Supplier<T> stage, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> time(name, stage), executor);
+    }
+
+    /**
+     * Runs a stage asynchronously.
+     * @param name stage name
+     * @param stage stage
+     * @param executor executor to run the stage
+     * @return future completion of the stage
+     */
+    public CompletableFuture<Void> runAsync(String name, Runnable stage, Executor executor) {
+        return CompletableFuture.runAsync(() -> time(name, stage), executor);
+    }
+
+    /**
+     * Returns recorded stages in the order of their start.
+     * @return stages
+     */
+    public List<Stage> getStages() {
+        List<Stage> result = new ArrayList<>(stages);
+        result.sort((first, second) -> Long.compare(first.start, second.start));
+        return result;
+    }
+
+    /**
+     * Formats recorded stages as a table: stage, start offset, duration, thread.
+     * @return report
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : getStages()) {
+            builder.append(String.format("%-30s%-12s%-12s%s%n", stage.name + (stage.failed ? " (failed)" : ""),
+                    "+" + LatencyHistogram.format(stage.start), LatencyHistogram.format(stage.duration),
+                    stage.thread));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A recorded stage.
+     */
+    public static final class Stage {
+
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final long duration;
+        private final boolean failed;
+
+        private Stage(String name, String thread, long start, long duration, boolean failed) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.duration = duration;
+            this.failed = failed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * Returns the stage start relative to the timeline creation.
+         * @return offset in nanoseconds
+         */
+        public long getStart() {
+            return start;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+}
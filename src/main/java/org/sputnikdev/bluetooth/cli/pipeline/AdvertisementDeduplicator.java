@@ -0,0 +1,174 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+/**
+ * Suppresses repeated discovery events. The last forwarded state of each device (RSSI bucket and a hash of
+ * its attributes) is kept in a bounded direct-mapped cache keyed by packed MAC address; an event is forwarded
+ * only if the device is new, its RSSI moved to another bucket, its attributes changed or the heartbeat
+ * interval has passed since the device was last forwarded. When two devices compete for the same cache slot,
+ * the older one gets evicted and its next event is forwarded as new.
+ */
+public class AdvertisementDeduplicator {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final int rssiBucket;
+    private final long heartbeat;
+
+    private final long[] macs;
+    private final int[] rssiBuckets;
+    private final int[] attributes;
+    private final long[] forwarded;
+    private final boolean[] used;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong newDevices = new AtomicLong();
+    private final AtomicLong rssiChanges = new AtomicLong();
+    private final AtomicLong attributeChanges = new AtomicLong();
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Creates a deduplicator.
+     * @param capacity number of cache slots, rounded up to a power of two
+     * @param rssiBucket RSSI bucket width in dBm, RSSI changes within a bucket are not forwarded
+     * @param heartbeat interval in nanoseconds after which an unchanged device is forwarded anyway
+     */
+    public AdvertisementDeduplicator(int capacity, int rssiBucket, long heartbeat) {
+        int slots = Integer.highestOneBit(Math.max(LOCK_STRIPES, capacity) - 1) << 1;
+        this.rssiBucket = Math.max(1, rssiBucket);
+        this.heartbeat = heartbeat;
+        this.macs = new long[slots];
+        this.rssiBuckets = new int[slots];
+        this.attributes = new int[slots];
+        this.forwarded = new long[slots];
+        this.used = new boolean[slots];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Checks whether a discovery event should be forwarded to listeners. Safe to call from any thread.
+     * @param mac packed device address
+     * @param rssi RSSI
+     * @param attributesHash hash of other device attributes, see {@link #hash(DiscoveredDevice)}
+     * @param now {@link System#nanoTime()}
+     * @return true if the event should be forwarded
+     */
+    public boolean accept(long mac, short rssi, int attributesHash, long now) {
+        received.incrementAndGet();
+        int slot = slotOf(mac);
+        int bucket = Math.floorDiv(rssi, rssiBucket);
+        synchronized (locks[slot & (LOCK_STRIPES - 1)]) {
+            AtomicLong reason;
+            if (!used[slot] || macs[slot] != mac) {
+                if (used[slot]) {
+                    evicted.incrementAndGet();
+                }
+                reason = newDevices;
+            } else if (attributes[slot] != attributesHash) {
+                reason = attributeChanges;
+            } else if (rssiBuckets[slot] != bucket) {
+                reason = rssiChanges;
+            } else if (now - forwarded[slot] >= heartbeat) {
+                reason = heartbeats;
+            } else {
+                suppressed.incrementAndGet();
+                return false;
+            }
+            used[slot] = true;
+            macs[slot] = mac;
+            rssiBuckets[slot] = bucket;
+            attributes[slot] = attributesHash;
+            forwarded[slot] = now;
+            reason.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Hashes device attributes other than RSSI: name, alias, bluetooth class and BLE flag.
+     * @param device discovered device
+     * @return hash
+     */
+    public static int hash(DiscoveredDevice device) {
+        return Objects.hash(device.getName(), device.getAlias(), device.getBluetoothClass(), device.isBleEnabled());
+    }
+
+    public int getCapacity() {
+        return macs.length;
+    }
+
+    public int getRSSIBucket() {
+        return rssiBucket;
+    }
+
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    public long getForwarded() {
+        return newDevices.get() + rssiChanges.get() + attributeChanges.get() + heartbeats.get();
+    }
+
+    public long getNewDevices() {
+        return newDevices.get();
+    }
+
+    public long getRSSIChanges() {
+        return rssiChanges.get();
+    }
+
+    public long getAttributeChanges() {
+        return attributeChanges.get();
+    }
+
+    public long getHeartbeats() {
+        return heartbeats.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    private int slotOf(long mac) {
+        long hash = mac * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (macs.length - 1);
+    }
+
+}
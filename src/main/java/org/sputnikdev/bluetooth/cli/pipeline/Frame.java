@@ -0,0 +1,83 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * A raw notification captured on a transport callback thread: a monotonic timestamp
+ * ({@link System#nanoTime()}), the URL of the source (and its interned id) and the value as it was received.
+ */
+public final class Frame {
+
+    private final long timestamp;
+    private final int urlId;
+    private final URL url;
+    private final byte[] value;
+    private final LatencyHistogram latency;
+
+    public Frame(long timestamp, int urlId, URL url, byte[] value) {
+        this(timestamp, urlId, url, value, null);
+    }
+
+    /**
+     * Creates a frame which latency is recorded into its own histogram rather than into the pipeline one,
+     * e.g. a replayed frame, so that it does not skew latency of live notifications.
+     * @param timestamp time when the value was received
+     * @param urlId source URL id
+     * @param url source URL
+     * @param value received value
+     * @param latency histogram to record end-to-end latency into, null for the pipeline histogram
+     */
+    public Frame(long timestamp, int urlId, URL url, byte[] value, LatencyHistogram latency) {
+        this.timestamp = timestamp;
+        this.urlId = urlId;
+        this.url = url;
+        this.value = value;
+        this.latency = latency;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns id of the source URL, see {@link org.sputnikdev.bluetooth.cli.codec.URLInterner}.
+     * @return URL id
+     */
+    public int getURLId() {
+        return urlId;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+}
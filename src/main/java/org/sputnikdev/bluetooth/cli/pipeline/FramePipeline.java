@@ -0,0 +1,223 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * Moves frames from transport callback threads to a set of dedicated consumer threads. Frames are partitioned
+ * by URL id, each consumer thread drains its own {@link FrameRingBuffer}, so that frames of a characteristic
+ * are handled in the order they were published. Producers only publish raw frames, all the expensive work
+ * (decoding, formatting, logging) is done by the handler on the consumer threads. A consumer that runs out
+ * of frames parks until a producer publishes into its partition.
+ */
+public class FramePipeline {
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    private final String name;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<Frame> handler;
+    private final Partition[] partitions;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile boolean running;
+
+    /**
+     * Creates a pipeline.
+     * @param name pipeline name, used to name consumer threads
+     * @param capacity total ring buffer capacity, split between consumers
+     * @param consumers number of consumer threads (partitions)
+     * @param overflowPolicy ring buffer overflow policy
+     * @param handler frame handler, invoked on consumer threads
+     */
+    public FramePipeline(String name, int capacity, int consumers, OverflowPolicy overflowPolicy,
+                         Consumer<Frame> handler) {
+        this.name = name;
+        this.overflowPolicy = overflowPolicy;
+        this.handler = handler;
+        this.partitions = new Partition[Math.max(1, consumers)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(new FrameRingBuffer(Math.max(2, capacity / partitions.length),
+                    overflowPolicy));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < partitions.length; i++) {
+            Partition partition = partitions[i];
+            partition.consumer = new Thread(() -> consume(partition), name + "-consumer-" + i);
+            partition.consumer.setDaemon(true);
+            partition.consumer.start();
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        for (Partition partition : partitions) {
+            partition.buffer.close();
+            if (partition.consumer != null) {
+                LockSupport.unpark(partition.consumer);
+            }
+        }
+    }
+
+    /**
+     * Publishes a frame. Safe to call from any thread.
+     * @param frame a frame
+     * @return true if the frame has been accepted, false if it has been dropped
+     */
+    public boolean publish(Frame frame) {
+        Partition partition = partitions[partitionOf(frame.getURLId())];
+        boolean accepted = partition.buffer.publish(frame);
+        if (partition.parked) {
+            LockSupport.unpark(partition.consumer);
+        }
+        return accepted;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getConsumers() {
+        return partitions.length;
+    }
+
+    /**
+     * Returns number of frames waiting in all partitions.
+     * @return number of buffered frames
+     */
+    public int size() {
+        int size = 0;
+        for (Partition partition : partitions) {
+            size += partition.buffer.size();
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        int capacity = 0;
+        for (Partition partition : partitions) {
+            capacity += partition.buffer.getCapacity();
+        }
+        return capacity;
+    }
+
+    public long getPublished() {
+        long published = 0;
+        for (Partition partition : partitions) {
+            published += partition.buffer.getPublished();
+        }
+        return published;
+    }
+
+    public long getDropped() {
+        long dropped = 0;
+        for (Partition partition : partitions) {
+            dropped += partition.buffer.getDropped();
+        }
+        return dropped;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns end-to-end latency: from the moment a frame was received till the moment it was handled.
+     * Frames that carry their own histogram (see {@link Frame#getLatency()}) are not recorded here.
+     * @return latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    int partitionOf(int urlId) {
+        return (urlId & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    private void consume(Partition partition) {
+        int idle = 0;
+        while (running) {
+            Frame frame = partition.buffer.poll();
+            if (frame == null) {
+                if (++idle <= SPINS_BEFORE_PARKING) {
+                    Thread.yield();
+                    continue;
+                }
+                // the flag is raised before checking the buffer again, so a frame published in between
+                // either gets polled here or unparks the consumer
+                partition.parked = true;
+                frame = partition.buffer.poll();
+                if (frame == null && running) {
+                    LockSupport.park(this);
+                }
+                partition.parked = false;
+                if (frame == null) {
+                    continue;
+                }
+            }
+            idle = 0;
+            try {
+                handler.accept(frame);
+                LatencyHistogram frameLatency = frame.getLatency();
+                (frameLatency != null ? frameLatency : latency).record(System.nanoTime() - frame.getTimestamp());
+                processed.incrementAndGet();
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                logger.log(Level.WARNING, "Could not handle frame: " + frame.getURL(), ex);
+            }
+        }
+    }
+
+    private static final class Partition {
+
+        private final FrameRingBuffer buffer;
+        private volatile Thread consumer;
+        private volatile boolean parked;
+
+        private Partition(FrameRingBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free ring buffer of {@link Frame frames}. Producers (transport callback threads) never take a lock
+ * and the buffer never allocates (frames are created by producers); consumers compete for frames with a CAS
+ * on the read position. Each slot carries a sequence
+ * number that tells whether the slot is free for the current lap of producers or filled for the current lap
+ * of consumers, so a slow consumer can never observe a half-published frame.
+ *
+ * <p>What happens when the buffer is full is defined by {@link OverflowPolicy}, every discarded frame
+ * is counted in {@link #getDropped()}.
+ */
+public class FrameRingBuffer {
+
+    private static final long BLOCK_BACKOFF = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Frame> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a ring buffer.
+     * @param capacity minimal capacity, rounded up to the next power of two
+     * @param overflowPolicy overflow policy
+     */
+    public FrameRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be greater than 1: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Publishes a frame according to the overflow policy.
+     * @param frame a frame
+     * @return true if the frame has been accepted, false if it has been dropped
+     */
+    public boolean publish(Frame frame) {
+        if (offer(frame)) {
+            published.incrementAndGet();
+            return true;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                do {
+                    if (poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                } while (!offer(frame));
+                break;
+            case BLOCK:
+                do {
+                    if (closed) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_BACKOFF);
+                } while (!offer(frame));
+                break;
+            default:
+                dropped.incrementAndGet();
+                return false;
+        }
+        published.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Tries to put a frame into the buffer without applying the overflow policy.
+     * @param frame a frame
+     * @return true if the frame has been put, false if the buffer is full
+     */
+    public boolean offer(Frame frame) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, frame);
+                    // a volatile store, so that a parked consumer flag read afterwards is not reordered before it
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Takes the oldest frame from the buffer.
+     * @return the oldest frame or null if the buffer is empty
+     */
+    public Frame poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Frame frame = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.lazySet(index, position + capacity);
+                    return frame;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    /**
+     * Releases all producers blocked by the {@link OverflowPolicy#BLOCK} policy.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Defines what happens when a frame is published into a full {@link FrameRingBuffer}.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The oldest frame in the buffer is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The new frame is discarded.
+     */
+    DROP_NEWEST,
+    /**
+     * The publisher waits until a consumer frees a slot.
+     */
+    BLOCK;
+
+    public static OverflowPolicy fromString(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+
+}
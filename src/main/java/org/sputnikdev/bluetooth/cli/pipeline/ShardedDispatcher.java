@@ -0,0 +1,216 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * Dispatches listener callbacks to a fixed set of single threaded executors (shards). Callbacks are sharded
+ * by device address, so that callbacks of a device are executed in order while different devices are handled
+ * in parallel and a slow device handler does not hold transport threads.
+ *
+ * <p>Lifecycle callbacks (discovery, lost, online, services resolved etc) are never dropped as they keep
+ * the state of the CLI in sync, see {@link #dispatch(URL, Runnable)}. Only high rate callbacks that are
+ * superseded by the next one (e.g. RSSI) are dropped when too many of them are queued,
+ * see {@link #offer(URL, Runnable)}. Both kinds share the same queue, so the order of callbacks is kept.
+ */
+public class ShardedDispatcher {
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    private final Shard[] shards;
+
+    /**
+     * Creates a dispatcher.
+     * @param name dispatcher name, used to name shard threads
+     * @param shards number of shards
+     * @param capacity maximum number of droppable callbacks queued in each shard
+     */
+    public ShardedDispatcher(String name, int shards, int capacity) {
+        this.shards = new Shard[Math.max(1, shards)];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(name + "-shard-" + i, capacity);
+        }
+    }
+
+    /**
+     * Dispatches a callback to the shard of the given bluetooth object, the callback is never dropped.
+     * Safe to call from any thread.
+     * @param url bluetooth URL, callbacks of the same device are executed in order
+     * @param callback callback
+     * @return true if the callback has been accepted, false if the dispatcher is stopped
+     */
+    public boolean dispatch(URL url, Runnable callback) {
+        return shards[shardOf(url)].execute(callback);
+    }
+
+    /**
+     * Dispatches a callback that can be dropped if the shard has too many droppable callbacks queued.
+     * Safe to call from any thread.
+     * @param url bluetooth URL, callbacks of the same device are executed in order
+     * @param callback callback
+     * @return true if the callback has been accepted, false if it has been dropped
+     */
+    public boolean offer(URL url, Runnable callback) {
+        return shards[shardOf(url)].offer(callback);
+    }
+
+    public void stop() {
+        for (Shard shard : shards) {
+            shard.executor.shutdownNow();
+        }
+    }
+
+    public Shard[] getShards() {
+        return shards;
+    }
+
+    int shardOf(URL url) {
+        String key = url.getDeviceAddress() != null ? url.getDeviceAddress() : url.getAdapterAddress();
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * A single threaded executor with its counters.
+     */
+    public final class Shard {
+
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final int capacity;
+        private final AtomicInteger droppable = new AtomicInteger();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+        private Shard(String name, int capacity) {
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            // unbounded, the number of droppable callbacks is limited by offer
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        private boolean execute(Runnable callback) {
+            try {
+                executor.execute(() -> run(callback));
+                dispatched.incrementAndGet();
+                return true;
+            } catch (RejectedExecutionException ex) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+        private boolean offer(Runnable callback) {
+            if (droppable.incrementAndGet() > capacity) {
+                droppable.decrementAndGet();
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (!execute(() -> {
+                droppable.decrementAndGet();
+                callback.run();
+            })) {
+                droppable.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private void run(Runnable callback) {
+            long started = System.nanoTime();
+            try {
+                callback.run();
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                logger.log(Level.WARNING, "Callback failed in " + name, ex);
+            } finally {
+                serviceTime.record(System.nanoTime() - started);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        /**
+         * Returns maximum number of droppable callbacks that can be queued.
+         * @return capacity
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * Returns number of droppable callbacks in the queue.
+         * @return number of droppable callbacks
+         */
+        public int getDroppable() {
+            return droppable.get();
+        }
+
+        public long getDispatched() {
+            return dispatched.get();
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns time spent executing callbacks, excluding time spent in the queue.
+         * @return service time histogram
+         */
+        public LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Standard throttle policies. A policy of a subscription is called concurrently from transport threads,
+ * therefore the state of policies is kept in atomics, a held back value is copied under a lock held for the copy
+ * only. Values held by policies are copied, as callers may reuse their arrays.
+ */
+public final class ThrottlePolicies {
+
+    public static final String PASS_ALL = "all";
+    public static final String SAMPLE = "sample";
+    public static final String LATEST = "latest";
+    public static final String WINDOW = "window";
+    public static final String CHANGE = "change";
+
+    public static final String[] NAMES = {PASS_ALL, SAMPLE, LATEST, WINDOW, CHANGE};
+
+    private ThrottlePolicies() { }
+
+    /**
+     * Creates a policy by its name.
+     * @param name policy name, see {@link #NAMES}
+     * @param interval interval for time based policies
+     * @param every sampling rate for the {@link #SAMPLE} policy
+     * @return a new policy
+     */
+    public static ThrottlePolicy create(String name, Duration interval, int every) {
+        switch (name) {
+            case PASS_ALL:
+            case WINDOW:
+                // window aggregation is done after decoding, all values must get through
+                return passAll();
+            case SAMPLE:
+                return sampleEvery(every);
+            case LATEST:
+                return keepLatest(interval.toNanos());
+            case CHANGE:
+                return onChange();
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + name
+                        + ". Supported policies: " + String.join(", ", NAMES));
+        }
+    }
+
+    public static ThrottlePolicy passAll() {
+        return (timestamp, value) -> true;
+    }
+
+    public static ThrottlePolicy sampleEvery(int every) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Sampling rate must be positive: " + every);
+        }
+        return new SampleEvery(every);
+    }
+
+    public static ThrottlePolicy keepLatest(long intervalNanos) {
+        return new KeepLatest(intervalNanos);
+    }
+
+    public static ThrottlePolicy onChange() {
+        return new OnChange();
+    }
+
+    /**
+     * Forwards every N-th value.
+     */
+    private static final class SampleEvery implements ThrottlePolicy {
+
+        private final int every;
+        private final AtomicLong counter = new AtomicLong();
+
+        private SampleEvery(int every) {
+            this.every = every;
+        }
+
+        @Override
+        public boolean accept(long timestamp, byte[] value) {
+            return counter.incrementAndGet() % every == 0;
+        }
+    }
+
+    /**
+     * Forwards at most one value per interval. A value received inside the interval is not lost,
+     * it is held back and forwarded when the interval elapses (unless a newer value replaces it).
+     * Held back values are copied into a buffer that is reused, only a value that is due gets allocated.
+     */
+    private static final class KeepLatest implements ThrottlePolicy {
+
+        private static final long NEVER = Long.MIN_VALUE;
+        private static final int NOTHING_PENDING = -1;
+
+        private final long interval;
+        // the interval is claimed with a CAS, so that concurrent accept/poll calls forward one value only
+        private final AtomicLong lastForwarded = new AtomicLong(NEVER);
+        // guarded by this, held for copying only
+        private byte[] pending = new byte[0];
+        private int pendingLength = NOTHING_PENDING;
+
+        private KeepLatest(long interval) {
+            this.interval = interval;
+        }
+
+        @Override
+        public boolean accept(long timestamp, byte[] value) {
+            long last = lastForwarded.get();
+            if (isDue(last, timestamp) && lastForwarded.compareAndSet(last, timestamp)) {
+                synchronized (this) {
+                    pendingLength = NOTHING_PENDING;
+                }
+                return true;
+            }
+            hold(value);
+            return false;
+        }
+
+        @Override
+        public byte[] poll(long timestamp) {
+            long last = lastForwarded.get();
+            if (last == NEVER || !isDue(last, timestamp)) {
+                return null;
+            }
+            synchronized (this) {
+                if (pendingLength == NOTHING_PENDING || !lastForwarded.compareAndSet(last, timestamp)) {
+                    return null;
+                }
+                byte[] value = Arrays.copyOf(pending, pendingLength);
+                pendingLength = NOTHING_PENDING;
+                return value;
+            }
+        }
+
+        private boolean isDue(long last, long timestamp) {
+            return last == NEVER || timestamp - last >= interval;
+        }
+
+        private synchronized void hold(byte[] value) {
+            if (value == null) {
+                pendingLength = NOTHING_PENDING;
+                return;
+            }
+            if (pending.length < value.length) {
+                pending = new byte[value.length];
+            }
+            System.arraycopy(value, 0, pending, 0, value.length);
+            pendingLength = value.length;
+        }
+    }
+
+    /**
+     * Forwards a value only if it differs from the previous one.
+     */
+    private static final class OnChange implements ThrottlePolicy {
+
+        private final AtomicReference<byte[]> previous = new AtomicReference<>();
+
+        @Override
+        public boolean accept(long timestamp, byte[] value) {
+            byte[] copy = null;
+            while (true) {
+                byte[] current = previous.get();
+                if (Arrays.equals(current, value)) {
+                    return false;
+                }
+                if (copy == null) {
+                    copy = copy(value);
+                }
+                if (previous.compareAndSet(current, copy)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static byte[] copy(byte[] value) {
+        return value != null ? value.clone() : null;
+    }
+
+}
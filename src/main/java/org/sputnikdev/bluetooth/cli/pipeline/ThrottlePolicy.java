@@ -0,0 +1,48 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Decides which values of a subscription are forwarded to the notification pipeline.
+ * Policies are invoked concurrently on transport callback threads, therefore implementations must be thread safe
+ * and must not block. Values that a policy keeps are copied, allocating is avoided otherwise.
+ * Timestamps are {@link System#nanoTime()} readings.
+ */
+public interface ThrottlePolicy {
+
+    /**
+     * Decides whether a value should be forwarded straight away.
+     * @param timestamp time when the value was received
+     * @param value received value
+     * @return true if the value should be forwarded
+     */
+    boolean accept(long timestamp, byte[] value);
+
+    /**
+     * Called periodically to collect a value that has been held back by the policy and is now due.
+     * @param timestamp current time
+     * @return a value to forward or null if nothing is due
+     */
+    default byte[] poll(long timestamp) {
+        return null;
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.shell.support.util.OsUtils;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.GattResponse;
+
+/**
+ * Aggregates numeric fields of decoded values over a time window and produces min/max/avg summaries.
+ * Statistics are kept in primitive arrays indexed by field, so that accumulating a value does not allocate.
+ */
+public class WindowAggregator {
+
+    private static final String ROW_FORMAT = "%-30smin: %-12s max: %-12s avg: %-12s";
+
+    private final long window;
+    private final Map<String, Integer> fieldIndexes = new LinkedHashMap<>();
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+    private double[] sum = new double[0];
+    private long[] count = new long[0];
+    private long frames;
+    private long windowStart;
+    private boolean started;
+
+    /**
+     * Creates an aggregator.
+     * @param windowNanos window length in nanoseconds
+     */
+    public WindowAggregator(long windowNanos) {
+        this.window = windowNanos;
+    }
+
+    /**
+     * Accumulates numeric fields of a decoded value.
+     * @param timestamp time when the value was received
+     * @param response decoded value, or null if the value could not be decoded
+     * @return a summary if the window has elapsed, null otherwise
+     */
+    public synchronized String add(long timestamp, GattResponse response) {
+        String summary = poll(timestamp);
+        if (!started) {
+            windowStart = timestamp;
+            started = true;
+        }
+        frames++;
+        if (response != null) {
+            for (FieldHolder holder : response.getFieldHolders()) {
+                if (holder.isNumber() && !holder.getField().isFlagField()) {
+                    accumulate(indexOf(holder.getField().getName()), holder.getDouble());
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Produces a summary if the window has elapsed and starts a new window.
+     * @param timestamp current time
+     * @return a summary or null if the window has not elapsed or no values have been received
+     */
+    public synchronized String poll(long timestamp) {
+        if (!started || timestamp - windowStart < window || frames == 0) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("WINDOW SUMMARY (").append(frames).append(" values)");
+        for (Map.Entry<String, Integer> field : fieldIndexes.entrySet()) {
+            int index = field.getValue();
+            if (count[index] > 0) {
+                builder.append(OsUtils.LINE_SEPARATOR).append(String.format(ROW_FORMAT, field.getKey() + ":",
+                        min[index], max[index], sum[index] / count[index]));
+            }
+        }
+        reset(timestamp);
+        return builder.toString();
+    }
+
+    private void accumulate(int index, double value) {
+        if (count[index] == 0 || value < min[index]) {
+            min[index] = value;
+        }
+        if (count[index] == 0 || value > max[index]) {
+            max[index] = value;
+        }
+        sum[index] += value;
+        count[index]++;
+    }
+
+    private int indexOf(String field) {
+        Integer index = fieldIndexes.get(field);
+        if (index == null) {
+            index = fieldIndexes.size();
+            fieldIndexes.put(field, index);
+            min = Arrays.copyOf(min, index + 1);
+            max = Arrays.copyOf(max, index + 1);
+            sum = Arrays.copyOf(sum, index + 1);
+            count = Arrays.copyOf(count, index + 1);
+        }
+        return index;
+    }
+
+    private void reset(long timestamp) {
+        Arrays.fill(sum, 0);
+        Arrays.fill(count, 0);
+        frames = 0;
+        windowStart = timestamp;
+    }
+
+}
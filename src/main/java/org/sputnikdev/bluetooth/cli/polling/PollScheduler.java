@@ -0,0 +1,321 @@
+package org.sputnikdev.bluetooth.cli.polling;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+
+/**
+ * Periodically reads characteristics that do not support notifications. A single timer thread keeps
+ * the deadlines, reads are done by a small pool of poll threads, one device at a time: when a characteristic
+ * is due, all characteristics of the same device that are due within the grouping window are read in
+ * the same round, so that they share one connection. Devices that are out of range are skipped
+ * without connecting. Deadlines follow a fixed rate (plus a random jitter), deadlines that pass while
+ * a previous read is still in progress are counted as missed rather than piling up.
+ */
+@Component
+public class PollScheduler {
+
+    private static final String PARALLELISM_PROPERTY = "bluetooth.cli.poll.parallelism";
+    private static final String WINDOW_PROPERTY = "bluetooth.cli.poll.window";
+    private static final String TIMEOUT_PROPERTY = "bluetooth.cli.poll.timeout";
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private final NavigableMap<Integer, PollTask> tasks = new ConcurrentSkipListMap<>();
+    private final Map<URL, DeviceRound> rounds = new ConcurrentHashMap<>();
+    private final long window = TimeUnit.MILLISECONDS.toNanos(Long.getLong(WINDOW_PROPERTY, 5000));
+    private final long timeout = Long.getLong(TIMEOUT_PROPERTY, 10000);
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LatencyHistogram roundTime = new LatencyHistogram();
+    private final AtomicLong skippedRounds = new AtomicLong();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "poll-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService executor;
+
+    public PollScheduler() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Integer.getInteger(PARALLELISM_PROPERTY, 4), runnable -> {
+            Thread thread = new Thread(runnable, "poll-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts polling a characteristic. The first read happens within the jitter from now.
+     * @param url characteristic URL
+     * @param period polling period in milliseconds
+     * @param jitter maximum random delay of every read in milliseconds
+     * @return started task
+     */
+    public PollTask add(URL url, long period, long jitter) {
+        if (!url.isCharacteristic()) {
+            throw new IllegalArgumentException("Not a characteristic URL: " + url);
+        }
+        if (period <= 0 || jitter < 0 || jitter >= period) {
+            throw new IllegalArgumentException("Period must be positive and greater than jitter: "
+                    + period + " / " + jitter);
+        }
+        PollTask task = new PollTask(ids.incrementAndGet(), url,
+                TimeUnit.MILLISECONDS.toNanos(period), TimeUnit.MILLISECONDS.toNanos(jitter));
+        tasks.put(task.getId(), task);
+        long delay = random(task);
+        task.start(System.nanoTime(), delay);
+        schedule(task, delay);
+        return task;
+    }
+
+    public PollTask get(int id) {
+        return tasks.get(id);
+    }
+
+    public Collection<PollTask> getTasks() {
+        return tasks.values();
+    }
+
+    /**
+     * Stops polling a characteristic, a read that is in progress completes.
+     * @param id task id
+     * @return removed task or null
+     */
+    public PollTask remove(int id) {
+        PollTask task = tasks.remove(id);
+        if (task != null) {
+            task.cancel();
+        }
+        return task;
+    }
+
+    public void clear() {
+        new ArrayList<>(tasks.keySet()).forEach(this::remove);
+    }
+
+    /**
+     * Returns how late reads start relative to their deadlines (all tasks).
+     * @return lag histogram
+     */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    /**
+     * Returns how long it takes to read all characteristics of a device that are due.
+     * @return round duration histogram
+     */
+    public LatencyHistogram getRoundTime() {
+        return roundTime;
+    }
+
+    /**
+     * Returns number of rounds skipped because devices were out of range.
+     * @return number of skipped rounds
+     */
+    public long getSkippedRounds() {
+        return skippedRounds.get();
+    }
+
+    public long getMissed() {
+        return tasks.values().stream().mapToLong(PollTask::getMissed).sum();
+    }
+
+    public long getPolled() {
+        return tasks.values().stream().mapToLong(PollTask::getPolled).sum();
+    }
+
+    public long getFailed() {
+        return tasks.values().stream().mapToLong(PollTask::getFailed).sum();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void schedule(PollTask task, long delay) {
+        task.setFuture(timer.schedule(() -> due(task), delay, TimeUnit.NANOSECONDS));
+    }
+
+    private void due(PollTask task) {
+        if (tasks.containsKey(task.getId()) && task.queue()) {
+            round(task.getURL().getDeviceURL()).add(task);
+        }
+    }
+
+    private DeviceRound round(URL deviceURL) {
+        return rounds.computeIfAbsent(deviceURL, DeviceRound::new);
+    }
+
+    private static long random(PollTask task) {
+        return task.getJitter() > 0 ? ThreadLocalRandom.current().nextLong(task.getJitter() + 1) : 0;
+    }
+
+    /**
+     * Characteristics of a device that are due to be read. At most one round per device runs at a time.
+     */
+    private final class DeviceRound implements Runnable {
+
+        private final URL deviceURL;
+        private final List<PollTask> due = new ArrayList<>();
+        private boolean running;
+
+        private DeviceRound(URL deviceURL) {
+            this.deviceURL = deviceURL;
+        }
+
+        private void add(PollTask task) {
+            synchronized (this) {
+                due.add(task);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            List<PollTask> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(due);
+                due.clear();
+            }
+            try {
+                // characteristics of the same device that are due soon join the round
+                long horizon = System.nanoTime() + window;
+                for (PollTask task : tasks.values()) {
+                    if (!batch.contains(task) && deviceURL.equals(task.getURL().getDeviceURL())
+                            && task.getDeadline() <= horizon && task.dequeueTimer()) {
+                        batch.add(task);
+                    }
+                }
+                poll(batch);
+            } finally {
+                long now = System.nanoTime();
+                for (PollTask task : batch) {
+                    task.unqueue();
+                    if (tasks.containsKey(task.getId())) {
+                        schedule(task, task.advance(now, random(task)));
+                    }
+                }
+                synchronized (this) {
+                    if (due.isEmpty()) {
+                        running = false;
+                    } else {
+                        executor.execute(this);
+                    }
+                }
+            }
+        }
+
+        private void poll(List<PollTask> batch) {
+            BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+            DeviceGovernor deviceGovernor = bluetoothManager.getDeviceGovernor(deviceURL);
+            if (!deviceGovernor.isOnline()) {
+                skippedRounds.incrementAndGet();
+                batch.forEach(PollTask::skipped);
+                return;
+            }
+            long started = System.nanoTime();
+            long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeout);
+            boolean connectionControl = deviceGovernor.getConnectionControl();
+            if (!connectionControl) {
+                // connected for the round only
+                deviceGovernor.setConnectionControl(true);
+            }
+            try {
+                for (PollTask task : batch) {
+                    read(bluetoothManager.getCharacteristicGovernor(task.getURL()), task, deadline);
+                }
+            } finally {
+                if (!connectionControl) {
+                    deviceGovernor.setConnectionControl(false);
+                }
+                roundTime.record(System.nanoTime() - started);
+            }
+        }
+
+        private void read(CharacteristicGovernor governor, PollTask task, long deadline) {
+            long lagNanos = System.nanoTime() - task.getDeadline();
+            lag.record(Math.max(0, lagNanos));
+            CompletableFuture<byte[]> reading = governor.whenReady(CharacteristicGovernor::read);
+            try {
+                byte[] value = reading.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                String decoded = bluetoothManagerCli.getDecoderCache()
+                        .render(new StringBuilder(), task.getURL().getCharacteristicUUID(), value).toString();
+                task.polled(lagNanos, decoded);
+                logger.info("Poll " + task + ": " + decoded);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                task.failed(lagNanos, ex);
+            } catch (ExecutionException ex) {
+                Exception cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                task.failed(lagNanos, cause);
+                logger.info("Poll " + task + " failed: " + cause.getMessage());
+            } catch (TimeoutException ex) {
+                reading.cancel(true);
+                task.failed(lagNanos, ex);
+                logger.info("Poll " + task + " failed: device is not ready in " + timeout + " ms");
+            } catch (Exception ex) {
+                task.failed(lagNanos, ex);
+                logger.info("Poll " + task + " failed: " + ex.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+package org.sputnikdev.bluetooth.cli.polling;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+/**
+ * A characteristic that is read periodically by {@link PollScheduler}.
+ */
+public class PollTask {
+
+    private final int id;
+    private final URL url;
+    private final long period;
+    private final long jitter;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final AtomicLong polled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+
+    // guarded by the scheduler
+    private long base;
+    private long deadline;
+    private ScheduledFuture<?> future;
+    private boolean queued;
+
+    private volatile String lastValue;
+    private volatile Exception lastError;
+
+    PollTask(int id, URL url, long period, long jitter) {
+        this.id = id;
+        this.url = url;
+        this.period = period;
+        this.jitter = jitter;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns polling period.
+     * @return period in nanoseconds
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Returns maximum random delay added to every deadline.
+     * @return jitter in nanoseconds
+     */
+    public long getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Returns {@link System#nanoTime()} when the characteristic is due to be read next time.
+     * @return next deadline
+     */
+    public synchronized long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns how late reads start relative to their deadlines.
+     * @return lag histogram
+     */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    public long getPolled() {
+        return polled.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns number of deadlines when the device was out of range.
+     * @return number of skipped reads
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Returns number of deadlines that passed before the previous read completed.
+     * @return number of missed deadlines
+     */
+    public long getMissed() {
+        return missed.get();
+    }
+
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " (" + url + ")";
+    }
+
+    synchronized void start(long now, long delay) {
+        base = now;
+        deadline = now + delay;
+    }
+
+    /**
+     * Advances the deadline by one period, deadlines that have already passed are counted as missed.
+     * @param now current time
+     * @param random random delay within the jitter
+     * @return delay until the next deadline
+     */
+    synchronized long advance(long now, long random) {
+        base += period;
+        if (base + jitter < now) {
+            long behind = (now - base) / period + 1;
+            missed.addAndGet(behind);
+            base += behind * period;
+        }
+        deadline = base + random;
+        return Math.max(0, deadline - now);
+    }
+
+    synchronized void setFuture(ScheduledFuture<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Cancels the timer of the task if the task is not queued for reading yet.
+     * @return true if the task can be queued
+     */
+    synchronized boolean dequeueTimer() {
+        if (queued || future != null && !future.cancel(false)) {
+            return false;
+        }
+        queued = true;
+        return true;
+    }
+
+    synchronized boolean queue() {
+        if (queued) {
+            return false;
+        }
+        queued = true;
+        return true;
+    }
+
+    synchronized void unqueue() {
+        queued = false;
+    }
+
+    synchronized void cancel() {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    void polled(long lagNanos, String value) {
+        lag.record(Math.max(0, lagNanos));
+        polled.incrementAndGet();
+        lastValue = value;
+        lastError = null;
+    }
+
+    void failed(long lagNanos, Exception error) {
+        lag.record(Math.max(0, lagNanos));
+        failed.incrementAndGet();
+        lastError = error;
+    }
+
+    void skipped() {
+        skipped.incrementAndGet();
+    }
+
+}
@@ -0,0 +1,361 @@
+package org.sputnikdev.bluetooth.cli.scan;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.codec.HexCodec;
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+import org.sputnikdev.bluetooth.cli.pipeline.OverflowPolicy;
+
+/**
+ * Streams scan events as newline-delimited JSON (one object per line). Producers (transport callback threads)
+ * only put raw events into a bounded queue, a dedicated writer thread formats them and writes them in batches
+ * through a buffer that is flushed whenever the queue runs dry. When the queue is full, the overflow policy
+ * decides whether producers wait for the consumer (backpressure) or events get dropped.
+ */
+public class NdjsonWriter implements Closeable {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long POLL_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    private final String target;
+    private final Writer writer;
+    // a print stream (e.g. standard output) does not throw, its errors have to be checked
+    private final PrintStream printStream;
+    private final boolean closeStream;
+    private final URLInterner urlInterner;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<ScanEvent> queue;
+    private final Thread thread;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    // written only by the writer thread
+    private volatile long written;
+    private volatile long characters;
+    private volatile IOException error;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates a writer and starts its writer thread.
+     * @param target output name, used in reports
+     * @param out output stream
+     * @param closeStream whether the output stream should be closed when the writer is closed
+     * @param capacity queue capacity
+     * @param overflowPolicy what to do when the queue is full
+     * @param urlInterner interner that resolves URL ids of events
+     */
+    public NdjsonWriter(String target, OutputStream out, boolean closeStream, int capacity,
+                        OverflowPolicy overflowPolicy, URLInterner urlInterner) {
+        this.target = target;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.printStream = out instanceof PrintStream ? (PrintStream) out : null;
+        this.closeStream = closeStream;
+        this.urlInterner = urlInterner;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::drain, "scan-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues an event. Safe to call from any thread.
+     * @param event event
+     * @return true if the event has been queued, false if it has been dropped
+     */
+    boolean publish(ScanEvent event) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (!queue.offer(event)) {
+            switch (overflowPolicy) {
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    do {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    } while (!queue.offer(event));
+                    break;
+                default:
+                    if (!await(event)) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+            }
+        }
+        queued.incrementAndGet();
+        return true;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns how many times producers had to wait for the writer thread because the queue was full.
+     * @return number of waits
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Returns the error that stopped the writer (e.g. a closed pipe) or the first event that could not be written.
+     * @return error or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Stops accepting events, writes out all queued events and flushes the output.
+     * The output stream is closed if the writer owns it.
+     * @throws IOException if the output could not be written or closed, or if some events could not be formatted
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (closeStream) {
+            writer.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private boolean await(ScanEvent event) {
+        blocked.incrementAndGet();
+        try {
+            while (running) {
+                if (queue.offer(event, POLL_TIMEOUT, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void drain() {
+        List<ScanEvent> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (running || !queue.isEmpty()) {
+                ScanEvent first = queue.poll(POLL_TIMEOUT, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (ScanEvent event : batch) {
+                    try {
+                        write(event);
+                        written++;
+                    } catch (RuntimeException ex) {
+                        // a malformed event (e.g. a URL id that has already been released) is skipped
+                        dropped.incrementAndGet();
+                        if (error == null) {
+                            error = new IOException("Could not format scan event: " + ex, ex);
+                            logger.log(Level.WARNING, "Could not format scan event", ex);
+                        }
+                    }
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    flush();
+                }
+            }
+            flush();
+        } catch (IOException ex) {
+            error = ex;
+            logger.log(Level.WARNING, "Could not write scan events into: " + target, ex);
+        } catch (RuntimeException ex) {
+            error = new IOException("Scan writer failed: " + ex, ex);
+            logger.log(Level.WARNING, "Scan writer failed: " + target, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            dropped.addAndGet(queue.size());
+            queue.clear();
+        }
+    }
+
+    private void flush() throws IOException {
+        writer.flush();
+        if (printStream != null && printStream.checkError()) {
+            throw new IOException("Could not write into " + target + ", the output might have been closed");
+        }
+    }
+
+    private void write(ScanEvent event) throws IOException {
+        line.setLength(0);
+        format(line, event);
+        line.append('\n');
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+        characters += length;
+    }
+
+    private void format(StringBuilder builder, ScanEvent event) {
+        URL url = urlInterner.get(event.urlId);
+        builder.append("{\"ts\":").append(event.timestamp).append(",\"event\":");
+        switch (event.type) {
+            case ScanEvent.DISCOVERED:
+                appendString(builder, "discovered");
+                appendURL(builder, url);
+                builder.append(",\"name\":");
+                appendString(builder, event.device.getName());
+                builder.append(",\"alias\":");
+                appendString(builder, event.device.getAlias());
+                builder.append(",\"rssi\":").append(event.value)
+                        .append(",\"class\":").append(event.device.getBluetoothClass())
+                        .append(",\"ble\":").append(event.device.isBleEnabled());
+                break;
+            case ScanEvent.RSSI:
+                appendString(builder, "rssi");
+                appendURL(builder, url);
+                builder.append(",\"rssi\":").append(event.value);
+                break;
+            case ScanEvent.SERVICE_DATA:
+                appendString(builder, "service_data");
+                appendURL(builder, url);
+                builder.append(",\"service\":");
+                appendString(builder, url.getServiceUUID());
+                builder.append(",\"data\":\"");
+                HexCodec.append(builder, event.data).append('"');
+                break;
+            case ScanEvent.MANUFACTURER_DATA:
+                appendString(builder, "manufacturer_data");
+                appendURL(builder, url);
+                builder.append(",\"manufacturer\":").append(event.value & 0xffff).append(",\"data\":\"");
+                HexCodec.append(builder, event.data).append('"');
+                break;
+            default:
+                throw new IllegalStateException("Unknown scan event: " + event.type);
+        }
+        builder.append('}');
+    }
+
+    private static void appendURL(StringBuilder builder, URL url) {
+        builder.append(",\"url\":");
+        appendString(builder, url.getDeviceURL().toString());
+        builder.append(",\"adapter\":");
+        appendString(builder, url.getAdapterAddress());
+        builder.append(",\"mac\":");
+        appendString(builder, url.getDeviceAddress());
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\t': builder.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        builder.append("\\u00");
+                        HexCodec.append(builder, (byte) c);
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+
+}
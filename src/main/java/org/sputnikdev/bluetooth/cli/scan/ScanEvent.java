@@ -0,0 +1,68 @@
+package org.sputnikdev.bluetooth.cli.scan;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+/**
+ * A scan event queued for the {@link NdjsonWriter}. Events carry raw values only,
+ * all formatting is done on the writer thread.
+ */
+final class ScanEvent {
+
+    static final byte DISCOVERED = 1;
+    static final byte RSSI = 2;
+    static final byte SERVICE_DATA = 3;
+    static final byte MANUFACTURER_DATA = 4;
+
+    final byte type;
+    final long timestamp;
+    final int urlId;
+    final short value;
+    final DiscoveredDevice device;
+    final byte[] data;
+
+    private ScanEvent(byte type, long timestamp, int urlId, short value, DiscoveredDevice device, byte[] data) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.urlId = urlId;
+        this.value = value;
+        this.device = device;
+        this.data = data;
+    }
+
+    static ScanEvent discovered(long timestamp, int urlId, DiscoveredDevice device) {
+        return new ScanEvent(DISCOVERED, timestamp, urlId, device.getRSSI(), device, null);
+    }
+
+    static ScanEvent rssi(long timestamp, int urlId, short rssi) {
+        return new ScanEvent(RSSI, timestamp, urlId, rssi, null, null);
+    }
+
+    static ScanEvent serviceData(long timestamp, int urlId, byte[] data) {
+        return new ScanEvent(SERVICE_DATA, timestamp, urlId, (short) 0, null, data);
+    }
+
+    static ScanEvent manufacturerData(long timestamp, int urlId, short manufacturerId, byte[] data) {
+        return new ScanEvent(MANUFACTURER_DATA, timestamp, urlId, manufacturerId, null, data);
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.sputnikdev.bluetooth.cli.scan;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.devices.AdvertisementListener;
+import org.sputnikdev.bluetooth.cli.devices.AdvertisementTaps;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.DeviceDiscoveryListener;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+/**
+ * Streams discovery events of all discovered devices into an {@link NdjsonWriter}, optionally with RSSI updates
+ * and advertised service/manufacturer data, see {@link AdvertisementTaps}.
+ */
+@Component
+public class Scanner implements DeviceDiscoveryListener {
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    private volatile NdjsonWriter writer;
+    private volatile AdvertisementTaps taps;
+
+    /**
+     * Starts streaming events.
+     * @param writer output
+     * @param advertisements whether RSSI updates and advertised data should be streamed too
+     */
+    public synchronized void start(NdjsonWriter writer, boolean advertisements) {
+        if (this.writer != null) {
+            throw new IllegalStateException("Already scanning into: " + this.writer.getTarget());
+        }
+        this.writer = writer;
+        taps = advertisements ? new AdvertisementTaps(bluetoothManagerCli, new ScanListener(writer)) : null;
+        BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+        bluetoothManager.addDeviceDiscoveryListener(this);
+        bluetoothManager.getDiscoveredDevices().forEach(this::discovered);
+    }
+
+    public synchronized NdjsonWriter stop() throws IOException {
+        NdjsonWriter current = writer;
+        if (current == null) {
+            return null;
+        }
+        writer = null;
+        bluetoothManagerCli.getBluetoothManager().removeDeviceDiscoveryListener(this);
+        if (taps != null) {
+            taps.close();
+            taps = null;
+        }
+        current.close();
+        return current;
+    }
+
+    public NdjsonWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public void discovered(DiscoveredDevice discoveredDevice) {
+        NdjsonWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        URL url = discoveredDevice.getURL();
+        current.publish(ScanEvent.discovered(System.currentTimeMillis(),
+                bluetoothManagerCli.getURLInterner().id(url), discoveredDevice));
+        AdvertisementTaps currentTaps = taps;
+        if (currentTaps != null) {
+            currentTaps.attach(url);
+        }
+    }
+
+    @Override
+    public void deviceLost(URL url) {
+        AdvertisementTaps currentTaps = taps;
+        if (currentTaps != null) {
+            currentTaps.detach(url);
+        }
+    }
+
+    private static final class ScanListener implements AdvertisementListener {
+
+        private final NdjsonWriter writer;
+
+        private ScanListener(NdjsonWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void rssiChanged(int deviceId, short rssi) {
+            writer.publish(ScanEvent.rssi(System.currentTimeMillis(), deviceId, rssi));
+        }
+
+        @Override
+        public void serviceDataChanged(int serviceId, byte[] data) {
+            writer.publish(ScanEvent.serviceData(System.currentTimeMillis(), serviceId, data));
+        }
+
+        @Override
+        public void manufacturerDataChanged(int deviceId, short manufacturerId, byte[] data) {
+            writer.publish(ScanEvent.manufacturerData(System.currentTimeMillis(), deviceId, manufacturerId, data));
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Adapter;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+/**
+ * A simulated adapter. While discovering, it "advertises" all its devices at a configured rate
+ * by updating their RSSI.
+ */
+class SimulatedAdapter implements Adapter {
+
+    private final URL url;
+    private final String name;
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, SimulatedDevice> devices = new LinkedHashMap<>();
+
+    private volatile String alias;
+    private volatile boolean powered = true;
+    private volatile boolean discovering;
+    private volatile Notification<Boolean> poweredNotification;
+    private volatile Notification<Boolean> discoveringNotification;
+    private ScheduledFuture<?> advertiser;
+
+    SimulatedAdapter(URL url, String name, SimulatorConfig config, ScheduledExecutorService scheduler) {
+        this.url = url;
+        this.name = name;
+        this.config = config;
+        this.scheduler = scheduler;
+        // device addresses embed the adapter index so that they are unique across all simulated adapters
+        String prefix = "5D:00:" + url.getAdapterAddress().substring(12) + ":";
+        for (int i = 0; i < config.getDevices(); i++) {
+            String address = prefix + String.format("%02X:%02X", (i >> 8) & 0xFF, i & 0xFF);
+            devices.put(address, new SimulatedDevice(url.copyWithDevice(address),
+                    String.format("Simulated %s %d", name, i), config, scheduler));
+        }
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAlias() {
+        return alias;
+    }
+
+    @Override
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    @Override
+    public boolean isDiscovering() {
+        return discovering;
+    }
+
+    @Override
+    public void enableDiscoveringNotifications(Notification<Boolean> notification) {
+        discoveringNotification = notification;
+    }
+
+    @Override
+    public void disableDiscoveringNotifications() {
+        discoveringNotification = null;
+    }
+
+    @Override
+    public synchronized boolean startDiscovery() {
+        if (advertiser == null) {
+            long interval = Math.max(1, config.getAdvertisementInterval());
+            advertiser = scheduler.scheduleAtFixedRate(this::advertise, 0, interval, TimeUnit.MILLISECONDS);
+        }
+        discovering = true;
+        notify(discoveringNotification, true);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean stopDiscovery() {
+        if (advertiser != null) {
+            advertiser.cancel(false);
+            advertiser = null;
+        }
+        discovering = false;
+        notify(discoveringNotification, false);
+        return true;
+    }
+
+    @Override
+    public boolean isPowered() {
+        return powered;
+    }
+
+    @Override
+    public void setPowered(boolean powered) {
+        this.powered = powered;
+        notify(poweredNotification, powered);
+    }
+
+    @Override
+    public void enablePoweredNotifications(Notification<Boolean> notification) {
+        poweredNotification = notification;
+    }
+
+    @Override
+    public void disablePoweredNotifications() {
+        poweredNotification = null;
+    }
+
+    @Override
+    public List<Device> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    SimulatedDevice getDevice(String address) {
+        return devices.get(address);
+    }
+
+    Collection<SimulatedDevice> getSimulatedDevices() {
+        return devices.values();
+    }
+
+    void dispose() {
+        stopDiscovery();
+        devices.values().forEach(SimulatedDevice::dispose);
+    }
+
+    private void advertise() {
+        if (powered) {
+            devices.values().forEach(SimulatedDevice::advertise);
+        }
+    }
+
+    private static void notify(Notification<Boolean> notification, boolean value) {
+        if (notification != null) {
+            notification.notify(value);
+        }
+    }
+
+}
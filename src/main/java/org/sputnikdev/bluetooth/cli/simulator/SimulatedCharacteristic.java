@@ -0,0 +1,123 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+/**
+ * A simulated characteristic. Notifications are produced by a shared scheduler at a configured rate,
+ * reads are delayed by a configured latency.
+ */
+class SimulatedCharacteristic implements Characteristic {
+
+    private final URL url;
+    private final Set<CharacteristicAccessType> flags;
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile byte[] value;
+    private volatile Notification<byte[]> notification;
+    private ScheduledFuture<?> notifier;
+
+    SimulatedCharacteristic(URL url, Set<CharacteristicAccessType> flags, SimulatorConfig config,
+                            ScheduledExecutorService scheduler) {
+        this.url = url;
+        this.flags = flags;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.value = ValueGenerator.generate(url.getCharacteristicUUID());
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public Set<CharacteristicAccessType> getFlags() {
+        return flags;
+    }
+
+    @Override
+    public boolean isNotifying() {
+        return notification != null;
+    }
+
+    @Override
+    public synchronized void enableValueNotifications(Notification<byte[]> notification) {
+        this.notification = notification;
+        if (notifier == null) {
+            long interval = Math.max(1, config.getNotificationInterval());
+            notifier = scheduler.scheduleAtFixedRate(this::notifyValue,
+                    ThreadLocalRandom.current().nextLong(interval), interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void disableValueNotifications() {
+        notification = null;
+        if (notifier != null) {
+            notifier.cancel(false);
+            notifier = null;
+        }
+    }
+
+    @Override
+    public byte[] readValue() {
+        if (config.getReadLatency() > 0) {
+            try {
+                Thread.sleep(config.getReadLatency());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean writeValue(byte[] data) {
+        value = data;
+        return true;
+    }
+
+    @Override
+    public boolean isNotificationConfigurable() {
+        return true;
+    }
+
+    private void notifyValue() {
+        Notification<byte[]> current = notification;
+        if (current != null) {
+            value = ValueGenerator.generate(url.getCharacteristicUUID());
+            current.notify(value);
+        }
+    }
+
+}
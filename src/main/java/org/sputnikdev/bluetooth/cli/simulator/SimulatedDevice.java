@@ -0,0 +1,246 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.BluetoothAddressType;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+import org.sputnikdev.bluetooth.manager.transport.Service;
+
+/**
+ * A simulated BLE device. Its GATT table is built from the simulator configuration,
+ * RSSI is updated by the owning adapter on every advertisement.
+ */
+class SimulatedDevice implements Device {
+
+    private final URL url;
+    private final String name;
+    private final List<Service> services = new ArrayList<>();
+    private final Map<String, SimulatedCharacteristic> characteristics = new LinkedHashMap<>();
+
+    private volatile String alias;
+    private volatile boolean blocked;
+    private volatile boolean connected;
+    private volatile short rssi = -70;
+
+    private volatile Notification<Boolean> blockedNotification;
+    private volatile Notification<Short> rssiNotification;
+    private volatile Notification<Boolean> connectedNotification;
+    private volatile Notification<Boolean> servicesResolvedNotification;
+
+    SimulatedDevice(URL url, String name, SimulatorConfig config, ScheduledExecutorService scheduler) {
+        this.url = url;
+        this.name = name;
+        Map<String, SimulatedService> servicesByUUID = new LinkedHashMap<>();
+        for (SimulatorConfig.CharacteristicSpec spec : config.getGattTable()) {
+            SimulatedService service = servicesByUUID.computeIfAbsent(spec.getServiceUUID(),
+                uuid -> new SimulatedService(url.copyWith(uuid, null)));
+            URL characteristicURL = url.copyWith(spec.getServiceUUID(), spec.getCharacteristicUUID());
+            SimulatedCharacteristic characteristic =
+                    new SimulatedCharacteristic(characteristicURL, spec.getFlags(), config, scheduler);
+            service.addCharacteristic(characteristic);
+            characteristics.put(key(characteristicURL), characteristic);
+        }
+        services.addAll(servicesByUUID.values());
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public int getBluetoothClass() {
+        return 0;
+    }
+
+    @Override
+    public boolean disconnect() {
+        connected = false;
+        notify(connectedNotification, false);
+        notify(servicesResolvedNotification, false);
+        return true;
+    }
+
+    @Override
+    public boolean connect() {
+        connected = true;
+        notify(connectedNotification, true);
+        notify(servicesResolvedNotification, true);
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAlias() {
+        return alias;
+    }
+
+    @Override
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    @Override
+    public boolean isBleEnabled() {
+        return true;
+    }
+
+    @Override
+    public void enableBlockedNotifications(Notification<Boolean> notification) {
+        blockedNotification = notification;
+    }
+
+    @Override
+    public void disableBlockedNotifications() {
+        blockedNotification = null;
+    }
+
+    @Override
+    public void setBlocked(boolean blocked) {
+        this.blocked = blocked;
+        notify(blockedNotification, blocked);
+    }
+
+    @Override
+    public short getRSSI() {
+        return rssi;
+    }
+
+    @Override
+    public short getTxPower() {
+        return -60;
+    }
+
+    @Override
+    public void enableRSSINotifications(Notification<Short> notification) {
+        rssiNotification = notification;
+    }
+
+    @Override
+    public void disableRSSINotifications() {
+        rssiNotification = null;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void enableConnectedNotifications(Notification<Boolean> notification) {
+        connectedNotification = notification;
+    }
+
+    @Override
+    public void disableConnectedNotifications() {
+        connectedNotification = null;
+    }
+
+    @Override
+    public boolean isServicesResolved() {
+        return connected;
+    }
+
+    @Override
+    public void enableServicesResolvedNotifications(Notification<Boolean> notification) {
+        servicesResolvedNotification = notification;
+    }
+
+    @Override
+    public void disableServicesResolvedNotifications() {
+        servicesResolvedNotification = null;
+    }
+
+    @Override
+    public List<Service> getServices() {
+        return connected ? services : Collections.emptyList();
+    }
+
+    @Override
+    public Map<String, byte[]> getServiceData() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<Short, byte[]> getManufacturerData() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public BluetoothAddressType getAddressType() {
+        return BluetoothAddressType.PUBLIC;
+    }
+
+    @Override
+    public void enableServiceDataNotifications(Notification<Map<String, byte[]>> notification) { }
+
+    @Override
+    public void disableServiceDataNotifications() { }
+
+    @Override
+    public void enableManufacturerDataNotifications(Notification<Map<Short, byte[]>> notification) { }
+
+    @Override
+    public void disableManufacturerDataNotifications() { }
+
+    SimulatedCharacteristic getCharacteristic(URL characteristicURL) {
+        return characteristics.get(key(characteristicURL));
+    }
+
+    void advertise() {
+        rssi = (short) ThreadLocalRandom.current().nextInt(-95, -40);
+        notify(rssiNotification, rssi);
+    }
+
+    void dispose() {
+        characteristics.values().forEach(SimulatedCharacteristic::disableValueNotifications);
+    }
+
+    private static String key(URL characteristicURL) {
+        return characteristicURL.getServiceUUID() + "/" + characteristicURL.getCharacteristicUUID();
+    }
+
+    private static <T> void notify(Notification<T> notification, T value) {
+        if (notification != null) {
+            notification.notify(value);
+        }
+    }
+
+}
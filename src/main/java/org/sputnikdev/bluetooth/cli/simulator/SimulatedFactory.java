@@ -0,0 +1,130 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+import org.sputnikdev.bluetooth.manager.transport.Adapter;
+import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+
+/**
+ * A transport that simulates a configurable number of adapters and devices, so that discovery, navigation,
+ * reads and notifications can be exercised (and load tested) without any Bluetooth hardware.
+ * Enabled with -Dbluetooth.cli.simulator=true, see {@link SimulatorConfig} for the other settings.
+ */
+public class SimulatedFactory implements BluetoothObjectFactory {
+
+    public static final String PROTOCOL_NAME = "simulated";
+
+    private static final String ADAPTER_PREFIX = "5A:00:00:00:";
+
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, SimulatedAdapter> adapters = new LinkedHashMap<>();
+
+    public SimulatedFactory(SimulatorConfig config) {
+        this.config = config;
+        this.scheduler = Executors.newScheduledThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+                    Thread thread = new Thread(runnable, "simulator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        for (int i = 0; i < config.getAdapters(); i++) {
+            String address = ADAPTER_PREFIX + String.format("%02X:%02X", (i >> 8) & 0xFF, i & 0xFF);
+            adapters.put(address, new SimulatedAdapter(new URL(PROTOCOL_NAME, address, null),
+                    "Simulated adapter " + i, config, scheduler));
+        }
+    }
+
+    @Override
+    public Adapter getAdapter(URL url) {
+        return adapters.get(url.getAdapterAddress());
+    }
+
+    @Override
+    public Device getDevice(URL url) {
+        SimulatedAdapter adapter = adapters.get(url.getAdapterAddress());
+        return adapter != null ? adapter.getDevice(url.getDeviceAddress()) : null;
+    }
+
+    @Override
+    public Characteristic getCharacteristic(URL url) {
+        SimulatedAdapter adapter = adapters.get(url.getAdapterAddress());
+        SimulatedDevice device = adapter != null ? adapter.getDevice(url.getDeviceAddress()) : null;
+        return device != null ? device.getCharacteristic(url) : null;
+    }
+
+    @Override
+    public Set<DiscoveredAdapter> getDiscoveredAdapters() {
+        return adapters.values().stream()
+                .map(adapter -> new DiscoveredAdapter(adapter.getURL(), adapter.getName(), adapter.getAlias()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<DiscoveredDevice> getDiscoveredDevices() {
+        return adapters.values().stream()
+                .filter(SimulatedAdapter::isDiscovering)
+                .flatMap(adapter -> adapter.getSimulatedDevices().stream())
+                .map(device -> new DiscoveredDevice(device.getURL(), device.getName(), device.getAlias(),
+                        device.getRSSI(), device.getBluetoothClass(), device.isBleEnabled()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String getProtocolName() {
+        return PROTOCOL_NAME;
+    }
+
+    @Override
+    public void configure(Map<String, Object> config) { }
+
+    @Override
+    public void dispose(URL url) {
+        if (url.isAdapter()) {
+            SimulatedAdapter adapter = adapters.get(url.getAdapterAddress());
+            if (adapter != null) {
+                adapter.dispose();
+            }
+        } else if (url.isDevice()) {
+            Device device = getDevice(url);
+            if (device != null) {
+                device.disconnect();
+            }
+        }
+    }
+
+    public SimulatorConfig getConfig() {
+        return config;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.Service;
+
+/**
+ * A simulated GATT service.
+ */
+class SimulatedService implements Service {
+
+    private final URL url;
+    private final List<Characteristic> characteristics = new ArrayList<>();
+
+    SimulatedService(URL url) {
+        this.url = url;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public List<Characteristic> getCharacteristics() {
+        return characteristics;
+    }
+
+    void addCharacteristic(SimulatedCharacteristic characteristic) {
+        characteristics.add(characteristic);
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+
+/**
+ * Configuration of the simulated transport, read from system properties:
+ * <ul>
+ *     <li>bluetooth.cli.simulator - enables the simulated transport</li>
+ *     <li>bluetooth.cli.simulator.adapters - number of adapters (default 1)</li>
+ *     <li>bluetooth.cli.simulator.devices - number of devices per adapter (default 10)</li>
+ *     <li>bluetooth.cli.simulator.advertisement - advertisement (RSSI update) interval in ms (default 1000)</li>
+ *     <li>bluetooth.cli.simulator.notification - notification interval in ms (default 1000)</li>
+ *     <li>bluetooth.cli.simulator.readLatency - read latency in ms (default 0)</li>
+ *     <li>bluetooth.cli.simulator.gatt - GATT table of every device, a list of
+ *     service:characteristic:flags entries separated by ';', flags are separated by ',',
+ *     e.g. 180F:2A19:READ,NOTIFY;180D:2A37:NOTIFY</li>
+ * </ul>
+ */
+public final class SimulatorConfig {
+
+    public static final String ENABLED_PROPERTY = "bluetooth.cli.simulator";
+
+    private static final String PREFIX = ENABLED_PROPERTY + ".";
+    private static final String DEFAULT_GATT = "180F:2A19:READ,NOTIFY;180D:2A37:NOTIFY;180A:2A29:READ;"
+            + "226c0000-6476-4566-7562-66734470666d:226caa55-6476-4566-7562-66734470666d:NOTIFY;"
+            + "00001204-0000-1000-8000-00805f9b34fb:00001a01-0000-1000-8000-00805f9b34fb:READ,WRITE";
+    private static final String BASE_UUID_SUFFIX = "-0000-1000-8000-00805f9b34fb";
+
+    private final int adapters;
+    private final int devices;
+    private final long advertisementInterval;
+    private final long notificationInterval;
+    private final long readLatency;
+    private final List<CharacteristicSpec> gattTable;
+
+    public SimulatorConfig(int adapters, int devices, long advertisementInterval, long notificationInterval,
+                           long readLatency, List<CharacteristicSpec> gattTable) {
+        this.adapters = adapters;
+        this.devices = devices;
+        this.advertisementInterval = advertisementInterval;
+        this.notificationInterval = notificationInterval;
+        this.readLatency = readLatency;
+        this.gattTable = Collections.unmodifiableList(gattTable);
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    public static SimulatorConfig fromSystemProperties() {
+        return new SimulatorConfig(
+                Integer.getInteger(PREFIX + "adapters", 1),
+                Integer.getInteger(PREFIX + "devices", 10),
+                Long.getLong(PREFIX + "advertisement", 1000),
+                Long.getLong(PREFIX + "notification", 1000),
+                Long.getLong(PREFIX + "readLatency", 0),
+                parseGattTable(System.getProperty(PREFIX + "gatt", DEFAULT_GATT)));
+    }
+
+    public int getAdapters() {
+        return adapters;
+    }
+
+    public int getDevices() {
+        return devices;
+    }
+
+    public long getAdvertisementInterval() {
+        return advertisementInterval;
+    }
+
+    public long getNotificationInterval() {
+        return notificationInterval;
+    }
+
+    public long getReadLatency() {
+        return readLatency;
+    }
+
+    public List<CharacteristicSpec> getGattTable() {
+        return gattTable;
+    }
+
+    static List<CharacteristicSpec> parseGattTable(String table) {
+        List<CharacteristicSpec> specs = new ArrayList<>();
+        for (String entry : table.split(";")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid GATT table entry: " + entry);
+            }
+            Set<CharacteristicAccessType> flags = EnumSet.noneOf(CharacteristicAccessType.class);
+            for (String flag : parts[2].split(",")) {
+                flags.add(CharacteristicAccessType.valueOf(flag.trim().toUpperCase()));
+            }
+            specs.add(new CharacteristicSpec(toUUID(parts[0]), toUUID(parts[1]), flags));
+        }
+        return specs;
+    }
+
+    static String toUUID(String uuid) {
+        String value = uuid.trim().toLowerCase();
+        if (value.length() == 4) {
+            return "0000" + value + BASE_UUID_SUFFIX;
+        }
+        return value;
+    }
+
+    /**
+     * A characteristic of the simulated GATT table.
+     */
+    public static final class CharacteristicSpec {
+
+        private final String serviceUUID;
+        private final String characteristicUUID;
+        private final Set<CharacteristicAccessType> flags;
+
+        CharacteristicSpec(String serviceUUID, String characteristicUUID, Set<CharacteristicAccessType> flags) {
+            this.serviceUUID = serviceUUID;
+            this.characteristicUUID = characteristicUUID;
+            this.flags = Collections.unmodifiableSet(flags);
+        }
+
+        public String getServiceUUID() {
+            return serviceUUID;
+        }
+
+        public String getCharacteristicUUID() {
+            return characteristicUUID;
+        }
+
+        public Set<CharacteristicAccessType> getFlags() {
+            return flags;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.sputnikdev.bluetooth.cli.simulator;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates plausible values for well known characteristics and random bytes for everything else.
+ */
+final class ValueGenerator {
+
+    private ValueGenerator() { }
+
+    static byte[] generate(String characteristicUUID) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // UUIDs are normalised by SimulatorConfig.toUUID
+        switch (characteristicUUID) {
+            case "00002a19-0000-1000-8000-00805f9b34fb":
+                // battery level
+                return new byte[] {(byte) random.nextInt(0, 101)};
+            case "00002a37-0000-1000-8000-00805f9b34fb":
+                // heart rate: flags (uint8 format, no energy expended, no RR intervals) + bpm
+                return new byte[] {0, (byte) random.nextInt(50, 180)};
+            case "00002a29-0000-1000-8000-00805f9b34fb":
+                return "Sputnik Dev".getBytes(StandardCharsets.UTF_8);
+            case "226caa55-6476-4566-7562-66734470666d":
+                // Mi temperature and humidity sensor
+                return String.format(Locale.ROOT, "T=%.1f H=%.1f", random.nextDouble(15, 30), random.nextDouble(20, 80))
+                        .getBytes(StandardCharsets.UTF_8);
+            case "00001a01-0000-1000-8000-00805f9b34fb":
+                // Mi Flora sensor data: temperature, unknown, light, moisture, fertility
+                int temperature = random.nextInt(150, 300);
+                int light = random.nextInt(0, 10000);
+                return new byte[] {(byte) temperature, (byte) (temperature >> 8), 0,
+                    (byte) light, (byte) (light >> 8), 0, 0, (byte) random.nextInt(0, 100),
+                    (byte) random.nextInt(0, 255), 0, 0, 0, 0, 0, 0, 0};
+            default:
+                byte[] value = new byte[8];
+                random.nextBytes(value);
+                return value;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.sputnikdev.bluetooth.cli.subscription;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+
+/**
+ * A subscription to notifications of bluetooth objects matching a {@link SubscriptionPattern}.
+ * Listeners of the subscription are attached and detached by {@link SubscriptionRegistry}.
+ */
+public class Subscription {
+
+    private final int id;
+    private final SubscriptionPattern pattern;
+    private final String policy;
+    private final Duration interval;
+    private final int every;
+    private final AtomicLong events = new AtomicLong();
+
+    // interned ids of attached objects with their detach callbacks
+    final Map<Integer, Runnable> attachments = new ConcurrentHashMap<>();
+    // interned ids of devices watched for resolved services with their detach callbacks
+    final Map<Integer, Runnable> watchers = new ConcurrentHashMap<>();
+
+    private volatile boolean paused;
+    volatile boolean removed;
+
+    Subscription(int id, SubscriptionPattern pattern, String policy, Duration interval, int every) {
+        this.id = id;
+        this.pattern = pattern;
+        this.policy = policy;
+        this.interval = interval;
+        this.every = every;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public SubscriptionPattern getPattern() {
+        return pattern;
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public int getEvery() {
+        return every;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Returns ids of attached devices and characteristics, see {@link URLInterner}.
+     * @return URL ids
+     */
+    public Set<Integer> getAttached() {
+        return attachments.keySet();
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    /**
+     * Counts an event delivered to the subscription.
+     */
+    public void recordEvent() {
+        events.incrementAndGet();
+    }
+
+}
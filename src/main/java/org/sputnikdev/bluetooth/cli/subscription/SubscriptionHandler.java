@@ -0,0 +1,39 @@
+package org.sputnikdev.bluetooth.cli.subscription;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * Attaches listeners of subscriptions to bluetooth objects.
+ */
+@FunctionalInterface
+public interface SubscriptionHandler {
+
+    /**
+     * Attaches a listener of the subscription to a device or characteristic.
+     * @param subscription subscription
+     * @param url device or characteristic URL
+     * @return a callback that detaches the listener
+     */
+    Runnable attach(Subscription subscription, URL url);
+
+}
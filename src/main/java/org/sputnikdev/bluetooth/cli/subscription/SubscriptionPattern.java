@@ -0,0 +1,215 @@
+package org.sputnikdev.bluetooth.cli.subscription;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.regex.Pattern;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.CombinedGovernor;
+
+/**
+ * A pattern of bluetooth URLs, e.g. "/&#42;/&#42;/180d/2a37" matches heart rate measurement characteristic
+ * of every device under every adapter. Each URL segment is either a concrete value or "*". Services and
+ * characteristics can be given as short (16 bit) UUIDs. An optional regular expression restricts matching devices
+ * by their name or alias.
+ */
+public final class SubscriptionPattern {
+
+    public static final String ANY = "*";
+
+    private static final String BASE_UUID_SUFFIX = "-0000-1000-8000-00805f9b34fb";
+
+    private final String text;
+    private final String protocol;
+    private final String adapter;
+    private final String device;
+    private final String service;
+    private final String characteristic;
+    private final boolean deviceLevel;
+    private final Pattern name;
+
+    private SubscriptionPattern(String text, String protocol, String adapter, String device, String service,
+                                String characteristic, boolean deviceLevel, Pattern name) {
+        this.text = text;
+        this.protocol = protocol;
+        this.adapter = adapter;
+        this.device = device;
+        this.service = service;
+        this.characteristic = characteristic;
+        this.deviceLevel = deviceLevel;
+        this.name = name;
+    }
+
+    /**
+     * Parses a pattern in the form of "[protocol:]/adapter/device[/service/characteristic]".
+     * @param pattern URL pattern
+     * @param nameRegex an optional regular expression to match device name or alias, can be null
+     * @return parsed pattern
+     */
+    public static SubscriptionPattern parse(String pattern, String nameRegex) {
+        String value = pattern.trim();
+        String protocol = null;
+        int protocolEnd = value.indexOf(":/");
+        if (!value.startsWith("/") && protocolEnd > 0) {
+            protocol = wildcard(value.substring(0, protocolEnd));
+            value = value.substring(protocolEnd + 1);
+            // URLs are printed as protocol://adapter/device
+            if (value.startsWith("//")) {
+                value = value.substring(1);
+            }
+        }
+        if (value.startsWith("/")) {
+            value = value.substring(1);
+        }
+        String[] segments = value.isEmpty() ? new String[0] : value.split("/");
+        if (segments.length > 4 || segments.length == 3) {
+            throw new IllegalArgumentException("Pattern must be in form of "
+                    + "[protocol:]/adapter/device[/service/characteristic]: " + pattern);
+        }
+        String adapter = segments.length > 0 ? wildcard(segments[0]) : null;
+        String device = segments.length > 1 ? wildcard(segments[1]) : null;
+        boolean deviceLevel = segments.length < 4;
+        String service = deviceLevel ? null : toUUID(wildcard(segments[2]));
+        String characteristic = deviceLevel ? null : toUUID(wildcard(segments[3]));
+        return new SubscriptionPattern(pattern.trim() + (nameRegex != null ? " [" + nameRegex + "]" : ""),
+                protocol, adapter, device, service, characteristic, deviceLevel,
+                nameRegex != null ? Pattern.compile(nameRegex, Pattern.CASE_INSENSITIVE) : null);
+    }
+
+    /**
+     * Creates a pattern that matches only the given URL.
+     * @param url device or characteristic URL
+     * @return a new pattern
+     */
+    public static SubscriptionPattern exact(URL url) {
+        return new SubscriptionPattern(url.toString(), url.getProtocol(), url.getAdapterAddress(),
+                url.getDeviceAddress(), lower(url.getServiceUUID()), lower(url.getCharacteristicUUID()),
+                url.isDevice(), null);
+    }
+
+    /**
+     * Checks whether the pattern matches only one bluetooth object, i.e. it has no wildcards.
+     * @return true if the pattern has no wildcards
+     */
+    public boolean isExact() {
+        return name == null && adapter != null && device != null
+                && (deviceLevel || service != null && characteristic != null);
+    }
+
+    /**
+     * Returns the bluetooth object URL if the pattern is exact.
+     * @return object URL or null if the pattern has wildcards
+     */
+    public URL toURL() {
+        if (!isExact()) {
+            return null;
+        }
+        URL deviceURL = new URL(protocol, adapter, device);
+        return deviceLevel ? deviceURL : deviceURL.copyWith(service, characteristic);
+    }
+
+    /**
+     * Checks whether the pattern targets devices rather than characteristics.
+     * @return true if the pattern targets devices
+     */
+    public boolean isDeviceLevel() {
+        return deviceLevel;
+    }
+
+    /**
+     * Checks whether a discovered device matches the pattern.
+     * @param url device URL
+     * @param deviceName device name, can be null
+     * @param alias device alias, can be null
+     * @return true if the device matches
+     */
+    public boolean matchesDevice(URL url, String deviceName, String alias) {
+        if (protocol != null && !protocol.equalsIgnoreCase(url.getProtocol())) {
+            return false;
+        }
+        if (adapter != null && !adapter.equalsIgnoreCase(url.getAdapterAddress())
+                && !CombinedGovernor.COMBINED_ADDRESS.equals(url.getAdapterAddress())) {
+            return false;
+        }
+        if (device != null && !device.equalsIgnoreCase(url.getDeviceAddress())) {
+            return false;
+        }
+        return name == null || deviceName != null && name.matcher(deviceName).find()
+                || alias != null && name.matcher(alias).find();
+    }
+
+    /**
+     * Checks whether a characteristic matches service and characteristic segments of the pattern.
+     * @param serviceUUID service UUID
+     * @param characteristicUUID characteristic UUID
+     * @return true if the characteristic matches
+     */
+    public boolean matchesCharacteristic(String serviceUUID, String characteristicUUID) {
+        return !deviceLevel && (service == null || service.equalsIgnoreCase(serviceUUID))
+                && (characteristic == null || characteristic.equalsIgnoreCase(characteristicUUID));
+    }
+
+    /**
+     * Returns a device URL a subscription should be attached to. Devices discovered by the combined adapter
+     * are pinned to the adapter of the pattern if it is specified.
+     * @param url discovered device URL
+     * @return device URL
+     */
+    public URL target(URL url) {
+        URL deviceURL = url.getDeviceURL();
+        return adapter != null && !adapter.equalsIgnoreCase(deviceURL.getAdapterAddress())
+                ? deviceURL.copyWithAdapter(adapter) : deviceURL;
+    }
+
+    /**
+     * Returns the characteristic URL of a device if both service and characteristic are known upfront,
+     * so that the subscription can be attached without waiting for services to be resolved.
+     * @param deviceURL device URL
+     * @return characteristic URL or null
+     */
+    public URL resolve(URL deviceURL) {
+        return !deviceLevel && service != null && characteristic != null
+                ? deviceURL.copyWith(service, characteristic) : null;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static String wildcard(String segment) {
+        String value = segment.trim();
+        return value.isEmpty() || ANY.equals(value) ? null : value;
+    }
+
+    private static String toUUID(String uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        String value = uuid.toLowerCase();
+        return value.length() == 4 ? "0000" + value + BASE_UUID_SUFFIX : value;
+    }
+
+    private static String lower(String value) {
+        return value != null ? value.toLowerCase() : null;
+    }
+
+}
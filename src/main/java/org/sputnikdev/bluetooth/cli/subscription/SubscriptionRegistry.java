@@ -0,0 +1,270 @@
+package org.sputnikdev.bluetooth.cli.subscription;
+
+/*-
+ * #%L
+ * org.sputnikdev:bluetooth-cli
+ * %%
+ * Copyright (C) 2017 Sputnik Dev
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.support.logging.HandlerUtils;
+import org.springframework.stereotype.Component;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.cli.BluetoothManagerCli;
+import org.sputnikdev.bluetooth.cli.codec.URLInterner;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
+import org.sputnikdev.bluetooth.manager.DeviceDiscoveryListener;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+import org.sputnikdev.bluetooth.manager.GattCharacteristic;
+import org.sputnikdev.bluetooth.manager.GattService;
+import org.sputnikdev.bluetooth.manager.NotReadyException;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+
+/**
+ * Keeps track of notification subscriptions. Exact subscriptions are attached straight away, pattern subscriptions
+ * are attached to matching devices (and their characteristics) as they get discovered.
+ * Each bluetooth object is attached to at most one subscription.
+ */
+@Component
+public class SubscriptionRegistry implements DeviceDiscoveryListener {
+
+    private final Logger logger = HandlerUtils.getLogger(getClass());
+
+    @Autowired
+    private BluetoothManagerCli bluetoothManagerCli;
+
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // subscriptions keyed by interned ids of attached objects
+    private final Map<Integer, Subscription> attached = new ConcurrentHashMap<>();
+    private final List<Subscription> patterns = new CopyOnWriteArrayList<>();
+
+    private volatile SubscriptionHandler handler;
+
+    @PostConstruct
+    public void init() {
+        bluetoothManagerCli.getBluetoothManager().addDeviceDiscoveryListener(this);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        bluetoothManagerCli.getBluetoothManager().removeDeviceDiscoveryListener(this);
+        new ArrayList<>(subscriptions.keySet()).forEach(this::remove);
+    }
+
+    public void setHandler(SubscriptionHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Creates a new subscription. Exact subscriptions are attached immediately, pattern subscriptions are attached
+     * to already discovered devices and then to any newly discovered device that matches the pattern.
+     * @param pattern pattern
+     * @param policy throttle policy name
+     * @param interval throttle policy interval
+     * @param every throttle policy sampling rate
+     * @return a new subscription
+     */
+    public Subscription subscribe(SubscriptionPattern pattern, String policy, Duration interval, int every) {
+        Subscription subscription = new Subscription(ids.incrementAndGet(), pattern, policy, interval, every);
+        subscriptions.put(subscription.getId(), subscription);
+        if (pattern.isExact()) {
+            attach(subscription, pattern.toURL());
+        } else {
+            patterns.add(subscription);
+            bluetoothManagerCli.getBluetoothManager().getDiscoveredDevices().forEach(
+                device -> match(subscription, device));
+        }
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription detaching all its listeners.
+     * @param id subscription id
+     * @return removed subscription or null if it does not exist
+     */
+    public Subscription remove(int id) {
+        Subscription subscription = subscriptions.remove(id);
+        if (subscription == null) {
+            return null;
+        }
+        patterns.remove(subscription);
+        synchronized (subscription) {
+            subscription.removed = true;
+            subscription.watchers.values().forEach(Runnable::run);
+            subscription.watchers.clear();
+            for (Map.Entry<Integer, Runnable> attachment : subscription.attachments.entrySet()) {
+                attachment.getValue().run();
+                attached.remove(attachment.getKey(), subscription);
+            }
+            subscription.attachments.clear();
+        }
+        return subscription;
+    }
+
+    /**
+     * Pauses or resumes a subscription. Listeners of a paused subscription stay attached, but events are dropped.
+     * @param id subscription id
+     * @param paused true to pause, false to resume
+     * @return affected subscription or null if it does not exist
+     */
+    public Subscription setPaused(int id, boolean paused) {
+        Subscription subscription = subscriptions.get(id);
+        if (subscription != null) {
+            subscription.setPaused(paused);
+        }
+        return subscription;
+    }
+
+    public Subscription get(int id) {
+        return subscriptions.get(id);
+    }
+
+    /**
+     * Returns a subscription attached to the given bluetooth object.
+     * @param url device or characteristic URL
+     * @return subscription or null if nothing is attached to the object
+     */
+    public Subscription getAttached(URL url) {
+        return attached.get(bluetoothManagerCli.getURLInterner().id(url));
+    }
+
+    public List<Subscription> getSubscriptions() {
+        List<Subscription> result = new ArrayList<>(subscriptions.values());
+        result.sort(Comparator.comparingInt(Subscription::getId));
+        return result;
+    }
+
+    @Override
+    public void discovered(DiscoveredDevice discoveredDevice) {
+        for (Subscription subscription : patterns) {
+            match(subscription, discoveredDevice);
+        }
+    }
+
+    private void match(Subscription subscription, DiscoveredDevice device) {
+        SubscriptionPattern pattern = subscription.getPattern();
+        if (!pattern.matchesDevice(device.getURL(), device.getName(), device.getAlias())) {
+            return;
+        }
+        URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+        int deviceId = urlInterner.id(pattern.target(device.getURL()));
+        if (subscription.watchers.containsKey(deviceId) || subscription.attachments.containsKey(deviceId)) {
+            return;
+        }
+        URL deviceURL = urlInterner.get(deviceId);
+        if (pattern.isDeviceLevel()) {
+            attach(subscription, deviceURL);
+            return;
+        }
+        URL characteristicURL = pattern.resolve(deviceURL);
+        if (characteristicURL != null) {
+            attach(subscription, characteristicURL);
+            subscription.watchers.computeIfAbsent(deviceId, id -> retain(id, () -> { }));
+            return;
+        }
+        subscription.watchers.computeIfAbsent(deviceId, id -> retain(id, watch(subscription, deviceURL)));
+        if (subscription.removed) {
+            // the subscription has been removed while the watcher was being registered
+            Runnable watcher = subscription.watchers.remove(deviceId);
+            if (watcher != null) {
+                watcher.run();
+            }
+        }
+    }
+
+    private Runnable watch(Subscription subscription, URL deviceURL) {
+        BluetoothManager bluetoothManager = bluetoothManagerCli.getBluetoothManager();
+        DeviceGovernor governor = bluetoothManager.getDeviceGovernor(deviceURL);
+        BluetoothSmartDeviceListener listener = services -> attach(subscription, deviceURL, services);
+        governor.addBluetoothSmartDeviceListener(listener);
+        if (governor.isReady() && governor.isServicesResolved()) {
+            try {
+                attach(subscription, deviceURL, governor.getResolvedServices());
+            } catch (NotReadyException ignore) {
+                // the listener attaches characteristics once services get resolved
+            }
+        }
+        return () -> governor.removeBluetoothSmartDeviceListener(listener);
+    }
+
+    private void attach(Subscription subscription, URL deviceURL, List<GattService> services) {
+        SubscriptionPattern pattern = subscription.getPattern();
+        for (GattService service : services) {
+            String serviceUUID = service.getURL().getServiceUUID();
+            for (GattCharacteristic characteristic : service.getCharacteristics()) {
+                String characteristicUUID = characteristic.getURL().getCharacteristicUUID();
+                if (pattern.matchesCharacteristic(serviceUUID, characteristicUUID)
+                        && (characteristic.getFlags().contains(CharacteristicAccessType.NOTIFY)
+                            || characteristic.getFlags().contains(CharacteristicAccessType.INDICATE))) {
+                    attach(subscription, deviceURL.copyWith(serviceUUID, characteristicUUID));
+                }
+            }
+        }
+    }
+
+    private void attach(Subscription subscription, URL url) {
+        SubscriptionHandler current = handler;
+        if (current == null) {
+            throw new IllegalStateException("Subscription handler is not set");
+        }
+        URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+        int id = urlInterner.id(url);
+        synchronized (subscription) {
+            if (subscription.removed || subscription.attachments.containsKey(id)) {
+                return;
+            }
+            Subscription owner = attached.putIfAbsent(id, subscription);
+            if (owner != null) {
+                if (subscription.getPattern().isExact()) {
+                    logger.info(url + " is already attached to subscription #" + owner.getId());
+                }
+                return;
+            }
+            subscription.attachments.put(id, retain(id, current.attach(subscription, urlInterner.get(id))));
+        }
+    }
+
+    /**
+     * Retains an id of a watched or attached object, so that it does not change if the device gets lost
+     * and discovered again, the returned runnable detaches the object and releases the id.
+     */
+    private Runnable retain(int id, Runnable detach) {
+        URLInterner urlInterner = bluetoothManagerCli.getURLInterner();
+        urlInterner.retain(id);
+        return () -> {
+            detach.run();
+            urlInterner.release(id);
+        };
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.sputnikdev.bluetooth.examples;
 
+import org.sputnikdev.bluetooth.cli.codec.HexCodec;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.manager.BluetoothManager;
@@ -7,7 +8,6 @@ import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.GattService;
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -62,12 +62,7 @@ final class Utils {
     }
 
     static String formatHex(byte[] value) {
-        String[] hexFormatted = new String[value.length];
-        int index = 0;
-        for (byte b : value) {
-            hexFormatted[index++] = String.format("%02x", b);
-        }
-        return Arrays.toString(hexFormatted);
+        return HexCodec.toList(value);
     }
 
     private static byte[] tryToRead(CharacteristicGovernor governor) {
@@ -0,0 +1,116 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares compiled decoder plans with the generic parser on random payloads of every standard characteristic.
+ */
+public class DecoderPlanTest {
+
+    private static final int PAYLOADS = 300;
+    private static final int MAX_LENGTH = 24;
+
+    private static BluetoothGattParser parser;
+    private static DecoderCache decoderCache;
+
+    @BeforeClass
+    public static void setUp() {
+        parser = BluetoothGattParserFactory.getDefault();
+        decoderCache = new DecoderCache(parser);
+    }
+
+    @Test
+    public void testPlansMatchGenericParser() {
+        Random random = new Random(1);
+        int compiled = 0;
+        List<String> mismatches = new ArrayList<>();
+        for (int uuid = 0x2A00; uuid <= 0x2BFF; uuid++) {
+            String characteristicUUID = String.format("0000%04x-0000-1000-8000-00805f9b34fb", uuid);
+            if (!isKnown(characteristicUUID) || decoderCache.getPlan(characteristicUUID) == null) {
+                continue;
+            }
+            compiled++;
+            for (int i = 0; i < PAYLOADS; i++) {
+                byte[] raw = new byte[random.nextInt(MAX_LENGTH)];
+                random.nextBytes(raw);
+                String expected = renderGeneric(characteristicUUID, raw);
+                String actual = renderPlan(characteristicUUID, raw);
+                if (!expected.equals(actual)) {
+                    mismatches.add(characteristicUUID + " " + Arrays.toString(raw) + System.lineSeparator()
+                            + "  expected: " + expected + System.lineSeparator() + "  actual: " + actual);
+                }
+            }
+        }
+        assertTrue("Too few characteristics are compiled: " + compiled, compiled > 100);
+        assertEquals(mismatches.size() + " mismatches, e.g. "
+                + mismatches.subList(0, Math.min(5, mismatches.size())), 0, mismatches.size());
+    }
+
+    @Test
+    public void testKnownValues() {
+        // battery level
+        assertNotNull(decoderCache.getPlan("00002a19-0000-1000-8000-00805f9b34fb"));
+        assertEquals(renderGeneric("2A19", new byte[] {0x55}),
+                renderPlan("00002a19-0000-1000-8000-00805f9b34fb", new byte[] {0x55}));
+        assertTrue(renderPlan("00002a19-0000-1000-8000-00805f9b34fb", new byte[] {0x55}).contains("85"));
+        // heart rate, uint8 and uint16 formats selected by flags
+        byte[] uint8 = {0x00, 0x48};
+        byte[] uint16 = {0x01, 0x2c, 0x01};
+        assertEquals(renderGeneric("2A37", uint8), renderPlan("00002a37-0000-1000-8000-00805f9b34fb", uint8));
+        assertEquals(renderGeneric("2A37", uint16), renderPlan("00002a37-0000-1000-8000-00805f9b34fb", uint16));
+        assertTrue(renderPlan("00002a37-0000-1000-8000-00805f9b34fb", uint16).contains("300"));
+    }
+
+    @Test
+    public void testReadBits() {
+        byte[] raw = {(byte) 0xb4, 0x3c, (byte) 0xff};
+        assertEquals(0xb4, DecoderPlan.readBits(raw, 0, 8));
+        assertEquals(0x3cb4, DecoderPlan.readBits(raw, 0, 16));
+        assertEquals(0x4, DecoderPlan.readBits(raw, 0, 4));
+        assertEquals(0xb, DecoderPlan.readBits(raw, 4, 4));
+        assertEquals(0xff3cb4, DecoderPlan.readBits(raw, 0, 24));
+        assertEquals(1, DecoderPlan.readBits(raw, 2, 1));
+        assertEquals(0, DecoderPlan.readBits(raw, 0, 1));
+        // bits past the end of data are zeros
+        assertEquals(0xff, DecoderPlan.readBits(raw, 16, 16));
+        assertEquals(0x7f, DecoderPlan.readBits(raw, 17, 12));
+    }
+
+    private static boolean isKnown(String characteristicUUID) {
+        try {
+            return decoderCache.isKnownCharacteristic(characteristicUUID);
+        } catch (RuntimeException ex) {
+            // a few specifications of the library cannot be read
+            return false;
+        }
+    }
+
+    private static String renderGeneric(String characteristicUUID, byte[] raw) {
+        try {
+            return DecoderCache.render(new StringBuilder(), parser.parse(characteristicUUID, raw)).toString();
+        } catch (RuntimeException ex) {
+            return ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        }
+    }
+
+    private static String renderPlan(String characteristicUUID, byte[] raw) {
+        try {
+            return decoderCache.render(new StringBuilder(), characteristicUUID, raw).toString();
+        } catch (RuntimeException ex) {
+            return ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        }
+    }
+
+}
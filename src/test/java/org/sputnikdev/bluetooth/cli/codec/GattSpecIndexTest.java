@@ -0,0 +1,121 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.thoughtworks.xstream.XStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.spec.BluetoothGattSpecificationReader;
+import org.sputnikdev.bluetooth.gattparser.spec.Characteristic;
+import org.sputnikdev.bluetooth.gattparser.spec.Service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GattSpecIndexTest {
+
+    private static final String EXTENSION_UUID = "0000FFE1-0000-1000-8000-00805F9B34FB";
+    private static final String EXTENSION = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<Characteristic name=\"Test Level\" type=\"com.example.characteristic.test_level\" uuid=\""
+            + EXTENSION_UUID + "\">\n"
+            + "    <Value>\n"
+            + "        <Field name=\"Level\">\n"
+            + "            <Requirement>Mandatory</Requirement>\n"
+            + "            <Format>uint16</Format>\n"
+            + "            <Unit>org.bluetooth.unit.percentage</Unit>\n"
+            + "        </Field>\n"
+            + "    </Value>\n"
+            + "</Characteristic>\n";
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("gatt-spec-index").toFile();
+        File characteristics = new File(folder, "characteristic");
+        assertTrue(characteristics.mkdir());
+        Files.write(new File(characteristics, "com.example.characteristic.test_level.xml").toPath(),
+                EXTENSION.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (File file : Files.walk(folder.toPath()).map(java.nio.file.Path::toFile)
+                .sorted((a, b) -> b.getPath().compareTo(a.getPath())).toArray(File[]::new)) {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testIndexMatchesSpecifications() throws Exception {
+        // the first load reads XML files into the default parser and builds the index
+        GattSpecIndex.load(folder);
+        File index = new File(folder, GattSpecIndex.INDEX_FILE);
+        assertTrue(index.isFile());
+
+        BluetoothGattParser expected = BluetoothGattParserFactory.getDefault();
+        BluetoothGattSpecificationReader expectedReader = BluetoothGattParserFactory.getSpecificationReader();
+        BluetoothGattSpecificationReader indexedReader =
+                GattSpecIndex.read(index, GattSpecIndex.fingerprint(folder));
+        assertNotNull(indexedReader);
+        BluetoothGattParser indexed = GattSpecIndex.load(folder);
+
+        Set<String> characteristics = characteristicUUIDs(expectedReader.getCharacteristics());
+        assertTrue(characteristics.contains(EXTENSION_UUID));
+        assertTrue(characteristics.contains("2A19"));
+        assertEquals(characteristics, characteristicUUIDs(indexedReader.getCharacteristics()));
+        assertEquals(serviceUUIDs(expectedReader.getServices()), serviceUUIDs(indexedReader.getServices()));
+
+        XStream xstream = new XStream();
+        for (String uuid : characteristics) {
+            assertTrue(uuid, indexed.isKnownCharacteristic(uuid));
+            assertEquals(uuid, expected.isValidForRead(uuid), indexed.isValidForRead(uuid));
+            assertEquals(uuid, xstream.toXML(expected.getFields(uuid)), xstream.toXML(indexed.getFields(uuid)));
+        }
+        for (String uuid : serviceUUIDs(expectedReader.getServices())) {
+            assertTrue(uuid, indexed.isKnownService(uuid));
+        }
+    }
+
+    @Test
+    public void testStaleIndexIsIgnored() throws Exception {
+        GattSpecIndex.load(folder);
+        File index = new File(folder, GattSpecIndex.INDEX_FILE);
+        long fingerprint = GattSpecIndex.fingerprint(folder);
+        assertNotNull(GattSpecIndex.read(index, fingerprint));
+        assertNull(GattSpecIndex.read(index, fingerprint + 1));
+
+        File extension = new File(folder, "characteristic/com.example.characteristic.other.xml");
+        Files.write(extension.toPath(), EXTENSION.replace("FFE1", "FFE2").getBytes(StandardCharsets.UTF_8));
+        assertFalse(fingerprint == GattSpecIndex.fingerprint(folder));
+    }
+
+    private static Set<String> characteristicUUIDs(Collection<Characteristic> characteristics) {
+        Set<String> uuids = new TreeSet<>();
+        for (Characteristic characteristic : characteristics) {
+            uuids.add(characteristic.getUuid());
+        }
+        return uuids;
+    }
+
+    private static Set<String> serviceUUIDs(Collection<Service> services) {
+        Set<String> uuids = new TreeSet<>();
+        for (Service service : services) {
+            uuids.add(service.getUuid());
+        }
+        return uuids;
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.sputnikdev.bluetooth.cli.codec;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class URLInternerTest {
+
+    private static final URL DEVICE = new URL("/00:11:22:33:44:55/AA:BB:CC:DD:EE:FF");
+    private static final URL CHARACTERISTIC = DEVICE.copyWith("0000180f-0000-1000-8000-00805f9b34fb",
+            "00002a19-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void testIntern() {
+        URLInterner interner = new URLInterner();
+        int id = interner.id(DEVICE);
+        assertEquals(id, interner.id(new URL(DEVICE.toString())));
+        assertSame(DEVICE, interner.intern(new URL(DEVICE.toString())));
+        assertSame(DEVICE, interner.parse(DEVICE.toString()));
+        assertEquals(0xAABBCCDDEEFFL, interner.getDeviceAddress(id));
+        assertEquals(URLInterner.NO_ADDRESS, interner.getDeviceAddress(interner.id(new URL("/00:11:22:33:44:55"))));
+    }
+
+    @Test
+    public void testRemovedURLsAreReleased() {
+        URLInterner interner = new URLInterner(0);
+        int deviceId = interner.id(DEVICE);
+        int characteristicId = interner.id(CHARACTERISTIC);
+        int otherId = interner.id(new URL("/00:11:22:33:44:55/11:22:33:44:55:66"));
+
+        interner.remove(DEVICE);
+        interner.remove(DEVICE);
+        assertEquals(1, interner.size());
+        assertEquals(DEVICE.copyWithDevice("11:22:33:44:55:66"), interner.get(otherId));
+        assertInvalid(interner, deviceId);
+        assertInvalid(interner, characteristicId);
+        // ids are not reused
+        assertTrue(deviceId != interner.id(DEVICE));
+    }
+
+    @Test
+    public void testURLsInternedAgainAreRemoved() {
+        URLInterner interner = new URLInterner(0);
+        interner.id(CHARACTERISTIC);
+        interner.remove(DEVICE);
+        int characteristicId = interner.id(CHARACTERISTIC);
+        interner.remove(DEVICE);
+        assertEquals(0, interner.size());
+        assertInvalid(interner, characteristicId);
+    }
+
+    @Test
+    public void testRetainedURLsAreKept() {
+        URLInterner interner = new URLInterner(0);
+        int deviceId = interner.id(DEVICE);
+        interner.retain(deviceId);
+        interner.remove(DEVICE);
+        assertSame(DEVICE, interner.get(deviceId));
+        assertEquals(deviceId, interner.id(DEVICE));
+
+        interner.remove(DEVICE);
+        interner.release(deviceId);
+        interner.remove(DEVICE);
+        assertInvalid(interner, deviceId);
+    }
+
+    @Test
+    public void testRemovedURLsAreKeptForDelay() {
+        URLInterner interner = new URLInterner(Long.MAX_VALUE);
+        int deviceId = interner.id(DEVICE);
+        interner.remove(DEVICE);
+        assertSame(DEVICE, interner.get(deviceId));
+        // seen again
+        assertEquals(deviceId, interner.id(DEVICE));
+    }
+
+    @Test
+    public void testReleasedChunksAreDropped() {
+        URLInterner interner = new URLInterner(0);
+        for (int i = 0; i < 5000; i++) {
+            URL device = DEVICE.copyWithDevice(MacAddress.toString(i));
+            interner.id(device);
+            interner.id(device.copyWith("180f", "2a19"));
+            interner.remove(device);
+        }
+        assertEquals(0, interner.size());
+        assertInvalid(interner, 0);
+        assertInvalid(interner, 9999);
+        assertEquals(10000, interner.id(DEVICE));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseNotRetained() {
+        URLInterner interner = new URLInterner();
+        interner.release(interner.id(DEVICE));
+    }
+
+    private static void assertInvalid(URLInterner interner, int id) {
+        try {
+            interner.get(id);
+        } catch (IndexOutOfBoundsException expected) {
+            return;
+        }
+        throw new AssertionError("URL id is still valid: " + id);
+    }
+
+}
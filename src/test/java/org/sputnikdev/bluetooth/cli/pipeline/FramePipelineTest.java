@@ -0,0 +1,93 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.cli.metrics.LatencyHistogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FramePipelineTest {
+
+    @Test(timeout = 30000)
+    public void testFramesOfUrlAreHandledInOrder() throws Exception {
+        int urls = 8;
+        int perURL = 20000;
+        Map<Integer, Integer> last = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch handled = new CountDownLatch(urls * perURL);
+        FramePipeline pipeline = new FramePipeline("test", 256, 4, OverflowPolicy.BLOCK, frame -> {
+            int sequence = frame.getValue()[0] << 24 | (frame.getValue()[1] & 0xff) << 16
+                    | (frame.getValue()[2] & 0xff) << 8 | frame.getValue()[3] & 0xff;
+            Integer previous = last.put(frame.getURLId(), sequence);
+            if (previous != null && previous + 1 != sequence) {
+                outOfOrder.incrementAndGet();
+            }
+            handled.countDown();
+        });
+        pipeline.start();
+        try {
+            Thread[] producers = new Thread[urls];
+            for (int u = 0; u < urls; u++) {
+                int urlId = u;
+                producers[u] = new Thread(() -> {
+                    for (int i = 0; i < perURL; i++) {
+                        pipeline.publish(new Frame(System.nanoTime(), urlId, null,
+                                new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i}));
+                    }
+                });
+                producers[u].start();
+            }
+            assertTrue(handled.await(20, TimeUnit.SECONDS));
+            assertEquals(0, outOfOrder.get());
+            // the counter is updated after the handler returns
+            while (pipeline.getProcessed() < urls * perURL) {
+                Thread.yield();
+            }
+            assertEquals(urls * perURL, pipeline.getProcessed());
+            assertEquals(0, pipeline.getDropped());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testParkedConsumerIsWokenUp() throws Exception {
+        CountDownLatch handled = new CountDownLatch(1);
+        FramePipeline pipeline = new FramePipeline("test", 16, 2, OverflowPolicy.DROP_OLDEST,
+            frame -> handled.countDown());
+        pipeline.start();
+        try {
+            // consumers run out of spins and park
+            Thread.sleep(200);
+            pipeline.publish(new Frame(System.nanoTime(), 1, null, new byte[0]));
+            assertTrue(handled.await(1, TimeUnit.SECONDS));
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFrameLatencyIsRecordedIntoItsHistogram() throws Exception {
+        LatencyHistogram replayed = new LatencyHistogram();
+        FramePipeline pipeline = new FramePipeline("test", 16, 1, OverflowPolicy.BLOCK, frame -> { });
+        pipeline.start();
+        try {
+            pipeline.publish(new Frame(System.nanoTime(), 1, null, new byte[0]));
+            pipeline.publish(new Frame(System.nanoTime(), 1, null, new byte[0], replayed));
+            while (pipeline.getProcessed() < 2) {
+                Thread.yield();
+            }
+            assertEquals(1, pipeline.getLatency().getCount());
+            assertEquals(1, replayed.getCount());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+}
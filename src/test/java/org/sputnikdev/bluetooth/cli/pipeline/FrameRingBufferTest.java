@@ -0,0 +1,180 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedUp() {
+        assertEquals(2, new FrameRingBuffer(2, OverflowPolicy.DROP_NEWEST).getCapacity());
+        assertEquals(8, new FrameRingBuffer(5, OverflowPolicy.DROP_NEWEST).getCapacity());
+        assertEquals(1024, new FrameRingBuffer(1024, OverflowPolicy.DROP_NEWEST).getCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new FrameRingBuffer(1, OverflowPolicy.DROP_NEWEST);
+    }
+
+    @Test
+    public void testFifo() {
+        FrameRingBuffer buffer = new FrameRingBuffer(4, OverflowPolicy.DROP_NEWEST);
+        assertNull(buffer.poll());
+        // several laps, so that slot sequences wrap around
+        for (int lap = 0; lap < 3; lap++) {
+            Frame[] frames = frames(3);
+            for (Frame frame : frames) {
+                assertTrue(buffer.publish(frame));
+            }
+            assertEquals(3, buffer.size());
+            for (Frame frame : frames) {
+                assertSame(frame, buffer.poll());
+            }
+            assertNull(buffer.poll());
+        }
+        assertEquals(9, buffer.getPublished());
+        assertEquals(0, buffer.getDropped());
+    }
+
+    @Test
+    public void testDropNewest() {
+        FrameRingBuffer buffer = new FrameRingBuffer(4, OverflowPolicy.DROP_NEWEST);
+        Frame[] frames = frames(6);
+        for (int i = 0; i < frames.length; i++) {
+            assertEquals(i < 4, buffer.publish(frames[i]));
+        }
+        assertEquals(4, buffer.size());
+        assertEquals(4, buffer.getPublished());
+        assertEquals(2, buffer.getDropped());
+        for (int i = 0; i < 4; i++) {
+            assertSame(frames[i], buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testDropOldest() {
+        FrameRingBuffer buffer = new FrameRingBuffer(4, OverflowPolicy.DROP_OLDEST);
+        Frame[] frames = frames(6);
+        for (Frame frame : frames) {
+            assertTrue(buffer.publish(frame));
+        }
+        assertEquals(4, buffer.size());
+        assertEquals(6, buffer.getPublished());
+        assertEquals(2, buffer.getDropped());
+        for (int i = 2; i < 6; i++) {
+            assertSame(frames[i], buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testOfferDoesNotApplyPolicy() {
+        FrameRingBuffer buffer = new FrameRingBuffer(2, OverflowPolicy.DROP_OLDEST);
+        Frame[] frames = frames(3);
+        assertTrue(buffer.offer(frames[0]));
+        assertTrue(buffer.offer(frames[1]));
+        assertFalse(buffer.offer(frames[2]));
+        assertEquals(0, buffer.getDropped());
+        assertSame(frames[0], buffer.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockWaitsForConsumer() throws Exception {
+        FrameRingBuffer buffer = new FrameRingBuffer(2, OverflowPolicy.BLOCK);
+        Frame[] frames = frames(3);
+        buffer.publish(frames[0]);
+        buffer.publish(frames[1]);
+
+        AtomicBoolean accepted = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            accepted.set(buffer.publish(frames[2]));
+            done.countDown();
+        });
+        producer.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        assertSame(frames[0], buffer.poll());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(accepted.get());
+        assertSame(frames[1], buffer.poll());
+        assertSame(frames[2], buffer.poll());
+        assertEquals(0, buffer.getDropped());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseReleasesBlockedProducer() throws Exception {
+        FrameRingBuffer buffer = new FrameRingBuffer(2, OverflowPolicy.BLOCK);
+        Frame[] frames = frames(3);
+        buffer.publish(frames[0]);
+        buffer.publish(frames[1]);
+
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            accepted.set(buffer.publish(frames[2]));
+            done.countDown();
+        });
+        producer.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        buffer.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(accepted.get());
+        assertEquals(1, buffer.getDropped());
+        assertEquals(2, buffer.size());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int perProducer = 50000;
+        FrameRingBuffer buffer = new FrameRingBuffer(64, OverflowPolicy.BLOCK);
+        boolean[] seen = new boolean[producers * perProducer];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.publish(new Frame(0, base + i, null, null));
+                }
+            });
+            threads[p].start();
+        }
+        int received = 0;
+        while (received < seen.length) {
+            Frame frame = buffer.poll();
+            if (frame != null) {
+                assertFalse(seen[frame.getURLId()]);
+                seen[frame.getURLId()] = true;
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.poll());
+        assertEquals(seen.length, buffer.getPublished());
+        assertEquals(0, buffer.getDropped());
+    }
+
+    private static Frame[] frames(int count) {
+        Frame[] frames = new Frame[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = new Frame(i, i, null, new byte[] {(byte) i});
+        }
+        return frames;
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.sputnikdev.bluetooth.cli.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThrottlePoliciesTest {
+
+    private static final int THREADS = 4;
+    private static final int VALUES = 100000;
+
+    @Test
+    public void testSampleEvery() {
+        ThrottlePolicy policy = ThrottlePolicies.sampleEvery(3);
+        assertFalse(policy.accept(0, new byte[] {1}));
+        assertFalse(policy.accept(0, new byte[] {2}));
+        assertTrue(policy.accept(0, new byte[] {3}));
+        assertFalse(policy.accept(0, new byte[] {4}));
+    }
+
+    @Test
+    public void testSampleEveryConcurrently() throws Exception {
+        ThrottlePolicy policy = ThrottlePolicies.sampleEvery(10);
+        assertEquals(THREADS * VALUES / 10, acceptConcurrently(policy, thread -> new byte[] {1}));
+    }
+
+    @Test
+    public void testOnChangeCopiesValue() {
+        ThrottlePolicy policy = ThrottlePolicies.onChange();
+        byte[] value = {1, 2};
+        assertTrue(policy.accept(0, value));
+        assertFalse(policy.accept(0, new byte[] {1, 2}));
+        // the caller reuses its array
+        value[1] = 3;
+        assertTrue(policy.accept(0, value));
+        assertFalse(policy.accept(0, value));
+    }
+
+    @Test
+    public void testOnChangeConcurrently() throws Exception {
+        ThrottlePolicy policy = ThrottlePolicies.onChange();
+        // all threads send the same value, only the first one gets forwarded
+        assertEquals(1, acceptConcurrently(policy, thread -> new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    public void testKeepLatestCopiesValue() {
+        ThrottlePolicy policy = ThrottlePolicies.keepLatest(10);
+        assertTrue(policy.accept(0, new byte[] {1}));
+        byte[] value = {2};
+        assertFalse(policy.accept(5, value));
+        value[0] = 3;
+        assertNull(policy.poll(9));
+        assertArrayEquals(new byte[] {2}, policy.poll(10));
+        assertNull(policy.poll(30));
+    }
+
+    @Test
+    public void testKeepLatestConcurrently() throws Exception {
+        ThrottlePolicy policy = ThrottlePolicies.keepLatest(10);
+        // timestamps of forwarded values are at least one interval apart, whichever thread gets there first
+        assertTrue(acceptConcurrently(policy, thread -> new byte[] {1}) <= VALUES / 10);
+    }
+
+    @Test
+    public void testKeepLatestReusesBuffer() {
+        ThrottlePolicy policy = ThrottlePolicies.keepLatest(10);
+        assertTrue(policy.accept(0, new byte[] {1}));
+        assertFalse(policy.accept(1, new byte[] {1, 2, 3}));
+        assertFalse(policy.accept(2, new byte[] {4}));
+        assertArrayEquals(new byte[] {4}, policy.poll(10));
+        assertFalse(policy.accept(11, new byte[] {5, 6}));
+        assertArrayEquals(new byte[] {5, 6}, policy.poll(20));
+    }
+
+    private static int acceptConcurrently(ThrottlePolicy policy, IntFunction<byte[]> values) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                results.add(executor.submit((Callable<Integer>) () -> {
+                    int accepted = 0;
+                    for (int j = 0; j < VALUES; j++) {
+                        if (policy.accept(j, values.apply(thread))) {
+                            accepted++;
+                        }
+                    }
+                    return accepted;
+                }));
+            }
+            int accepted = 0;
+            for (Future<Integer> result : results) {
+                accepted += result.get();
+            }
+            return accepted;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}